@@ -1,9 +1,11 @@
 package org.brylex.sancus.agent;
 
 import org.brylex.sancus.audit.AuditCheck;
+import org.brylex.sancus.audit.CertView;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.HandshakeInfo;
 import org.brylex.sancus.audit.Severity;
+import org.brylex.sancus.util.Fingerprint;
 
 import org.brylex.sancus.agent.bootstrap.SancusAgentTrustManager;
 
@@ -23,7 +25,7 @@ public class AgentAuditCallback implements BiConsumer<X509Certificate[], Boolean
 
         // Dedup: use fingerprint of leaf certificate
         X509Certificate leaf = chain[0];
-        String fingerprint = AuditCache.fingerprint(leaf);
+        Fingerprint fingerprint = AuditCache.fingerprint(leaf);
         if (AuditCache.INSTANCE.recentlyAudited(fingerprint)) {
             return; // already audited within TTL
         }
@@ -39,9 +41,12 @@ public class AgentAuditCallback implements BiConsumer<X509Certificate[], Boolean
         X509Certificate[] resolvedChain = readResolvedChainFromBootstrap();
         HandshakeInfo handshakeInfo = new HandshakeInfo("unknown", "unknown", chain, resolvedChain);
 
+        // Checks that support it read fields straight from the DER instead of decoded certificates
+        CertView[] views = CertView.of(chain);
+
         for (AuditCheck check : checks) {
             try {
-                List<Finding> findings = check.check(handshakeInfo, chain);
+                List<Finding> findings = check.check(handshakeInfo, views);
                 for (Finding finding : findings) {
                     if (finding.severity().compareTo(minLevel) >= 0) {
                         Level julLevel = toJulLevel(finding.severity());
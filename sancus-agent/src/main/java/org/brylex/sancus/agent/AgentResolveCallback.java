@@ -2,7 +2,13 @@ package org.brylex.sancus.agent;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ChainEntry;
+import org.brylex.sancus.TrustStores;
+import org.brylex.sancus.resolver.AiaBackoff;
 import org.brylex.sancus.resolver.RemoteResolver;
+import org.brylex.sancus.util.Fingerprint;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
 
 import java.security.Security;
 import java.security.cert.X509Certificate;
@@ -18,7 +24,7 @@ public class AgentResolveCallback implements Function<X509Certificate[], X509Cer
 
     private record CachedChain(X509Certificate[] chain, Instant resolvedAt) {}
 
-    private final ConcurrentHashMap<String, CachedChain> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Fingerprint, CachedChain> cache = new ConcurrentHashMap<>();
     private final AtomicLong callCount = new AtomicLong(0);
 
     public AgentResolveCallback() {
@@ -29,7 +35,7 @@ public class AgentResolveCallback implements Function<X509Certificate[], X509Cer
     public X509Certificate[] apply(X509Certificate[] chain) {
         try {
             if (chain == null || chain.length == 0) return chain;
-            String fingerprint = AuditCache.fingerprint(chain[0]);
+            Fingerprint fingerprint = AuditCache.fingerprint(chain[0]);
 
             CachedChain cached = cache.get(fingerprint);
             int ttlMinutes = AgentConfig.current().cacheTtlMinutes();
@@ -43,12 +49,27 @@ public class AgentResolveCallback implements Function<X509Certificate[], X509Cer
                 cache.entrySet().removeIf(e -> e.getValue().resolvedAt().isBefore(cutoff));
             }
 
-            CertificateChain certChain = CertificateChain.create(chain);
+            // paths are ranked against the default trust anchors, so that a chain ending in a cross-signed certificate
+            // issued by a trusted root does not need an AIA download; reloaded when the trust store file changes
+            CertificateChain certChain = CertificateChain.create(TrustStores.defaultAnchors(), chain);
             if (certChain.isComplete()) {
                 cache.put(fingerprint, new CachedChain(chain, Instant.now()));
                 return chain;
             }
 
+            if (certChain.isAnchored()) {
+                X509Certificate[] path = certChain.toList().toArray(new X509Certificate[0]);
+                cache.put(fingerprint, new CachedChain(path, Instant.now()));
+                return path;
+            }
+
+            ChainEntry last = certChain.last();
+            CanonicalName missing = last.certificate() == null ? last.name() : PrincipalTable.INSTANCE.issuer(last.certificate());
+            if (AiaBackoff.shared().isCircuitOpen(missing)) {
+                // not cached, so resolution is retried once the back-off has passed
+                return chain;
+            }
+
             new RemoteResolver().resolve(certChain);
             X509Certificate[] resolved = certChain.toList().toArray(new X509Certificate[0]);
             cache.put(fingerprint, new CachedChain(resolved, Instant.now()));
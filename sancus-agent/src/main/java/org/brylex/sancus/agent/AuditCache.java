@@ -1,10 +1,10 @@
 package org.brylex.sancus.agent;
 
-import java.security.MessageDigest;
+import org.brylex.sancus.util.Fingerprint;
+
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HexFormat;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -12,22 +12,15 @@ public class AuditCache {
 
     public static final AuditCache INSTANCE = new AuditCache();
 
-    private final ConcurrentHashMap<String, Instant> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Fingerprint, Instant> cache = new ConcurrentHashMap<>();
     private final AtomicLong callCount = new AtomicLong(0);
     private volatile Duration ttl = Duration.ofMinutes(AgentConfig.current().cacheTtlMinutes());
 
     private AuditCache() {
     }
 
-    public static String fingerprint(X509Certificate cert) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] der = cert.getEncoded();
-            byte[] hash = digest.digest(der);
-            return HexFormat.of().formatHex(hash);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to compute certificate fingerprint", e);
-        }
+    public static Fingerprint fingerprint(X509Certificate cert) {
+        return Fingerprint.of(cert);
     }
 
     /**
@@ -35,7 +28,7 @@ public class AuditCache {
      * Registers the fingerprint if not present, returning false on first call.
      * Evicts stale entries every 100 calls.
      */
-    public boolean recentlyAudited(String fingerprint) {
+    public boolean recentlyAudited(Fingerprint fingerprint) {
         long count = callCount.incrementAndGet();
         if (count % 100 == 0) {
             evictStale();
@@ -1,5 +1,6 @@
 package org.brylex.sancus.agent;
 
+import org.brylex.sancus.util.Fingerprint;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -25,7 +26,7 @@ class AuditCacheTest {
 
     @Test
     void fingerprintIs64HexChars() {
-        String fingerprint = AuditCache.fingerprint(cert);
+        String fingerprint = AuditCache.fingerprint(cert).toString();
         assertNotNull(fingerprint);
         assertEquals(64, fingerprint.length());
         assertTrue(fingerprint.matches("[0-9a-f]{64}"), "Should be lowercase hex: " + fingerprint);
@@ -33,20 +34,20 @@ class AuditCacheTest {
 
     @Test
     void fingerprintIsDeterministic() {
-        String fp1 = AuditCache.fingerprint(cert);
-        String fp2 = AuditCache.fingerprint(cert);
+        Fingerprint fp1 = AuditCache.fingerprint(cert);
+        Fingerprint fp2 = AuditCache.fingerprint(cert);
         assertEquals(fp1, fp2);
     }
 
     @Test
     void firstCallReturnsFalse() {
-        String fingerprint = AuditCache.fingerprint(cert);
+        Fingerprint fingerprint = AuditCache.fingerprint(cert);
         assertFalse(AuditCache.INSTANCE.recentlyAudited(fingerprint));
     }
 
     @Test
     void secondCallReturnsTrue() {
-        String fingerprint = AuditCache.fingerprint(cert);
+        Fingerprint fingerprint = AuditCache.fingerprint(cert);
         AuditCache.INSTANCE.recentlyAudited(fingerprint); // first — registers
         assertTrue(AuditCache.INSTANCE.recentlyAudited(fingerprint)); // second — within TTL
     }
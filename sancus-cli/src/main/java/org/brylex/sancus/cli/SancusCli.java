@@ -1,12 +1,16 @@
 package org.brylex.sancus.cli;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.brylex.sancus.TrustStores;
 import org.brylex.sancus.cli.command.AuditCommand;
 import org.brylex.sancus.cli.command.ResolveCommand;
+import org.brylex.sancus.resolver.AiaCache;
 import org.fusesource.jansi.AnsiConsole;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.Security;
 
 @Command(
@@ -22,6 +26,13 @@ public class SancusCli {
     }
 
     public static void main(String[] args) {
+        Path home = Paths.get(System.getProperty("user.home"), ".sancus");
+        if (System.getProperty(AiaCache.DIRECTORY_PROPERTY) == null) {
+            System.setProperty(AiaCache.DIRECTORY_PROPERTY, home.resolve("aia").toString());
+        }
+        if (System.getProperty(TrustStores.SNAPSHOT_PROPERTY) == null) {
+            System.setProperty(TrustStores.SNAPSHOT_PROPERTY, home.resolve("truststores").toString());
+        }
         AnsiConsole.systemInstall();
         CommandLine cmd = new CommandLine(new SancusCli());
         cmd.setCaseInsensitiveEnumValuesAllowed(true);
@@ -3,29 +3,52 @@ package org.brylex.sancus.cli.command;
 import org.brylex.sancus.audit.*;
 import org.brylex.sancus.audit.check.*;
 import org.brylex.sancus.cli.output.OutputFormat;
+import org.brylex.sancus.dns.ResolutionStage;
+import org.brylex.sancus.dns.ResolutionStage.Resolution;
+import org.brylex.sancus.handshake.CaptureMode;
+import org.brylex.sancus.handshake.HandshakeClient;
+import org.brylex.sancus.handshake.HandshakeResult;
+import org.brylex.sancus.handshake.HandshakeTarget;
+import org.brylex.sancus.handshake.NioHandshakeEngine;
 import org.brylex.sancus.cli.output.OutputFormatter;
+import org.brylex.sancus.resolver.AsyncResolvers;
+import org.brylex.sancus.resolver.ResolverPipeline;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.cert.X509Certificate;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Command(name = "audit", description = "Perform a TLS audit of a remote host", mixinStandardHelpOptions = true)
 public class AuditCommand implements Callable<Integer> {
 
-    @Parameters(index = "0", description = "Hostname to audit")
-    String host;
+    @Parameters(arity = "0..*", description = "Hosts to audit, as host or host:port")
+    List<String> hosts = new ArrayList<>();
 
     @Option(names = "--port", defaultValue = "443", description = "Port to connect to")
     int port;
 
+    @Option(names = "--hosts-file", description = "File with hosts to audit, one host or host:port per line")
+    Path hostsFile;
+
+    @Option(names = "--concurrency", defaultValue = "1024", description = "Handshakes in flight at once when auditing several hosts")
+    int concurrency;
+
     @Option(names = "--format", defaultValue = "ANSI", description = "Output format: ANSI or JSON")
     OutputFormat format;
 
+    @Option(names = "--certificate-only", description = "Abandon each handshake once the server chain is received, skipping checks that need a completed handshake")
+    boolean certificateOnly;
+
     private static final List<AuditCheck> CHECKS = List.of(
             new ExpiryCheck(),
             new WeakAlgorithmCheck(),
@@ -37,22 +60,113 @@ public class AuditCommand implements Callable<Integer> {
 
     @Override
     public Integer call() {
-        HandshakeInfo handshakeInfo;
+        List<HandshakeTarget> targets;
         try {
-            handshakeInfo = AuditHandshakeResolver.connect(host, port);
-        } catch (AuditHandshakeResolver.AuditConnectionException e) {
+            targets = targets();
+        } catch (IOException | IllegalArgumentException e) {
             System.err.println("Error: " + e.getMessage());
             return 1;
         }
 
+        if (targets.isEmpty()) {
+            System.err.println("Error: No host to audit.");
+            return 1;
+        }
+
+        List<AuditCheck> checks = checks();
+        CaptureMode mode = AuditHandshakeResolver.captureMode(checks);
+
+        List<Resolution> resolutions = ResolutionStage.shared().resolveAll(targets).join();
+
+        if (resolutions.size() == 1) {
+            Resolution resolution = resolutions.get(0);
+            if (!resolution.resolved()) {
+                return report(AuditHandshakeResolver.unresolved(resolution, Instant.now()));
+            }
+            try {
+                return report(audit(resolution.target(), checks,
+                        AuditHandshakeResolver.connect(HandshakeClient.shared(), resolution, mode)));
+            } catch (AuditHandshakeResolver.AuditConnectionException e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        return auditAll(resolutions, checks, mode);
+    }
+
+    /**
+     * Handshakes with all resolved targets concurrently on a {@link NioHandshakeEngine}, then resolves the missing
+     * issuers of each chain and audits it as its handshake completes, on virtual threads. Reports are emitted in the
+     * given order and form one document, such as a single JSON array. Targets that did not resolve are reported
+     * without a handshake; failed handshakes are reported as such in JSON, so that the array covers every target,
+     * and as errors otherwise.
+     */
+    private int auditAll(List<Resolution> resolutions, List<AuditCheck> checks, CaptureMode mode) {
+
+        NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(NioHandshakeEngine.Config.DEFAULT.threads(),
+                concurrency, NioHandshakeEngine.Config.DEFAULT.connectTimeout(),
+                NioHandshakeEngine.Config.DEFAULT.handshakeTimeout());
+
+        List<CompletableFuture<AuditReport>> audits = new ArrayList<>(resolutions.size());
+        OutputFormatter.Bulk reports = OutputFormatter.forFormat(format).bulk(System.out);
+        int exitCode = 0;
+        try (NioHandshakeEngine engine = new NioHandshakeEngine(HandshakeClient.shared(), config)) {
+
+            for (Resolution resolution : resolutions) {
+                HandshakeTarget target = resolution.target();
+                audits.add(resolution.resolved()
+                        ? engine.handshake(target.host(), target.port(), resolution.addresses(), null, mode)
+                                .thenCompose(result -> !result.successful() && format == OutputFormat.JSON
+                                        ? CompletableFuture.completedFuture(
+                                                AuditHandshakeResolver.failed(result, resolution, Instant.now()))
+                                        : prepare(result, resolution).thenApplyAsync(
+                                                handshakeInfo -> audit(target, checks, handshakeInfo),
+                                                AsyncResolvers.defaultExecutor()))
+                        : CompletableFuture.completedFuture(AuditHandshakeResolver.unresolved(resolution, Instant.now())));
+            }
+
+            for (CompletableFuture<AuditReport> audit : audits) {
+                AuditReport report;
+                try {
+                    report = audit.join();
+                } catch (CompletionException e) {
+                    System.err.println("Error: " + e.getCause().getMessage());
+                    exitCode = Math.max(exitCode, 1);
+                    continue;
+                }
+                reports.add(report);
+                exitCode = Math.max(exitCode, report.exitCode());
+            }
+        } finally {
+            reports.finish();
+        }
+
+        return exitCode;
+    }
+
+    private static CompletableFuture<HandshakeInfo> prepare(HandshakeResult result, Resolution resolution) {
+        try {
+            return AuditHandshakeResolver.resolveChain(AuditHandshakeResolver.handshakeInfo(result, resolution),
+                    ResolverPipeline.aia().async());
+        } catch (AuditHandshakeResolver.AuditConnectionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private AuditReport audit(HandshakeTarget target, List<AuditCheck> checks, HandshakeInfo handshakeInfo) {
+
         X509Certificate[] chain = handshakeInfo.serverChain();
 
         List<Finding> findings = new ArrayList<>();
-        for (AuditCheck check : CHECKS) {
+        for (AuditCheck check : checks) {
             findings.addAll(check.check(handshakeInfo, chain));
         }
 
-        AuditReport report = new AuditReport(host, port, Instant.now(), findings);
+        return new AuditReport(target.host(), target.port(), Instant.now(), findings, handshakeInfo.timings());
+    }
+
+    private int report(AuditReport report) {
 
         OutputFormatter formatter = OutputFormatter.forFormat(format);
         formatter.format(report, System.out);
@@ -60,4 +174,36 @@ public class AuditCommand implements Callable<Integer> {
         return report.exitCode();
     }
 
+    private List<AuditCheck> checks() {
+        if (!certificateOnly) {
+            return CHECKS;
+        }
+        List<AuditCheck> checks = new ArrayList<>();
+        for (AuditCheck check : CHECKS) {
+            if (!check.requiresFullHandshake()) {
+                checks.add(check);
+            }
+        }
+        return checks;
+    }
+
+    private List<HandshakeTarget> targets() throws IOException {
+
+        List<String> specs = new ArrayList<>(hosts);
+        if (hostsFile != null) {
+            for (String line : Files.readAllLines(hostsFile)) {
+                String spec = line.strip();
+                if (!spec.isEmpty() && !spec.startsWith("#")) {
+                    specs.add(spec);
+                }
+            }
+        }
+
+        List<HandshakeTarget> targets = new ArrayList<>(specs.size());
+        for (String spec : specs) {
+            targets.add(HandshakeTarget.parse(spec, port));
+        }
+        return targets;
+    }
+
 }
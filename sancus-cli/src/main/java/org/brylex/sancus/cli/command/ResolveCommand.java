@@ -2,12 +2,17 @@ package org.brylex.sancus.cli.command;
 
 import org.brylex.sancus.CertificateChain;
 import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.TrustAnchorIndex;
 import org.brylex.sancus.TrustMarkerVisitor;
+import org.brylex.sancus.TrustStores;
 import org.brylex.sancus.cli.ConsoleUtil;
+import org.brylex.sancus.handshake.HandshakeResult;
 import org.brylex.sancus.resolver.DirResolver;
 import org.brylex.sancus.resolver.HandshakeResolver;
+import org.brylex.sancus.resolver.HashedDirResolver;
 import org.brylex.sancus.resolver.KeyStoreResolver;
 import org.brylex.sancus.resolver.RemoteResolver;
+import org.brylex.sancus.resolver.ResolverPipeline;
 import org.brylex.sancus.util.Util;
 import org.fusesource.jansi.Ansi;
 import picocli.CommandLine.Command;
@@ -57,6 +62,12 @@ public class ResolveCommand implements Callable<Integer> {
     @Option(names = {"--keystore"}, description = "Write resolved chain to JKS keystore (non-interactive)")
     Path keystorePath;
 
+    @Option(names = {"--hashed-dir"}, description = "Resolve issuers from an OpenSSL hashed directory, e.g. /etc/ssl/certs")
+    Path hashedDir;
+
+    @Option(names = {"--hashed-index"}, description = "Index file for --hashed-dir; built on first use and reused across runs; must be outside the directory")
+    Path hashedIndex;
+
     @Override
     public Integer call() {
         CertificateChain chain = resolveCertificateChain();
@@ -90,10 +101,9 @@ public class ResolveCommand implements Callable<Integer> {
             return 2;
         }
 
-        try {
-            new RemoteResolver().resolve(chain);
-        } catch (Exception e) {
-            System.err.println("Warning: AIA resolution failed: " + e.getMessage());
+        pipeline().resolve(chain);
+        if (!chain.isComplete()) {
+            System.err.println("Warning: Resolution did not complete the chain.");
         }
 
         List<X509Certificate> resolvedCerts = chain.toList();
@@ -197,15 +207,15 @@ public class ResolveCommand implements Callable<Integer> {
                 .bold().fg(Ansi.Color.GREEN).a("1. ").fgBlue().a("DEFAULT").reset().a(" jks [").a(Util.getEffectiveDefaultJksPath().toString()).a("].\n")
                 .bold().fg(Ansi.Color.GREEN).a("2. ").reset().a("Remotely resolve issuer from certificate extension value (requires Internet access).\n")
                 .bold().fg(Ansi.Color.GREEN).a("3. ").reset().a("JKS file.").a('\n')
-                .bold().fg(Ansi.Color.GREEN).a("4. ").reset().a("From file folder with PEMs.");
+                .bold().fg(Ansi.Color.GREEN).a("4. ").reset().a("From file folder with PEMs.").a('\n')
+                .bold().fg(Ansi.Color.GREEN).a("5. ").reset().a("OpenSSL hashed directory [").a(hashedDirOrDefault().toString()).a("].");
 
         System.out.println(a);
         System.out.println();
 
         String option = ConsoleUtil.consoleInput("Option");
         if ("1".equalsIgnoreCase(option)) {
-            KeyStore defaultKeyStore = Util.loadKeyStore(resolveDefaultJksPath(), trustStorePassword);
-            new KeyStoreResolver(ResolverSource.DEFAULT, defaultKeyStore).resolve(chain);
+            new KeyStoreResolver(ResolverSource.DEFAULT, anchors(resolveDefaultJksPath())).resolve(chain);
             ConsoleUtil.printChain(chain);
         } else if ("2".equalsIgnoreCase(option)) {
             final RemoteResolver resolver = new RemoteResolver();
@@ -221,6 +231,9 @@ public class ResolveCommand implements Callable<Integer> {
             Path path = Paths.get(dir);
             new DirResolver(path).resolve(chain);
             ConsoleUtil.printChain(chain);
+        } else if ("5".equalsIgnoreCase(option)) {
+            new HashedDirResolver(hashedDirOrDefault(), hashedIndex).resolve(chain);
+            ConsoleUtil.printChain(chain);
         } else {
             System.out.println(ansi().fgRed().a("Unknown option [").bold().a(option).boldOff().a("].").reset());
         }
@@ -229,10 +242,55 @@ public class ResolveCommand implements Callable<Integer> {
     private CertificateChain resolveCertificateChain() {
         final KeyStore jks = initKeyStore();
         CertificateChain certificateChain = CertificateChain.create(jks);
-        new HandshakeResolver(host, port).resolve(certificateChain);
+
+        System.out.println("\nPerforming SSL Handshake with [" + host + ":" + port + "] ...\n");
+        HandshakeResult result = new HandshakeResolver(host, port).handshake(certificateChain);
+        System.out.println("Status: " + result.status());
+        if (result.address() != null) {
+            System.out.println("  Peer: " + result.address().getAddress().getHostAddress() + " (" + result.family() + ")");
+        }
+        if (!result.successful()) {
+            System.out.println(" Cause: " + result.message());
+        }
+        System.out.println();
+
+        // an export resolves through pipeline() instead
+        if (hashedDir != null && keystorePath == null) {
+            new HashedDirResolver(hashedDir, hashedIndex).resolve(certificateChain);
+        }
         return certificateChain;
     }
 
+    /**
+     * @return the stages a non-interactive export resolves the chain with: the trust store given by
+     * {@code --truststore}, the default trust store and {@code --hashed-dir} locally, then the AIA cache and
+     * downloads. The trust stores are only read if the chain is still incomplete when their stage runs, and one that
+     * cannot be read counts as a failed stage.
+     */
+    ResolverPipeline pipeline() {
+
+        ResolverPipeline.Builder builder = ResolverPipeline.builder();
+        if (trustStore != null && Files.isRegularFile(trustStore)) {
+            builder.local("JKS", chain -> new KeyStoreResolver(ResolverSource.JKS, anchors(trustStore)).resolve(chain));
+        }
+        builder.local("DEFAULT", chain -> new KeyStoreResolver(ResolverSource.DEFAULT,
+                anchors(Util.getEffectiveDefaultJksPath())).resolve(chain));
+        if (hashedDir != null) {
+            builder.local("DIR", new HashedDirResolver(hashedDir, hashedIndex));
+        }
+
+        return builder.aia().build();
+    }
+
+    private TrustAnchorIndex anchors(Path jksPath) {
+        TrustStores.Loaded loaded = TrustStores.load(jksPath, trustStorePassword);
+        return loaded != null ? loaded.anchors() : TrustAnchorIndex.of(Util.loadKeyStore(jksPath, trustStorePassword));
+    }
+
+    private Path hashedDirOrDefault() {
+        return hashedDir != null ? hashedDir : Paths.get("/etc/ssl/certs");
+    }
+
     private KeyStore initKeyStore() {
         Path jksPath = resolveJksPath();
 
@@ -28,6 +28,9 @@ public final class AnsiOutputFormatter implements OutputFormatter {
         }
 
         out.println();
+        if (!report.timings().isEmpty()) {
+            out.println(ansi().bold().a("Timings").reset().a(": ").a(report.timings().toString()));
+        }
         Severity overall = report.overallSeverity();
         Ansi.Color overallColor = colorFor(overall);
         String label = switch (overall) {
@@ -50,6 +53,8 @@ public final class AnsiOutputFormatter implements OutputFormatter {
             case Finding.ChainFinding _ -> "ChainCompleteness";
             case Finding.ProtocolFinding _ -> "Protocol";
             case Finding.TransparencyFinding _ -> "Transparency";
+            case Finding.ResolutionFinding _ -> "Resolution";
+            case Finding.ConnectionFinding _ -> "Connection";
         };
     }
 
@@ -1,20 +1,52 @@
 package org.brylex.sancus.cli.output;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.brylex.sancus.audit.AuditReport;
 import org.brylex.sancus.audit.Finding;
+import org.brylex.sancus.audit.PhaseTimings;
 
 import java.io.PrintStream;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 
 public final class JsonOutputFormatter implements OutputFormatter {
 
     private static final DateTimeFormatter ISO_FMT = DateTimeFormatter.ISO_INSTANT;
 
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
     @Override
     public void format(AuditReport report, PrintStream out) {
+        out.println(GSON.toJson(toJson(report)));
+    }
+
+    /**
+     * Writes the reports as a single JSON array, streaming each element as it is added.
+     */
+    @Override
+    public Bulk bulk(PrintStream out) {
+        return new Bulk() {
+
+            private int count;
+
+            @Override
+            public void add(AuditReport report) {
+                out.print(count++ == 0 ? "[\n  " : ",\n  ");
+                out.print(GSON.toJson(toJson(report)).replace("\n", "\n  "));
+                out.flush();
+            }
+
+            @Override
+            public void finish() {
+                out.println(count == 0 ? "[]" : "\n]");
+            }
+        };
+    }
+
+    private static JsonObject toJson(AuditReport report) {
         var root = new JsonObject();
         root.addProperty("host", report.host());
         root.addProperty("port", report.port());
@@ -32,8 +64,21 @@ public final class JsonOutputFormatter implements OutputFormatter {
         }
         root.add("findings", findings);
 
-        var gson = new GsonBuilder().setPrettyPrinting().create();
-        out.println(gson.toJson(root));
+        var timings = new JsonObject();
+        for (var entry : report.timings().toMap().entrySet()) {
+            timings.addProperty(phaseKey(entry.getKey()), millis(entry.getValue()));
+        }
+        root.add("timingsMillis", timings);
+
+        return root;
+    }
+
+    private static String phaseKey(PhaseTimings.Phase phase) {
+        return phase.name().toLowerCase();
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000L / 1_000.0;
     }
 
     private static String findingType(Finding finding) {
@@ -44,6 +89,8 @@ public final class JsonOutputFormatter implements OutputFormatter {
             case Finding.ChainFinding _ -> "chain";
             case Finding.ProtocolFinding _ -> "protocol";
             case Finding.TransparencyFinding _ -> "transparency";
+            case Finding.ResolutionFinding _ -> "resolution";
+            case Finding.ConnectionFinding _ -> "connection";
         };
     }
 }
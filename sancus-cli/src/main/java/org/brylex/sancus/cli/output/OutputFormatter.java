@@ -8,6 +8,34 @@ public sealed interface OutputFormatter permits AnsiOutputFormatter, JsonOutputF
 
     void format(AuditReport report, PrintStream out);
 
+    /**
+     * Writes the reports of a bulk audit one at a time, as they become available, and {@link #finish() finishes} the
+     * output once all are written.
+     */
+    interface Bulk {
+
+        void add(AuditReport report);
+
+        void finish();
+    }
+
+    /**
+     * @return a writer of several reports to {@code out}; unless overridden, each is {@linkplain #format formatted}
+     * in turn.
+     */
+    default Bulk bulk(PrintStream out) {
+        return new Bulk() {
+            @Override
+            public void add(AuditReport report) {
+                format(report, out);
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+    }
+
     static OutputFormatter forFormat(OutputFormat format) {
         return switch (format) {
             case ANSI -> new AnsiOutputFormatter();
@@ -0,0 +1,50 @@
+package org.brylex.sancus.cli.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuditCommandTest {
+
+    @Test
+    void jsonBulkAuditReportsEveryTarget() throws Exception {
+
+        int refused;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            refused = socket.getLocalPort();
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        int exitCode;
+        try {
+            System.setOut(new PrintStream(baos, true, StandardCharsets.UTF_8));
+            exitCode = new CommandLine(new AuditCommand()).execute("--format", "JSON",
+                    "127.0.0.1:" + refused, "sancus.invalid", "127.0.0.1:" + refused);
+        } finally {
+            System.setOut(out);
+        }
+
+        JsonArray reports = JsonParser.parseString(baos.toString(StandardCharsets.UTF_8)).getAsJsonArray();
+        assertEquals(3, reports.size());
+        assertEquals("connection", type(reports.get(0).getAsJsonObject()));
+        assertEquals("resolution", type(reports.get(1).getAsJsonObject()));
+        assertEquals("connection", type(reports.get(2).getAsJsonObject()));
+        assertEquals("sancus.invalid", reports.get(1).getAsJsonObject().get("host").getAsString());
+        assertEquals(refused, reports.get(2).getAsJsonObject().get("port").getAsInt());
+        assertNotEquals(0, exitCode);
+    }
+
+    private static String type(JsonObject report) {
+        return report.getAsJsonArray("findings").get(0).getAsJsonObject().get("type").getAsString();
+    }
+}
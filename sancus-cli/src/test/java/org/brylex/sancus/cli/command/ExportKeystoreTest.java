@@ -1,6 +1,7 @@
 package org.brylex.sancus.cli.command;
 
 import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.resolver.ResolverPipeline;
 import org.brylex.sancus.util.Certificates;
 import org.brylex.sancus.util.Util;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.Path;
 import java.security.KeyStore;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,4 +76,14 @@ class ExportKeystoreTest {
         }
         assertEquals("jks", ks.getType().toLowerCase());
     }
+
+    @Test
+    void exportResolvesThroughLocalStagesBeforeTheNetwork(@TempDir Path tempDir) {
+
+        ResolveCommand cmd = new ResolveCommand();
+        cmd.hashedDir = tempDir;
+
+        assertEquals(List.of("DEFAULT", "DIR", "CACHE", "REMOTE"),
+                cmd.pipeline().stats().stream().map(ResolverPipeline.StageStats::name).toList());
+    }
 }
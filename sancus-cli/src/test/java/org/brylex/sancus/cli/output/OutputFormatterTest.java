@@ -6,6 +6,8 @@ import com.google.gson.JsonParser;
 import org.brylex.sancus.audit.AuditReport;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.Finding.*;
+import org.brylex.sancus.audit.PhaseTimings;
+import org.brylex.sancus.audit.PhaseTimings.Phase;
 import org.brylex.sancus.audit.Severity;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -13,6 +15,7 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 
@@ -30,9 +33,18 @@ class OutputFormatterTest {
     );
 
     private static final AuditReport REPORT = new AuditReport(
-            "example.com", 443, Instant.parse("2026-04-07T12:00:00Z"), ALL_FINDING_TYPES
+            "example.com", 443, Instant.parse("2026-04-07T12:00:00Z"), ALL_FINDING_TYPES, timings()
     );
 
+    private static PhaseTimings timings() {
+        PhaseTimings timings = new PhaseTimings();
+        timings.record(Phase.DNS, Duration.ofMillis(4));
+        timings.record(Phase.CONNECT, Duration.ofMillis(21));
+        timings.record(Phase.HANDSHAKE, Duration.ofMillis(57));
+        timings.record(Phase.OCSP, Duration.ofMillis(130));
+        return timings;
+    }
+
     private String formatToString(OutputFormatter formatter) {
         var baos = new ByteArrayOutputStream();
         formatter.format(REPORT, new PrintStream(baos, true, StandardCharsets.UTF_8));
@@ -79,6 +91,12 @@ class OutputFormatterTest {
             assertTrue(output.contains("\u26A0"), "Should contain warning symbol for WARNING");
         }
 
+        @Test
+        void displaysPhaseTimings() {
+            String output = formatToString(new AnsiOutputFormatter());
+            assertTrue(output.contains("dns 4 ms, connect 21 ms, handshake 57 ms, ocsp 130 ms"));
+        }
+
         @Test
         void criticalUsesXSymbol() {
             var report = new AuditReport("fail.com", 443, Instant.now(),
@@ -112,6 +130,17 @@ class OutputFormatterTest {
             assertTrue(json.has("findings"));
         }
 
+        @Test
+        void containsPhaseTimingsInMillis() {
+            String output = formatToString(new JsonOutputFormatter());
+            JsonObject timings = JsonParser.parseString(output).getAsJsonObject().getAsJsonObject("timingsMillis");
+
+            assertEquals(4, timings.size());
+            assertEquals(21.0, timings.get("connect").getAsDouble());
+            assertEquals(130.0, timings.get("ocsp").getAsDouble());
+            assertFalse(timings.has("aia"));
+        }
+
         @Test
         void findingsContainTypeField() {
             String output = formatToString(new JsonOutputFormatter());
@@ -140,5 +169,27 @@ class OutputFormatterTest {
             assertEquals("WARNING", first.get("severity").getAsString());
             assertTrue(first.get("summary").getAsString().contains("22 days"));
         }
+
+        @Test
+        void bulkReportsFormOneArray() {
+            var baos = new ByteArrayOutputStream();
+            OutputFormatter.Bulk bulk = new JsonOutputFormatter().bulk(new PrintStream(baos, true, StandardCharsets.UTF_8));
+            bulk.add(REPORT);
+            bulk.add(REPORT);
+            bulk.finish();
+
+            JsonArray reports = JsonParser.parseString(baos.toString(StandardCharsets.UTF_8)).getAsJsonArray();
+            assertEquals(2, reports.size());
+            assertEquals("example.com", reports.get(1).getAsJsonObject().get("host").getAsString());
+        }
+
+        @Test
+        void emptyBulkIsAnEmptyArray() {
+            var baos = new ByteArrayOutputStream();
+            OutputFormatter.Bulk bulk = new JsonOutputFormatter().bulk(new PrintStream(baos, true, StandardCharsets.UTF_8));
+            bulk.finish();
+
+            assertEquals(0, JsonParser.parseString(baos.toString(StandardCharsets.UTF_8)).getAsJsonArray().size());
+        }
     }
 }
@@ -1,38 +1,59 @@
 package org.brylex.sancus;
 
+import org.brylex.sancus.resolver.AsyncResolvers;
 import org.brylex.sancus.resolver.HandshakeResolver;
+import org.brylex.sancus.util.Fingerprint;
+import org.brylex.sancus.util.PrincipalTable;
 import org.brylex.sancus.util.Util;
 
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.security.KeyStoreException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by <a href="mailto:rpbjo@nets.eu">Rune Peter Bjørnstad</a> on 12/04/2017.
+ * <p>
+ * Chains are safe to resolve from several threads at once: mutations, including those made through
+ * {@link ChainEntry}, hold the chain's lock.
  */
 public class CertificateChain {
 
-    private final KeyStore jks;
-    private ChainEntry head;
+    /**
+     * Certificates applied by resolvers, keyed by SHA-256 fingerprint so that the same certificate is only
+     * stored once no matter how many resolvers find it.
+     */
+    private final Map<Fingerprint, Resolved> resolved = new LinkedHashMap<>();
+
+    /**
+     * Created on first call to {@link #jks()} for chains created from certificates only. Most callers (agent,
+     * audit checks) never look at it.
+     */
+    private KeyStore jks;
+
+    /**
+     * Index of the anchors in {@link #jks}, built on first call to {@link #anchors()} and kept while the KeyStore
+     * holds {@link #anchorsSize} entries.
+     */
+    private TrustAnchorIndex anchors;
+    private int anchorsSize;
+    private volatile ChainEntry head;
     private ChainEntry last;
+    private Boolean complete;
+    private volatile List<CertificatePath> paths = List.of();
 
     private CertificateChain(KeyStore jks) {
         this.jks = jks;
     }
 
-    private CertificateChain(X509Certificate... certificate) {
-        apply(certificate);
-        try {
-            this.jks = KeyStore.getInstance("JKS");
-            this.jks.load(null);
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to initialize create JKS.", e);
-        }
+    private CertificateChain() {
     }
 
     public static CertificateChain create(KeyStore jks) {
@@ -61,22 +82,34 @@ public class CertificateChain {
     }
 
     public CertificateChain apply(X509Certificate... chain) {
+        return apply(null, chain);
+    }
+
+    /**
+     * Applies the best of the issuer paths through the given certificates; see {@link ChainAssembler}. The other
+     * presented issuers of each entry are kept as {@link ChainEntry#candidateIssuers()}.
+     *
+     * @param anchors trust anchors used to rank paths, or {@code null} to prefer paths ending in a self-signed
+     *                certificate.
+     */
+    public synchronized CertificateChain apply(TrustAnchorIndex anchors, X509Certificate... chain) {
 
         if (chain == null || chain.length == 0) {
             throw new IllegalArgumentException();
         }
 
-        List<X509Certificate> list = Arrays.asList(chain);
-        Collections.sort(list, new ChainComparator());
+        this.paths = ChainAssembler.paths(anchors, chain);
 
-        Iterator<X509Certificate> iterator = list.iterator();
+        Iterator<X509Certificate> iterator = paths.get(0).certificates().iterator();
 
         this.head = new ChainEntry(iterator.next(), this);
+        head.candidateIssuers(candidateIssuers(head.certificate()));
 
         ChainEntry entry = this.head;
         while (iterator.hasNext()) {
             X509Certificate next = iterator.next();
             entry = entry.issuedBy(next);
+            entry.candidateIssuers(candidateIssuers(next));
         }
 
         if (entry.issuedBy() == null) {
@@ -85,31 +118,134 @@ public class CertificateChain {
             this.last = entry.issuedBy();
         }
 
+        changed();
+
         return this;
     }
 
     public static CertificateChain create(X509Certificate... chain) {
+        return create(null, chain);
+    }
+
+    public static CertificateChain create(TrustAnchorIndex anchors, X509Certificate... chain) {
 
-        CertificateChain c = new CertificateChain(chain);
+        CertificateChain c = new CertificateChain();
+        c.apply(anchors, chain);
 
         return c;
     }
 
+    /**
+     * @return every issuer path through the applied certificates, best first. The chain follows the first one.
+     */
+    public List<CertificatePath> paths() {
+        return paths;
+    }
+
+    /**
+     * @return {@code true} if the applied path ended in, or was issued by, one of the anchors it was ranked
+     * against (or a self-signed certificate when no anchors were given). Resolvers can stop here even if the
+     * chain is not {@link #isComplete() complete}.
+     */
+    public boolean isAnchored() {
+        return !paths.isEmpty() && paths.get(0).anchored();
+    }
+
+    private List<X509Certificate> candidateIssuers(X509Certificate certificate) {
+
+        List<X509Certificate> issuers = new ArrayList<>(1);
+        for (CertificatePath path : paths) {
+            List<X509Certificate> certificates = path.certificates();
+            int index = certificates.indexOf(certificate);
+            if (index >= 0 && index + 1 < certificates.size() && !issuers.contains(certificates.get(index + 1))) {
+                issuers.add(certificates.get(index + 1));
+            }
+        }
+
+        return issuers;
+    }
+
     public ChainEntry issuedBy() {
         return head.issuedBy();
     }
 
-    public KeyStore jks() {
+    public synchronized KeyStore jks() {
+
+        if (jks == null) {
+            try {
+                KeyStore keyStore = KeyStore.getInstance("JKS");
+                keyStore.load(null);
+
+                for (Resolved r : resolved.values()) {
+                    store(keyStore, r);
+                }
+
+                this.jks = keyStore;
+
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to initialize create JKS.", e);
+            }
+        }
+
         return jks;
     }
 
-    public boolean isComplete() {
+    /**
+     * @return the trust anchors of {@link #jks()}. The index is built once, and again only after entries were added
+     * to or removed from the KeyStore.
+     */
+    public synchronized TrustAnchorIndex anchors() {
+
+        KeyStore keyStore = jks();
+        int size = size(keyStore);
+        if (anchors == null || anchorsSize != size) {
+            anchors = TrustAnchorIndex.of(keyStore);
+            anchorsSize = size;
+        }
 
-        // TODO rpbjo: This one does not need to be resolved each time.
-        List<X509Certificate> list = toList();
-        X509Certificate last = list.get(list.size() - 1);
+        return anchors;
+    }
+
+    /**
+     * @return the certificates applied by resolvers, in the order they were first applied and without duplicates.
+     */
+    public synchronized List<X509Certificate> resolvedCertificates() {
+
+        List<X509Certificate> list = new ArrayList<>(resolved.size());
+        for (Resolved r : resolved.values()) {
+            list.add(r.certificate());
+        }
 
-        return last.getSubjectX500Principal().equals(last.getIssuerX500Principal());
+        return list;
+    }
+
+    synchronized void absorb(X509Certificate certificate, ResolverSource source) {
+
+        Resolved r = new Resolved(certificate, source);
+        if (resolved.putIfAbsent(Fingerprint.of(certificate), r) == null && jks != null) {
+            boolean current = anchors != null && anchorsSize == size(jks);
+            store(jks, r);
+            // an anchor stored again under another alias leaves the index as it is
+            if (current && anchors.anchors().contains(certificate)) {
+                anchorsSize = size(jks);
+            }
+        }
+    }
+
+    synchronized void changed() {
+        this.complete = null;
+    }
+
+    public synchronized boolean isComplete() {
+
+        if (complete == null) {
+            List<X509Certificate> list = toList();
+            X509Certificate last = list.get(list.size() - 1);
+
+            complete = PrincipalTable.INSTANCE.selfIssued(last);
+        }
+
+        return complete;
     }
 
     public List<X509Certificate> toList() {
@@ -129,12 +265,13 @@ public class CertificateChain {
         return list;
     }
 
-    public ChainEntry last(ChainEntry entry) {
+    public synchronized ChainEntry last(ChainEntry entry) {
         this.last = entry;
+        changed();
         return entry;
     }
 
-    public ChainEntry last() {
+    public synchronized ChainEntry last() {
         return last;
     }
 
@@ -168,6 +305,25 @@ public class CertificateChain {
         }
     }
 
+    private static void store(KeyStore keyStore, Resolved r) {
+        try {
+            keyStore.setCertificateEntry(r.source().name() + "_" + UUID.randomUUID().toString(), r.certificate());
+        } catch (KeyStoreException e) {
+            throw new RuntimeException("Unable to apply certificate to KeyStore.", e);
+        }
+    }
+
+    private static int size(KeyStore keyStore) {
+        try {
+            return keyStore.size();
+        } catch (KeyStoreException e) {
+            throw new RuntimeException("Unable to read KeyStore size.", e);
+        }
+    }
+
+    private record Resolved(X509Certificate certificate, ResolverSource source) {
+    }
+
     public interface Callback {
         void onCertificateChain(CertificateChain chain);
     }
@@ -176,6 +332,23 @@ public class CertificateChain {
 
         CertificateChain resolve(CertificateChain chain);
 
+        /**
+         * @return this resolver run on the {@link AsyncResolvers#defaultExecutor() default executor}.
+         */
+        default AsyncResolver async() {
+            return AsyncResolvers.async(this);
+        }
+
+    }
+
+    /**
+     * Non-blocking variant of {@link Resolver}. Implementations must not block the calling thread; the future
+     * completes exceptionally if resolution fails.
+     */
+    public interface AsyncResolver {
+
+        CompletableFuture<CertificateChain> resolveAsync(CertificateChain chain);
+
     }
 
     public interface Truster {
@@ -0,0 +1,95 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.PrincipalTable;
+
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One candidate issuer path through a set of presented certificates, leaf first, together with the properties
+ * used to rank it against the other candidates.
+ *
+ * @param certificates the path, leaf first.
+ * @param anchored     the path ends in a trust anchor (or is issued by one). Without a {@link TrustAnchorIndex}
+ *                     a path ending in a self-signed certificate counts as anchored.
+ * @param strength     strength of the weakest signature on the path; see {@link #signatureStrength(String)}.
+ * @param expires      the earliest notAfter on the path.
+ */
+public record CertificatePath(List<X509Certificate> certificates, boolean anchored, int strength, Instant expires) {
+
+    /**
+     * Best first: anchored paths, then shorter paths, then stronger signatures, then later expiry. Paths that tie
+     * keep their discovery order, which follows the order the certificates were presented in.
+     */
+    public static final Comparator<CertificatePath> BEST_FIRST = Comparator
+            .comparing(CertificatePath::anchored).reversed()
+            .thenComparingInt(CertificatePath::length)
+            .thenComparing(Comparator.comparingInt(CertificatePath::strength).reversed())
+            .thenComparing(Comparator.comparing(CertificatePath::expires).reversed());
+
+    public CertificatePath {
+        certificates = List.copyOf(certificates);
+    }
+
+    public static CertificatePath score(List<X509Certificate> certificates, TrustAnchorIndex anchors) {
+
+        X509Certificate last = certificates.get(certificates.size() - 1);
+        boolean selfIssued = PrincipalTable.INSTANCE.selfIssued(last);
+
+        boolean anchored;
+        if (anchors == null) {
+            anchored = selfIssued;
+        } else {
+            anchored = anchors.contains(last.getSubjectX500Principal()) || (!selfIssued && anchors.issuerOf(last) != null);
+        }
+
+        int strength = Integer.MAX_VALUE;
+        Instant expires = Instant.MAX;
+        for (X509Certificate certificate : certificates) {
+
+            // The self-signature of a root is not verified during path validation.
+            if (certificate != last || !selfIssued) {
+                strength = Math.min(strength, signatureStrength(certificate.getSigAlgName()));
+            }
+
+            Instant notAfter = certificate.getNotAfter().toInstant();
+            if (notAfter.isBefore(expires)) {
+                expires = notAfter;
+            }
+        }
+
+        return new CertificatePath(certificates, anchored, strength == Integer.MAX_VALUE ? 0 : strength, expires);
+    }
+
+    /**
+     * Coarse ranking of signature algorithms by the digest they use: 0 for MD2/MD5, 1 for SHA-1, 2 for SHA-224/256
+     * (and anything unrecognized), 3 for SHA-384 and EdDSA, 4 for SHA-512.
+     */
+    public static int signatureStrength(String signatureAlgorithm) {
+
+        String name = signatureAlgorithm.toUpperCase(Locale.ROOT).replace("-", "");
+
+        if (name.contains("MD2") || name.contains("MD5")) {
+            return 0;
+        } else if (name.contains("SHA1")) {
+            return 1;
+        } else if (name.contains("SHA512")) {
+            return 4;
+        } else if (name.contains("SHA384") || name.contains("ED25519") || name.contains("ED448")) {
+            return 3;
+        }
+
+        return 2;
+    }
+
+    public int length() {
+        return certificates.size();
+    }
+
+    public X509Certificate last() {
+        return certificates.get(certificates.size() - 1);
+    }
+}
@@ -0,0 +1,387 @@
+package org.brylex.sancus;
+
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.brylex.sancus.util.Fingerprint;
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
+import java.io.ByteArrayInputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide cache of parsed certificates keyed by their DER encoding.
+ * <p>
+ * Each distinct certificate is parsed once and shared as a canonical {@link X509Certificate}, together with data
+ * derived from it on first use: the SHA-256 {@link Fingerprint}, the BouncyCastle holder and extensions, the interned
+ * subject and issuer names and the key identifiers. Entries are softly referenced, so the garbage collector can
+ * reclaim them under memory pressure. Registered certificates are also found by the certificate itself, whose hash
+ * code and equality the JDK computes from the encoding it holds, so looking up a certificate seen before copies
+ * nothing.
+ * <p>
+ * Lookups do not lock: each entry carries the time it was last used, and once the registry grows past its capacity
+ * one thread at a time evicts the least recently used entries in a batch. Eviction is therefore approximately LRU
+ * under concurrent use, and exact when the registry is used from one thread.
+ */
+public final class CertificateRegistry {
+
+    public static final CertificateRegistry INSTANCE = new CertificateRegistry(4096);
+
+    private static final byte[] PEM_HEADER = "-----BEGIN".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PEM_BEGIN = "-----BEGIN CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PEM_END = "-----END CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<CertificateFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return CertificateFactory.getInstance("X.509");
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to initialize X.509 CertificateFactory.", e);
+        }
+    });
+
+    private final int capacity;
+    private final Map<ByteBuffer, Node> entries;
+    private final Map<X509Certificate, Node> byCertificate;
+    private final ReentrantLock eviction = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    CertificateRegistry(int capacity) {
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(Math.min(capacity, 256));
+        this.byCertificate = new ConcurrentHashMap<>(Math.min(capacity, 256));
+    }
+
+    /**
+     * @param encoded a DER-encoded certificate or a single PEM {@code CERTIFICATE} block.
+     * @return the canonical certificate for the encoding.
+     */
+    public X509Certificate certificate(byte[] encoded) {
+        return entry(encoded).certificate();
+    }
+
+    /**
+     * @param encoded a DER-encoded certificate or a single PEM {@code CERTIFICATE} block. The array is used as the
+     *                cache key and must not be modified afterwards.
+     */
+    public Entry entry(byte[] encoded) {
+
+        byte[] der = isPem(encoded) ? pemToDer(encoded) : encoded;
+        ByteBuffer key = ByteBuffer.wrap(der);
+
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        X509Certificate certificate;
+        try {
+            certificate = (X509Certificate) FACTORY.get().generateCertificate(new ByteArrayInputStream(der));
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to load DER-encoded certificate.", e);
+        }
+
+        return store(key, new Entry(certificate, der));
+    }
+
+    /**
+     * @return the entry for the given certificate, registering it as the canonical instance if its encoding has
+     * not been seen before. Certificates equal to a registered one are found without copying their encoding.
+     */
+    public Entry entry(X509Certificate certificate) {
+
+        Node known = byCertificate.get(certificate);
+        Entry cached = known != null ? known.get() : null;
+        if (cached != null) {
+            known.used = System.nanoTime();
+            hits.incrementAndGet();
+            return cached;
+        } else if (known != null) {
+            byCertificate.remove(certificate, known);
+        }
+
+        byte[] der;
+        try {
+            der = certificate.getEncoded();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to encode certificate.", e);
+        }
+
+        ByteBuffer key = ByteBuffer.wrap(der);
+
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        return store(key, new Entry(certificate, der));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        entries.clear();
+        byCertificate.clear();
+    }
+
+    private Entry lookup(ByteBuffer key) {
+
+        Node node = entries.get(key);
+        Entry entry = node != null ? node.get() : null;
+        if (entry != null) {
+            node.used = System.nanoTime();
+        } else if (node != null) {
+            entries.remove(key, node);
+        }
+
+        (entry != null ? hits : misses).incrementAndGet();
+
+        return entry;
+    }
+
+    private Entry store(ByteBuffer key, Entry entry) {
+
+        Node node = new Node(entry);
+        while (true) {
+            Node existing = entries.putIfAbsent(key, node);
+            if (existing == null) {
+                break;
+            }
+
+            Entry winner = existing.get();
+            if (winner != null) {
+                return winner;
+            }
+            entries.remove(key, existing);
+        }
+        byCertificate.put(entry.certificate(), node);
+
+        evict();
+
+        return entry;
+    }
+
+    /**
+     * Drops the least recently used entries, a sixteenth of the capacity beyond what is needed, so that the sort is
+     * paid once per batch of inserts rather than on each of them. Threads finding eviction under way do not wait;
+     * the evicting thread checks the size again once it is done.
+     */
+    private void evict() {
+
+        while (entries.size() > capacity && eviction.tryLock()) {
+            try {
+                int excess = entries.size() - capacity;
+                if (excess <= 0) {
+                    return;
+                }
+
+                List<Map.Entry<ByteBuffer, Node>> candidates = new ArrayList<>(entries.entrySet());
+                candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().used));
+
+                int count = Math.min(candidates.size(), excess + capacity / 16);
+                Set<Node> evicted = Collections.newSetFromMap(new IdentityHashMap<>(count * 2));
+                for (int i = 0; i < count; i++) {
+                    entries.remove(candidates.get(i).getKey(), candidates.get(i).getValue());
+                    evicted.add(candidates.get(i).getValue());
+                }
+                byCertificate.values().removeIf(node -> evicted.contains(node) || node.get() == null);
+            } finally {
+                eviction.unlock();
+            }
+        }
+    }
+
+    /**
+     * A DER certificate is a SEQUENCE whose length covers the whole input. Anything else is taken to be PEM if it
+     * holds a {@code -----BEGIN} header, possibly preceded by explanatory text as written by
+     * {@code openssl x509 -text}; otherwise it is left to the certificate factory to reject.
+     */
+    private static boolean isPem(byte[] encoded) {
+        return !isDerSequence(encoded) && indexOf(encoded, PEM_HEADER, 0) >= 0;
+    }
+
+    private static boolean isDerSequence(byte[] encoded) {
+
+        if (encoded.length < 2 || encoded[0] != 0x30) {
+            return false;
+        }
+
+        int first = encoded[1] & 0xff;
+        if (first < 0x80) {
+            return 2 + first == encoded.length;
+        }
+
+        int octets = first & 0x7f;
+        if (octets == 0 || octets > 3 || encoded.length < 2 + octets) {
+            return false;
+        }
+
+        int length = 0;
+        for (int i = 0; i < octets; i++) {
+            length = (length << 8) | (encoded[2 + i] & 0xff);
+        }
+        return 2 + octets + length == encoded.length;
+    }
+
+    private static byte[] pemToDer(byte[] pem) {
+
+        int begin = indexOf(pem, PEM_BEGIN, 0);
+        int end = begin >= 0 ? indexOf(pem, PEM_END, begin) : -1;
+        if (end < 0) {
+            throw new RuntimeException("Unable to load PEM-encoded certificate; no CERTIFICATE block found.");
+        }
+
+        int start = begin + PEM_BEGIN.length;
+        return Base64.getMimeDecoder().decode(Arrays.copyOfRange(pem, start, end));
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+
+        return -1;
+    }
+
+    private static final class Node extends SoftReference<Entry> {
+
+        private volatile long used = System.nanoTime();
+
+        private Node(Entry entry) {
+            super(entry);
+        }
+    }
+
+    /**
+     * A registered certificate and the data derived from it. Derived values are computed on first use and may, in
+     * rare races, be computed more than once; they are immutable so that is harmless.
+     */
+    public static final class Entry {
+
+        private final X509Certificate certificate;
+        private final byte[] der;
+        private final CanonicalName subject;
+        private final CanonicalName issuer;
+
+        private volatile Fingerprint fingerprint;
+        private volatile X509CertificateHolder holder;
+        private volatile byte[] subjectKeyIdentifier;
+        private volatile byte[] authorityKeyIdentifier;
+        private volatile boolean keyIdentifiersRead;
+
+        private Entry(X509Certificate certificate, byte[] der) {
+            this.certificate = certificate;
+            this.der = der;
+            this.subject = PrincipalTable.INSTANCE.subject(certificate);
+            this.issuer = PrincipalTable.INSTANCE.issuer(certificate);
+        }
+
+        public X509Certificate certificate() {
+            return certificate;
+        }
+
+        public byte[] encoded() {
+            return der.clone();
+        }
+
+        public CanonicalName subject() {
+            return subject;
+        }
+
+        public CanonicalName issuer() {
+            return issuer;
+        }
+
+        public boolean selfIssued() {
+            return subject.equals(issuer);
+        }
+
+        /**
+         * @return the SHA-256 of the DER encoding.
+         */
+        public Fingerprint fingerprint() {
+
+            Fingerprint value = fingerprint;
+            if (value == null) {
+                value = Fingerprint.of(der);
+                fingerprint = value;
+            }
+
+            return value;
+        }
+
+        public X509CertificateHolder holder() {
+
+            X509CertificateHolder value = holder;
+            if (value == null) {
+                try {
+                    value = new X509CertificateHolder(der);
+                } catch (Exception e) {
+                    throw new RuntimeException("Unable to parse certificate [" + subject + "].", e);
+                }
+                holder = value;
+            }
+
+            return value;
+        }
+
+        /**
+         * @return the parsed extensions, or {@code null} for certificates without any.
+         */
+        public Extensions extensions() {
+            return holder().getExtensions();
+        }
+
+        public byte[] subjectKeyIdentifier() {
+            readKeyIdentifiers();
+            return subjectKeyIdentifier;
+        }
+
+        public byte[] authorityKeyIdentifier() {
+            readKeyIdentifiers();
+            return authorityKeyIdentifier;
+        }
+
+        private void readKeyIdentifiers() {
+            if (!keyIdentifiersRead) {
+                subjectKeyIdentifier = KeyIdentifiers.subjectKeyIdentifier(certificate);
+                authorityKeyIdentifier = KeyIdentifiers.authorityKeyIdentifier(certificate);
+                keyIdentifiersRead = true;
+            }
+        }
+    }
+}
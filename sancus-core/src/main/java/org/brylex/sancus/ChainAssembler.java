@@ -0,0 +1,260 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
+import java.nio.ByteBuffer;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the certificates presented by a server into issuer paths, starting at the leaf.
+ * <p>
+ * The issuer graph is built in one pass, linking on Authority/Subject Key Identifier and falling back to the
+ * issuer DN when a certificate carries no key identifier. When several certificates could issue the same
+ * certificate (cross-signed intermediates), every path is built and ranked with {@link CertificatePath#BEST_FIRST};
+ * ties go to the certificate presented first, so the result only depends on the input. Certificates that are not
+ * on any path (padding, unrelated certificates) are dropped.
+ */
+public final class ChainAssembler {
+
+    /**
+     * Upper bound on the number of paths built for one set of certificates; cross-signing rarely gives more than
+     * two or three.
+     */
+    static final int MAX_PATHS = 64;
+
+    private ChainAssembler() {
+    }
+
+    /**
+     * @return the best path, ranking paths that end in a self-signed certificate first.
+     */
+    public static List<X509Certificate> assemble(X509Certificate... certificates) {
+        return assemble(null, certificates);
+    }
+
+    /**
+     * @param anchors trust anchors used to rank paths, or {@code null} to rank paths ending in a self-signed
+     *                certificate first.
+     * @return the best path.
+     */
+    public static List<X509Certificate> assemble(TrustAnchorIndex anchors, X509Certificate... certificates) {
+        return paths(anchors, certificates).get(0).certificates();
+    }
+
+    /**
+     * @param anchors trust anchors used to rank paths, or {@code null} to rank paths ending in a self-signed
+     *                certificate first.
+     * @return every path from the leaf, best first; never empty.
+     */
+    public static List<CertificatePath> paths(TrustAnchorIndex anchors, X509Certificate... certificates) {
+
+        if (certificates == null || certificates.length == 0) {
+            throw new IllegalArgumentException();
+        }
+
+        Graph graph = new Graph(certificates);
+
+        List<CertificatePath> paths = new ArrayList<>();
+        graph.enumerate(graph.head(), new ArrayList<>(), anchors, paths);
+
+        paths.sort(CertificatePath.BEST_FIRST);
+
+        return paths;
+    }
+
+    private static final class Node {
+
+        private final X509Certificate certificate;
+        private final CanonicalName subject;
+        private final CanonicalName issuer;
+        private final ByteBuffer ski;
+        private final ByteBuffer aki;
+        private final boolean selfIssued;
+        private List<Node> issuers = List.of();
+        private boolean issuesOther;
+
+        private Node(X509Certificate certificate) {
+            // the registry keeps the names and key identifiers, so assembling the same certificates again reads nothing
+            CertificateRegistry.Entry entry = CertificateRegistry.INSTANCE.entry(certificate);
+            this.certificate = certificate;
+            this.subject = entry.subject();
+            this.issuer = entry.issuer();
+            this.ski = wrap(entry.subjectKeyIdentifier());
+            this.aki = wrap(entry.authorityKeyIdentifier());
+            this.selfIssued = subject.equals(issuer);
+        }
+
+        private static ByteBuffer wrap(byte[] bytes) {
+            return bytes != null ? ByteBuffer.wrap(bytes) : null;
+        }
+    }
+
+    private static final class Graph {
+
+        private final List<Node> nodes;
+        private final Map<CanonicalName, List<Node>> bySubject = new HashMap<>();
+        private final Map<ByteBuffer, List<Node>> byKeyIdentifier = new HashMap<>();
+
+        private Graph(X509Certificate[] certificates) {
+
+            Set<X509Certificate> distinct = new LinkedHashSet<>(List.of(certificates));
+
+            this.nodes = new ArrayList<>(distinct.size());
+            for (X509Certificate certificate : distinct) {
+
+                Node node = new Node(certificate);
+                nodes.add(node);
+
+                bySubject.computeIfAbsent(node.subject, k -> new ArrayList<>(1)).add(node);
+                if (node.ski != null) {
+                    byKeyIdentifier.computeIfAbsent(node.ski, k -> new ArrayList<>(1)).add(node);
+                }
+            }
+
+            for (Node node : nodes) {
+                node.issuers = linkIssuers(node);
+                for (Node issuer : node.issuers) {
+                    issuer.issuesOther = true;
+                }
+            }
+        }
+
+        /**
+         * The leaf is the first presented certificate unless it issues another one in the set (reversed chain),
+         * in which case the unissuing certificate with the longest path is picked.
+         */
+        private Node head() {
+
+            Node first = nodes.get(0);
+            if (!first.issuesOther) {
+                return first;
+            }
+
+            Node head = first;
+            int longest = 0;
+            for (Node node : nodes) {
+                if (!node.issuesOther) {
+                    int length = path(node).size();
+                    if (length > longest) {
+                        head = node;
+                        longest = length;
+                    }
+                }
+            }
+
+            return head;
+        }
+
+        private List<Node> path(Node head) {
+
+            List<Node> path = new ArrayList<>();
+            Set<Node> used = new HashSet<>();
+
+            Node node = head;
+            while (node != null && used.add(node)) {
+                path.add(node);
+                List<Node> issuers = issuersOf(node, used);
+                node = issuers.isEmpty() ? null : issuers.get(0);
+            }
+
+            return path;
+        }
+
+        /**
+         * Depth first over all issuers of the last node on {@code path}. A path ends at a self-issued certificate,
+         * at a trust anchor, or where no (unused) issuer was presented.
+         */
+        private void enumerate(Node node, List<Node> path, TrustAnchorIndex anchors, List<CertificatePath> paths) {
+
+            if (paths.size() >= MAX_PATHS) {
+                return;
+            }
+
+            path.add(node);
+
+            List<Node> issuers = anchors != null && anchors.contains(node.subject) ? List.of() : issuersOf(node, path);
+            if (issuers.isEmpty()) {
+                List<X509Certificate> certificates = new ArrayList<>(path.size());
+                for (Node n : path) {
+                    certificates.add(n.certificate);
+                }
+                paths.add(CertificatePath.score(certificates, anchors));
+            } else {
+                for (Node issuer : issuers) {
+                    enumerate(issuer, path, anchors, paths);
+                }
+            }
+
+            path.remove(path.size() - 1);
+        }
+
+        /**
+         * @return the issuers of {@code node} that are not {@code used}, in the order of {@link #linkIssuers(Node)}.
+         */
+        private static List<Node> issuersOf(Node node, Collection<Node> used) {
+
+            if (node.issuers.isEmpty()) {
+                return List.of();
+            }
+
+            List<Node> issuers = new ArrayList<>(node.issuers.size());
+            for (Node issuer : node.issuers) {
+                if (!used.contains(issuer)) {
+                    issuers.add(issuer);
+                }
+            }
+
+            return issuers;
+        }
+
+        /**
+         * @return the presented certificates that can issue {@code node}, those linked by key identifier first and
+         * then those linked by DN only, each in presentation order. Linked once per graph.
+         */
+        private List<Node> linkIssuers(Node node) {
+
+            if (node.selfIssued) {
+                return List.of();
+            }
+
+            List<Node> issuers = new ArrayList<>(1);
+
+            if (node.aki != null) {
+                collect(byKeyIdentifier.get(node.aki), node, false, issuers);
+            }
+
+            collect(bySubject.get(node.issuer), node, true, issuers);
+
+            return issuers.isEmpty() ? List.of() : issuers;
+        }
+
+        private static void collect(List<Node> candidates, Node node, boolean checkKeyIdentifier, List<Node> issuers) {
+
+            if (candidates == null) {
+                return;
+            }
+
+            for (Node candidate : candidates) {
+
+                if (candidate == node || issuers.contains(candidate)
+                        || !candidate.subject.equals(node.issuer)) {
+                    continue;
+                }
+
+                if (checkKeyIdentifier && node.aki != null && candidate.ski != null && !node.aki.equals(candidate.ski)) {
+                    continue;
+                }
+
+                issuers.add(candidate);
+            }
+        }
+    }
+}
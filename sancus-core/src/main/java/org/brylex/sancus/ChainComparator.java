@@ -1,5 +1,7 @@
 package org.brylex.sancus;
 
+import org.brylex.sancus.util.PrincipalTable;
+
 import java.security.cert.X509Certificate;
 import java.util.Comparator;
 
@@ -13,9 +15,9 @@ public class ChainComparator implements Comparator<X509Certificate> {
 
         if (left.equals(right)) {
             return 0;
-        } else if (left.getIssuerX500Principal().equals(right.getSubjectX500Principal())) {
+        } else if (PrincipalTable.INSTANCE.issuer(left).equals(PrincipalTable.INSTANCE.subject(right))) {
             return -1;
-        } else if (left.getSubjectX500Principal().equals(right.getIssuerX500Principal())) {
+        } else if (PrincipalTable.INSTANCE.subject(left).equals(PrincipalTable.INSTANCE.issuer(right))) {
             return 1;
         } else {
             return 0;
@@ -1,36 +1,52 @@
 package org.brylex.sancus;
 
-import java.security.KeyStoreException;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
 import java.security.cert.X509Certificate;
-import java.util.UUID;
+import java.util.List;
 import javax.security.auth.x500.X500Principal;
 
 /**
  * Created by <a href="mailto:rpbjo@nets.eu">Rune Peter Bjørnstad</a> on 12/04/2017.
+ * <p>
+ * Entries may be read and resolved from several threads at once. Structural changes ({@link #apply},
+ * {@link #applyIfAbsent}, {@link #issuedBy(X509Certificate)}) are made while holding the lock of the owning
+ * {@link CertificateChain}; use {@link #applyIfAbsent} when other resolvers may be working on the same chain.
  */
 public class ChainEntry {
 
-    private X509Certificate certificate;
-    private X500Principal dn;
-    private CertificateChain chain;
-    private ChainEntry issuer;
-    private ResolverSource resolvedBy = ResolverSource.DEFAULT;
-    private TrustStatus trustedBy = TrustStatus.UNTRUSTED;
+    private volatile X509Certificate certificate;
+    private final X500Principal dn;
+    private final CanonicalName name;
+    private final CertificateChain chain;
+    private volatile ChainEntry issuer;
+    private volatile ResolverSource resolvedBy = ResolverSource.DEFAULT;
+    private volatile TrustStatus trustedBy = TrustStatus.UNTRUSTED;
+    private volatile List<X509Certificate> candidateIssuers = List.of();
 
     ChainEntry(X509Certificate certificate, CertificateChain chain) {
         this.chain = chain;
         this.certificate = certificate;
         this.dn = certificate.getSubjectX500Principal();
-        if (!certificate.getSubjectX500Principal().equals(certificate.getIssuerX500Principal())) {
-            this.issuer = new ChainEntry(certificate.getIssuerX500Principal(), chain);
+        this.name = PrincipalTable.INSTANCE.intern(dn);
+
+        CanonicalName issuerName = PrincipalTable.INSTANCE.issuer(certificate);
+        if (!name.equals(issuerName)) {
+            this.issuer = new ChainEntry(certificate.getIssuerX500Principal(), issuerName, chain);
         }
 
         this.resolvedBy = ResolverSource.SERVER;
     }
 
     ChainEntry(X500Principal principal, CertificateChain chain) {
+        this(principal, PrincipalTable.INSTANCE.intern(principal), chain);
+    }
+
+    private ChainEntry(X500Principal principal, CanonicalName name, CertificateChain chain) {
         this.chain = chain;
         this.dn = principal;
+        this.name = name;
         this.resolvedBy = ResolverSource.MISSING;
     }
 
@@ -42,20 +58,47 @@ public class ChainEntry {
         return dn;
     }
 
+    /**
+     * @return {@link #dn()} interned in the {@link PrincipalTable}, for cheap comparison with other names.
+     */
+    public CanonicalName name() {
+        return name;
+    }
+
     public ChainEntry issuedBy(X509Certificate issuer) {
-        this.issuer = new ChainEntry(issuer, this.chain);
-        return this.issuer;
+        synchronized (chain) {
+            ChainEntry entry = new ChainEntry(issuer, this.chain);
+            this.issuer = entry;
+            this.chain.changed();
+            return entry;
+        }
     }
 
     public ChainEntry issuedBy(X500Principal issuerDN) {
-        this.issuer = new ChainEntry(issuerDN, this.chain);
-        return this.issuer;
+        synchronized (chain) {
+            ChainEntry entry = new ChainEntry(issuerDN, this.chain);
+            this.issuer = entry;
+            this.chain.changed();
+            return entry;
+        }
     }
 
     public ChainEntry issuedBy() {
         return issuer;
     }
 
+    /**
+     * @return every presented certificate that can issue this one, best path first. The first one is
+     * {@link #issuedBy()}; the rest are alternatives such as cross-signed variants of the same CA.
+     */
+    public List<X509Certificate> candidateIssuers() {
+        return candidateIssuers;
+    }
+
+    void candidateIssuers(List<X509Certificate> issuers) {
+        this.candidateIssuers = List.copyOf(issuers);
+    }
+
     public ResolverSource resolvedBy() {
         return resolvedBy;
     }
@@ -75,26 +118,37 @@ public class ChainEntry {
     }
 
     public ChainEntry apply(X509Certificate certificate, ResolverSource source) {
-        this.certificate = certificate;
-        this.resolvedBy = source;
+        synchronized (chain) {
+            this.certificate = certificate;
+            this.resolvedBy = source;
 
-        if (certificate.getSubjectX500Principal().equals(certificate.getIssuerX500Principal())) {
-            this.chain.last(this);
-        } else {
             this.chain.last(this);
-            issuedBy(certificate.getIssuerX500Principal());
-        }
+            if (!PrincipalTable.INSTANCE.selfIssued(certificate)) {
+                issuedBy(certificate.getIssuerX500Principal());
+            }
 
-        // TODO hva er dette??
-        try {
-            chain.jks().setCertificateEntry(source.name() + "_" + UUID.randomUUID().toString(), certificate);
-        } catch (KeyStoreException e) {
-            throw new RuntimeException("Unable to apply certificate to KeyStore.", e);
+            this.chain.absorb(certificate, source);
         }
 
         return this;
     }
 
+    /**
+     * Applies the certificate unless another resolver already did; the check and the update are atomic with
+     * respect to other changes of the chain.
+     *
+     * @return {@code true} if the certificate was applied.
+     */
+    public boolean applyIfAbsent(X509Certificate certificate, ResolverSource source) {
+        synchronized (chain) {
+            if (this.certificate != null) {
+                return false;
+            }
+            apply(certificate, source);
+            return true;
+        }
+    }
+
     public void last(ChainEntry entry) {
         this.chain.last(entry);
     }
@@ -32,11 +32,13 @@ public class SancusTrustManager implements X509TrustManager {
     @Override
     public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
 
-        certificateChain.apply(chain);
+        TrustAnchorIndex anchors = certificateChain.anchors();
 
-        new KeyStoreResolver(ResolverSource.JKS, certificateChain.jks()).resolve(certificateChain);
+        certificateChain.apply(anchors, chain);
 
-        certificateChain.visit(new TrustMarkerVisitor(certificateChain.jks()));
+        new KeyStoreResolver(ResolverSource.JKS, anchors).resolve(certificateChain);
+
+        certificateChain.visit(new TrustMarkerVisitor(anchors));
 
         tm.checkServerTrusted(chain, authType);
     }
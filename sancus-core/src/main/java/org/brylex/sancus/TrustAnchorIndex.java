@@ -0,0 +1,131 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of the trust anchors of a {@link KeyStore}, indexed by interned subject DN and by Subject Key
+ * Identifier so that issuer lookups do not have to scan {@link X509TrustManager#getAcceptedIssuers()}.
+ * <p>
+ * Build it once per KeyStore and share it between {@link org.brylex.sancus.resolver.KeyStoreResolver} and
+ * {@link TrustMarkerVisitor}.
+ */
+public final class TrustAnchorIndex {
+
+    private final List<X509Certificate> anchors;
+    private final Map<CanonicalName, List<X509Certificate>> bySubject;
+    private final Map<ByteBuffer, List<X509Certificate>> byKeyIdentifier;
+
+    private TrustAnchorIndex(Collection<X509Certificate> anchors) {
+
+        this.anchors = List.copyOf(anchors);
+        this.bySubject = new HashMap<>(this.anchors.size() * 2);
+        this.byKeyIdentifier = new HashMap<>(this.anchors.size() * 2);
+
+        for (X509Certificate anchor : this.anchors) {
+
+            bySubject.computeIfAbsent(PrincipalTable.INSTANCE.subject(anchor), k -> new ArrayList<>(1)).add(anchor);
+
+            byte[] ski = KeyIdentifiers.subjectKeyIdentifier(anchor);
+            if (ski != null) {
+                byKeyIdentifier.computeIfAbsent(ByteBuffer.wrap(ski), k -> new ArrayList<>(1)).add(anchor);
+            }
+        }
+    }
+
+    /**
+     * Indexes the accepted issuers of the default {@link TrustManagerFactory} initialized with the given KeyStore.
+     * A {@code null} KeyStore selects the JRE default trust store, exactly like {@link TrustManagerFactory#init(KeyStore)}.
+     */
+    public static TrustAnchorIndex of(KeyStore keyStore) {
+        try {
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(keyStore);
+
+            List<X509Certificate> anchors = new ArrayList<>();
+            for (TrustManager trustManager : tmf.getTrustManagers()) {
+                if (trustManager instanceof X509TrustManager x509) {
+                    anchors.addAll(Arrays.asList(x509.getAcceptedIssuers()));
+                }
+            }
+
+            return new TrustAnchorIndex(anchors);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to initialize TrustManagers.", e);
+        }
+    }
+
+    public static TrustAnchorIndex of(Collection<X509Certificate> anchors) {
+        return new TrustAnchorIndex(anchors);
+    }
+
+    public List<X509Certificate> anchors() {
+        return anchors;
+    }
+
+    public int size() {
+        return anchors.size();
+    }
+
+    public boolean contains(X500Principal subject) {
+        return contains(PrincipalTable.INSTANCE.intern(subject));
+    }
+
+    public boolean contains(CanonicalName subject) {
+        return bySubject.containsKey(subject);
+    }
+
+    public List<X509Certificate> bySubject(X500Principal subject) {
+        return bySubject.getOrDefault(PrincipalTable.INSTANCE.intern(subject), List.of());
+    }
+
+    public List<X509Certificate> byKeyIdentifier(byte[] keyIdentifier) {
+        if (keyIdentifier == null) {
+            return List.of();
+        }
+        return byKeyIdentifier.getOrDefault(ByteBuffer.wrap(keyIdentifier), List.of());
+    }
+
+    /**
+     * Finds the anchor with the given subject DN, preferring the one whose Subject Key Identifier matches the
+     * supplied Authority Key Identifier when several anchors share the DN (re-keyed or cross-signed roots).
+     *
+     * @return the matching anchor, or {@code null} if none has the given subject.
+     */
+    public X509Certificate find(X500Principal subject, byte[] authorityKeyIdentifier) {
+
+        CanonicalName dn = PrincipalTable.INSTANCE.intern(subject);
+
+        for (X509Certificate candidate : byKeyIdentifier(authorityKeyIdentifier)) {
+            if (dn.equals(PrincipalTable.INSTANCE.subject(candidate))) {
+                return candidate;
+            }
+        }
+
+        List<X509Certificate> candidates = bySubject.get(dn);
+        return candidates != null ? candidates.get(0) : null;
+    }
+
+    /**
+     * @return the anchor that issued the given certificate, or {@code null} if it is not issued by a known anchor.
+     */
+    public X509Certificate issuerOf(X509Certificate certificate) {
+        return find(certificate.getIssuerX500Principal(), KeyIdentifiers.authorityKeyIdentifier(certificate));
+    }
+}
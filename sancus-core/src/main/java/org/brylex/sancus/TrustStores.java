@@ -0,0 +1,395 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.Fingerprint;
+import org.brylex.sancus.util.Util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide cache of parsed trust stores, keyed by path, a SHA-256 digest of the store's contents and a MAC of that
+ * digest and the password.
+ * <p>
+ * Each store is decoded once and shared as its trusted certificate entries and a {@link TrustAnchorIndex}; a file
+ * whose contents changed is decoded again on the next call, whatever its size and modification time. Stores holding
+ * anything but trusted certificates (such as key pairs) are not cached.
+ * <p>
+ * If the {@value #SNAPSHOT_PROPERTY} system property names a directory, decoded stores are also written there as
+ * compact binary snapshots (aliases and DER certificates, tagged with the digest of the store they were decoded from),
+ * which later processes load instead of decoding the JKS or PKCS#12 file again. A snapshot is only a cache: it is
+ * used for the exact store contents and password it was written for, and is no more protected than the directory
+ * holding it. The password is checked with an HMAC keyed by a random secret created once per snapshot directory (an
+ * owner-only {@value #SECRET_FILE} file), so a snapshot alone gives nothing to guess the password against; without a
+ * snapshot directory the secret lives for the process only.
+ */
+public final class TrustStores {
+
+    public static final String SNAPSHOT_PROPERTY = "sancus.truststore.snapshot.dir";
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    private static final int SNAPSHOT_MAGIC = 0x534e5453; // "SNTS"
+    private static final int SNAPSHOT_VERSION = 3;
+
+    private static final String SECRET_FILE = "snapshot.key";
+    private static final int SECRET_LENGTH = 32;
+    private static final byte[] PROCESS_SECRET = random();
+
+    /**
+     * The trusted certificate entries of a store, in alias order.
+     */
+    public static final class Loaded {
+
+        private final Path path;
+        private final Map<String, X509Certificate> entries;
+        private final TrustAnchorIndex anchors;
+
+        private Loaded(Path path, Map<String, X509Certificate> entries) {
+            this.path = path;
+            this.entries = Collections.unmodifiableMap(entries);
+            this.anchors = TrustAnchorIndex.of(entries.values());
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public Map<String, X509Certificate> entries() {
+            return entries;
+        }
+
+        public TrustAnchorIndex anchors() {
+            return anchors;
+        }
+
+        /**
+         * @return a new, modifiable in-memory JKS holding the entries; callers may add to it without affecting the
+         * cache.
+         */
+        public KeyStore keyStore() {
+            try {
+                KeyStore keyStore = KeyStore.getInstance("JKS");
+                keyStore.load(null);
+                for (Map.Entry<String, X509Certificate> entry : entries.entrySet()) {
+                    keyStore.setCertificateEntry(entry.getKey(), entry.getValue());
+                }
+                return keyStore;
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to copy KeyStore [" + path + "].", e);
+            }
+        }
+    }
+
+    /**
+     * @param password HMAC of the contents digest and the password, keyed by the snapshot secret.
+     */
+    private record Key(Path path, Fingerprint contents, String password) {
+    }
+
+    private static final Map<Path, Map.Entry<Key, Loaded>> CACHE = new ConcurrentHashMap<>();
+    private static final Map<Path, byte[]> SECRETS = new ConcurrentHashMap<>();
+    private static final Map<List<String>, TrustAnchorIndex> DEFAULT_ANCHORS = new ConcurrentHashMap<>();
+
+    private TrustStores() {
+    }
+
+    /**
+     * @return the shared view of the store, or {@code null} if it holds entries other than trusted certificates.
+     */
+    public static Loaded load(Path path, String password) {
+
+        Path absolute = path.toAbsolutePath().normalize();
+        byte[] contents = read(absolute);
+        Key key = key(absolute, contents, password);
+
+        Loaded loaded = cached(key);
+        return loaded != null ? loaded : remember(key, decode(absolute, contents, password));
+    }
+
+    /**
+     * @return a modifiable KeyStore with the contents of the store: a copy of the cached entries, or the freshly
+     * decoded store if it cannot be cached.
+     */
+    public static KeyStore keyStore(Path path, String password) {
+
+        Path absolute = path.toAbsolutePath().normalize();
+        byte[] contents = read(absolute);
+        Key key = key(absolute, contents, password);
+
+        Loaded loaded = cached(key);
+        if (loaded != null) {
+            return loaded.keyStore();
+        }
+
+        KeyStore keyStore = decode(absolute, contents, password);
+        remember(key, keyStore);
+        return keyStore;
+    }
+
+    /**
+     * @return the anchors of the store the JSSE default trust manager would use: {@code javax.net.ssl.trustStore}
+     * if set, otherwise {@code jssecacerts} or {@code cacerts} of the running JRE.
+     * <p>
+     * Like the default trust manager, which reads its store once, the anchors are loaded once per store and password
+     * and kept until {@link #clear()}; later changes to the file are not seen.
+     */
+    public static TrustAnchorIndex defaultAnchors() {
+
+        String configured = System.getProperty("javax.net.ssl.trustStore");
+        Path path = configured != null && !configured.isEmpty() && !configured.equals("NONE")
+                ? Paths.get(configured)
+                : Util.getEffectiveDefaultJksPath();
+        String password = System.getProperty("javax.net.ssl.trustStorePassword");
+
+        return DEFAULT_ANCHORS.computeIfAbsent(Arrays.asList(path.toString(), password), k -> {
+            Loaded loaded = load(path, password);
+            return loaded != null ? loaded.anchors() : TrustAnchorIndex.of((KeyStore) null);
+        });
+    }
+
+    public static void clear() {
+        CACHE.clear();
+        DEFAULT_ANCHORS.clear();
+        SECRETS.clear();
+    }
+
+    private static byte[] read(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to load KeyStore [" + path + "].", e);
+        }
+    }
+
+    private static Key key(Path path, byte[] contents, String password) {
+
+        Fingerprint digest = Fingerprint.of(contents);
+
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret(), "HmacSHA256"));
+            mac.update(digest.toByteArray());
+            if (password != null) {
+                mac.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return new Key(path, digest, HexFormat.of().formatHex(mac.doFinal()));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to key KeyStore [" + path + "].", e);
+        }
+    }
+
+    /**
+     * @return the secret of the snapshot directory, created on first use, or the process secret if there is no
+     * snapshot directory or its secret cannot be read or written.
+     */
+    private static byte[] secret() {
+
+        Path dir = snapshotDirectory();
+        if (dir == null) {
+            return PROCESS_SECRET;
+        }
+
+        return SECRETS.computeIfAbsent(dir.toAbsolutePath().normalize(), k -> {
+            Path file = k.resolve(SECRET_FILE);
+            try {
+                if (Files.isRegularFile(file)) {
+                    byte[] secret = Files.readAllBytes(file);
+                    if (secret.length == SECRET_LENGTH) {
+                        return secret;
+                    }
+                }
+
+                byte[] secret = random();
+                Files.createDirectories(k);
+                // temporary files are created owner-only where the file system supports it
+                Path tmp = Files.createTempFile(k, SECRET_FILE, ".tmp");
+                Files.write(tmp, secret, StandardOpenOption.TRUNCATE_EXISTING);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return secret;
+
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to set up trust store snapshot secret [" + file + "].", e);
+                return PROCESS_SECRET;
+            }
+        });
+    }
+
+    private static byte[] random() {
+        byte[] secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private static Loaded cached(Key key) {
+
+        Map.Entry<Key, Loaded> cached = CACHE.get(key.path());
+        if (cached != null && cached.getKey().equals(key)) {
+            return cached.getValue();
+        }
+
+        Loaded loaded = readSnapshot(key);
+        if (loaded != null) {
+            CACHE.put(key.path(), Map.entry(key, loaded));
+        }
+        return loaded;
+    }
+
+    private static Loaded remember(Key key, KeyStore keyStore) {
+
+        Map<String, X509Certificate> entries = entries(keyStore);
+        if (entries == null) {
+            return null;
+        }
+
+        Loaded loaded = new Loaded(key.path(), entries);
+        writeSnapshot(key, loaded);
+        CACHE.put(key.path(), Map.entry(key, loaded));
+
+        return loaded;
+    }
+
+    private static KeyStore decode(Path path, byte[] contents, String password) {
+        try {
+
+            KeyStore jks = KeyStore.getInstance("JKS");
+            jks.load(new ByteArrayInputStream(contents), password != null ? password.toCharArray() : null);
+
+            return jks;
+
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to load KeyStore [" + path + "].", e);
+        }
+    }
+
+    private static Map<String, X509Certificate> entries(KeyStore keyStore) {
+        try {
+            Map<String, X509Certificate> entries = new LinkedHashMap<>();
+            for (String alias : Collections.list(keyStore.aliases())) {
+                Certificate certificate = keyStore.getCertificate(alias);
+                if (!keyStore.isCertificateEntry(alias) || !(certificate instanceof X509Certificate x509)) {
+                    return null;
+                }
+                entries.put(alias, CertificateRegistry.INSTANCE.entry(x509).certificate());
+            }
+            return entries;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to read KeyStore entries.", e);
+        }
+    }
+
+    private static Path snapshotDirectory() {
+        String dir = System.getProperty(SNAPSHOT_PROPERTY);
+        return dir == null || dir.isBlank() ? null : Paths.get(dir);
+    }
+
+    private static Path snapshotFile(Key key) {
+        Path dir = snapshotDirectory();
+        if (dir == null) {
+            return null;
+        }
+        return dir.resolve(Fingerprint.of(key.path().toString().getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+    }
+
+    private static Loaded readSnapshot(Key key) {
+
+        Path file = snapshotFile(key);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION
+                    || !Arrays.equals(key.contents().toByteArray(), digest(in))
+                    || !MessageDigest.isEqual(HexFormat.of().parseHex(key.password()), digest(in))) {
+                return null;
+            }
+
+            int count = in.readInt();
+            Map<String, X509Certificate> entries = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String alias = in.readUTF();
+                byte[] der = new byte[in.readInt()];
+                in.readFully(der);
+                entries.put(alias, CertificateRegistry.INSTANCE.certificate(der));
+            }
+            return new Loaded(key.path(), entries);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.FINE, "Ignoring unreadable trust store snapshot [" + file + "].", e);
+            return null;
+        }
+    }
+
+    private static byte[] digest(DataInputStream in) throws IOException {
+        byte[] digest = new byte[32];
+        in.readFully(digest);
+        return digest;
+    }
+
+    private static void writeSnapshot(Key key, Loaded loaded) {
+
+        Path file = snapshotFile(key);
+        if (file == null) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(loaded.entries().size() * 1500);
+            try (DataOutputStream out = new DataOutputStream(buffer)) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.write(key.contents().toByteArray());
+                out.write(HexFormat.of().parseHex(key.password()));
+                out.writeInt(loaded.entries().size());
+                for (Map.Entry<String, X509Certificate> entry : loaded.entries().entrySet()) {
+                    byte[] der = CertificateRegistry.INSTANCE.entry(entry.getValue()).encoded();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(der.length);
+                    out.write(der);
+                }
+            }
+
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(tmp, buffer.toByteArray(), StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to write trust store snapshot [" + file + "].", e);
+        }
+    }
+}
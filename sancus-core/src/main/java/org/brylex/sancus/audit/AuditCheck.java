@@ -1,9 +1,32 @@
 package org.brylex.sancus.audit;
 
+import org.brylex.sancus.handshake.CaptureMode;
+
 import java.security.cert.X509Certificate;
 import java.util.List;
 
 public interface AuditCheck {
 
     List<Finding> check(HandshakeInfo handshakeInfo, X509Certificate[] chain);
+
+    /**
+     * Runs the check on {@link CertView}s of the chain. Checks that only need the fields a view exposes override
+     * this to avoid decoding certificates; the default decodes them and calls
+     * {@link #check(HandshakeInfo, X509Certificate[])}.
+     */
+    default List<Finding> check(HandshakeInfo handshakeInfo, CertView[] chain) {
+        X509Certificate[] certificates = new X509Certificate[chain.length];
+        for (int i = 0; i < chain.length; i++) {
+            certificates[i] = chain[i].certificate();
+        }
+        return check(handshakeInfo, certificates);
+    }
+
+    /**
+     * @return whether the check needs a completed handshake rather than one abandoned as soon as the chain is in,
+     * see {@link CaptureMode#CERTIFICATE_ONLY}. Checks that only look at the chain keep the default.
+     */
+    default boolean requiresFullHandshake() {
+        return false;
+    }
 }
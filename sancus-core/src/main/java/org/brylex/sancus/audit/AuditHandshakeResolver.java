@@ -1,11 +1,23 @@
 package org.brylex.sancus.audit;
 
-import javax.net.ssl.*;
-import java.io.IOException;
-import java.net.SocketTimeoutException;
-import java.net.UnknownHostException;
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.CertificateChain.AsyncResolver;
+import org.brylex.sancus.audit.Finding.ConnectionFinding;
+import org.brylex.sancus.audit.Finding.ResolutionFinding;
+import org.brylex.sancus.audit.PhaseTimings.Phase;
+import org.brylex.sancus.dns.ResolutionStage;
+import org.brylex.sancus.dns.ResolutionStage.Resolution;
+import org.brylex.sancus.handshake.CaptureMode;
+import org.brylex.sancus.handshake.HandshakeClient;
+import org.brylex.sancus.handshake.HandshakeResult;
+import org.brylex.sancus.handshake.HandshakeTarget;
+import org.brylex.sancus.handshake.NioHandshakeEngine;
+
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public final class AuditHandshakeResolver {
 
@@ -13,51 +25,142 @@ public final class AuditHandshakeResolver {
     }
 
     public static HandshakeInfo connect(String host, int port) throws AuditConnectionException {
-        try {
-            TrustManager[] acceptAll = {new X509TrustManager() {
-                @Override
-                public void checkClientTrusted(X509Certificate[] chain, String authType) {
-                }
-
-                @Override
-                public void checkServerTrusted(X509Certificate[] chain, String authType) {
-                }
-
-                @Override
-                public X509Certificate[] getAcceptedIssuers() {
-                    return new X509Certificate[0];
-                }
-            }};
-
-            SSLContext context = SSLContext.getInstance("TLS");
-            context.init(null, acceptAll, null);
-
-            SSLSocketFactory factory = context.getSocketFactory();
-            try (SSLSocket socket = (SSLSocket) factory.createSocket(host, port)) {
-                socket.setSoTimeout(5000);
-                socket.startHandshake();
-
-                SSLSession session = socket.getSession();
-                String protocol = session.getProtocol();
-                String cipherSuite = session.getCipherSuite();
-                X509Certificate[] serverChain = Arrays.stream(session.getPeerCertificates())
-                        .filter(X509Certificate.class::isInstance)
-                        .map(X509Certificate.class::cast)
-                        .toArray(X509Certificate[]::new);
-
-                return new HandshakeInfo(protocol, cipherSuite, serverChain);
+        return connect(HandshakeClient.shared(), host, port, CaptureMode.FULL);
+    }
+
+    public static HandshakeInfo connect(String host, int port, CaptureMode mode) throws AuditConnectionException {
+        return connect(HandshakeClient.shared(), host, port, mode);
+    }
+
+    /**
+     * Handshakes through {@code client}, accepting any chain; the audit checks judge it afterwards.
+     */
+    public static HandshakeInfo connect(HandshakeClient client, String host, int port) throws AuditConnectionException {
+        return connect(client, host, port, CaptureMode.FULL);
+    }
+
+    public static HandshakeInfo connect(HandshakeClient client, String host, int port, CaptureMode mode)
+            throws AuditConnectionException {
+
+        return handshakeInfo(client.handshake(host, port, mode));
+    }
+
+    /**
+     * Handshakes with a target resolved by a {@link ResolutionStage}, recording the resolution as the DNS phase.
+     */
+    public static HandshakeInfo connect(HandshakeClient client, Resolution resolution, CaptureMode mode)
+            throws AuditConnectionException {
+
+        if (!resolution.resolved()) {
+            throw new IllegalArgumentException("Target [" + resolution.target() + "] did not resolve.");
+        }
+
+        HandshakeTarget target = resolution.target();
+        return handshakeInfo(client.handshake(target.host(), target.port(), resolution.addresses(), null, null, mode),
+                resolution);
+    }
+
+    /**
+     * Converts the result of a handshake with a target resolved by a {@link ResolutionStage}.
+     */
+    public static HandshakeInfo handshakeInfo(HandshakeResult result, Resolution resolution)
+            throws AuditConnectionException {
+
+        HandshakeInfo handshakeInfo = handshakeInfo(result);
+        handshakeInfo.timings().record(Phase.DNS, resolution.time());
+        return handshakeInfo;
+    }
+
+    /**
+     * @return the report of a target that did not resolve: a critical finding, and the time the lookup took.
+     */
+    public static AuditReport unresolved(Resolution resolution, Instant timestamp) {
+
+        HandshakeTarget target = resolution.target();
+        String message = resolution.error().getMessage();
+        String error = message == null || message.equals(target.host()) ? "unknown host" : message;
+
+        PhaseTimings timings = new PhaseTimings();
+        timings.record(Phase.DNS, resolution.time());
+
+        return new AuditReport(target.host(), target.port(), timestamp,
+                List.of(new ResolutionFinding(target.host(), Severity.CRITICAL, error)), timings);
+    }
+
+    /**
+     * @return the report of a resolved target whose handshake failed: a critical finding, and the time each phase
+     * took until it failed; for bulk reports that must cover every target.
+     */
+    public static AuditReport failed(HandshakeResult result, Resolution resolution, Instant timestamp) {
+
+        PhaseTimings timings = PhaseTimings.of(result);
+        timings.record(Phase.DNS, resolution.time());
+
+        return new AuditReport(result.host(), result.port(), timestamp, List.of(new ConnectionFinding(result.host(),
+                result.port(), Severity.CRITICAL, result.status().name(), result.message())), timings);
+    }
+
+    /**
+     * Resolves the issuers missing from the server chain ahead of the checks, recording the time as the AIA phase,
+     * so that a bulk audit resolves its chains concurrently rather than one {@code ChainCompletenessCheck} at a time.
+     *
+     * @return a future of {@code handshakeInfo} with the chain as far as it resolved, the server chain alone if
+     * resolution failed, or of {@code handshakeInfo} itself if the server chain is complete. Either way the checks
+     * take the outcome as it is and do not resolve again. The future never completes exceptionally.
+     */
+    public static CompletableFuture<HandshakeInfo> resolveChain(HandshakeInfo handshakeInfo, AsyncResolver resolver) {
+
+        X509Certificate[] chain = handshakeInfo.serverChain();
+        if (chain == null || chain.length == 0) {
+            return CompletableFuture.completedFuture(handshakeInfo);
+        }
+
+        CertificateChain certificateChain = CertificateChain.create(chain);
+        if (certificateChain.isComplete()) {
+            return CompletableFuture.completedFuture(handshakeInfo);
+        }
+
+        long start = System.nanoTime();
+        return resolver.resolveAsync(certificateChain).handle((resolved, error) -> {
+            handshakeInfo.timings().recordSince(Phase.AIA, start);
+            CertificateChain outcome = error != null ? certificateChain : resolved;
+            return new HandshakeInfo(handshakeInfo.protocol(), handshakeInfo.cipherSuite(), chain,
+                    outcome.toList().toArray(new X509Certificate[0]), handshakeInfo.timings());
+        });
+    }
+
+    /**
+     * @return {@link CaptureMode#FULL} if any of {@code checks} {@link AuditCheck#requiresFullHandshake() requires
+     * it}, otherwise {@link CaptureMode#CERTIFICATE_ONLY}.
+     */
+    public static CaptureMode captureMode(Collection<? extends AuditCheck> checks) {
+        for (AuditCheck check : checks) {
+            if (check.requiresFullHandshake()) {
+                return CaptureMode.FULL;
             }
-        } catch (UnknownHostException e) {
-            throw new AuditConnectionException("Unknown host: " + host, e);
-        } catch (SocketTimeoutException e) {
-            throw new AuditConnectionException("Connection timed out connecting to " + host + ":" + port, e);
-        } catch (SSLException e) {
-            throw new AuditConnectionException("SSL error connecting to " + host + ":" + port + ": " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new AuditConnectionException("I/O error connecting to " + host + ":" + port + ": " + e.getMessage(), e);
-        } catch (Exception e) {
-            throw new AuditConnectionException("Failed to connect to " + host + ":" + port + ": " + e.getMessage(), e);
         }
+        return CaptureMode.CERTIFICATE_ONLY;
+    }
+
+    /**
+     * Converts the result of a {@link HandshakeClient} or {@link NioHandshakeEngine} handshake, such as those of a
+     * bulk audit.
+     *
+     * @throws AuditConnectionException if the handshake failed.
+     */
+    public static HandshakeInfo handshakeInfo(HandshakeResult result) throws AuditConnectionException {
+
+        String host = result.host();
+        int port = result.port();
+
+        return switch (result.status()) {
+            case SUCCESS -> new HandshakeInfo(result.protocol(), result.cipherSuite(), result.chain(), null,
+                    PhaseTimings.of(result));
+            case UNKNOWN_HOST -> throw new AuditConnectionException("Unknown host: " + host, result.error());
+            case TIMEOUT -> throw new AuditConnectionException("Connection timed out connecting to " + host + ":" + port, result.error());
+            case UNTRUSTED, HANDSHAKE_FAILED -> throw new AuditConnectionException("SSL error connecting to " + host + ":" + port + ": " + result.message(), result.error());
+            case CONNECT_FAILED -> throw new AuditConnectionException("I/O error connecting to " + host + ":" + port + ": " + result.message(), result.error());
+        };
     }
 
     public static class AuditConnectionException extends Exception {
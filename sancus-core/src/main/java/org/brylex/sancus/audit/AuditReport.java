@@ -3,7 +3,20 @@ package org.brylex.sancus.audit;
 import java.time.Instant;
 import java.util.List;
 
-public record AuditReport(String host, int port, Instant timestamp, List<Finding> findings) {
+/**
+ * @param timings where the time went for the endpoint, see {@link HandshakeInfo#timings()}.
+ */
+public record AuditReport(String host, int port, Instant timestamp, List<Finding> findings, PhaseTimings timings) {
+
+    public AuditReport {
+        if (timings == null) {
+            timings = new PhaseTimings();
+        }
+    }
+
+    public AuditReport(String host, int port, Instant timestamp, List<Finding> findings) {
+        this(host, port, timestamp, findings, null);
+    }
 
     public Severity overallSeverity() {
         return findings.stream()
@@ -0,0 +1,636 @@
+package org.brylex.sancus.audit;
+
+import org.brylex.sancus.CertificateRegistry;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only view over a DER-encoded certificate that locates the fields the audit checks need directly in the
+ * encoding, without building an {@link X509Certificate} or an ASN.1 object tree.
+ * <p>
+ * The top level of the TBSCertificate is indexed on first access (a handful of int offsets); everything else is
+ * decoded on demand. The DER array is not copied and must not be modified while the view is in use. A view of a
+ * decoded certificate answers from the certificate's own fields: names, validity, the signature algorithm and the
+ * public key as cached by the certificate, and extensions from copies of their values alone, so it never takes the
+ * whole encoding. Malformed encodings are reported as {@link IllegalArgumentException}. Views are not thread-safe;
+ * create one per audit.
+ */
+public final class CertView {
+
+    private static final int BOOLEAN = 0x01;
+    private static final int INTEGER = 0x02;
+    private static final int OCTET_STRING = 0x04;
+    private static final int OBJECT_IDENTIFIER = 0x06;
+    private static final int UTC_TIME = 0x17;
+    private static final int GENERALIZED_TIME = 0x18;
+    private static final int SEQUENCE = 0x30;
+    private static final int VERSION = 0xa0;
+    private static final int EXTENSIONS = 0xa3;
+    private static final int URI = 0x86;
+
+    private static final String AIA_OID = "1.3.6.1.5.5.7.1.1";
+    private static final String SCT_LIST_OID = "1.3.6.1.4.1.11129.2.4.2";
+
+    private static final byte[] AIA = oid(AIA_OID);
+    private static final byte[] CA_ISSUERS = oid("1.3.6.1.5.5.7.48.2");
+    private static final byte[] OCSP = oid("1.3.6.1.5.5.7.48.1");
+    private static final byte[] SCT_LIST = oid(SCT_LIST_OID);
+
+    private static final byte[] RSA = oid("1.2.840.113549.1.1.1");
+    private static final byte[] RSASSA_PSS = oid("1.2.840.113549.1.1.10");
+    private static final byte[] EC = oid("1.2.840.10045.2.1");
+
+    private static final Object[][] SIGNATURE_ALGORITHMS = {
+            {oid("1.2.840.113549.1.1.4"), "MD5withRSA"},
+            {oid("1.2.840.113549.1.1.5"), "SHA1withRSA"},
+            {oid("1.2.840.113549.1.1.14"), "SHA224withRSA"},
+            {oid("1.2.840.113549.1.1.11"), "SHA256withRSA"},
+            {oid("1.2.840.113549.1.1.12"), "SHA384withRSA"},
+            {oid("1.2.840.113549.1.1.13"), "SHA512withRSA"},
+            {oid("1.2.840.113549.1.1.10"), "RSASSA-PSS"},
+            {oid("1.2.840.10045.4.1"), "SHA1withECDSA"},
+            {oid("1.2.840.10045.4.3.1"), "SHA224withECDSA"},
+            {oid("1.2.840.10045.4.3.2"), "SHA256withECDSA"},
+            {oid("1.2.840.10045.4.3.3"), "SHA384withECDSA"},
+            {oid("1.2.840.10045.4.3.4"), "SHA512withECDSA"},
+            {oid("1.2.840.10040.4.3"), "SHA1withDSA"},
+            {oid("2.16.840.1.101.3.4.3.2"), "SHA256withDSA"},
+            {oid("1.3.101.112"), "Ed25519"},
+            {oid("1.3.101.113"), "Ed448"},
+    };
+
+    private static final Object[][] CURVES = {
+            {oid("1.2.840.10045.3.1.1"), 192},
+            {oid("1.3.132.0.33"), 224},
+            {oid("1.2.840.10045.3.1.7"), 256},
+            {oid("1.3.132.0.10"), 256},
+            {oid("1.3.132.0.34"), 384},
+            {oid("1.3.132.0.35"), 521},
+            {oid("1.3.36.3.3.2.8.1.1.7"), 256},
+            {oid("1.3.36.3.3.2.8.1.1.11"), 384},
+            {oid("1.3.36.3.3.2.8.1.1.13"), 512},
+    };
+
+    private byte[] der;
+    private X509Certificate certificate;
+
+    private boolean indexed;
+    private int signature;
+    private int issuer;
+    private int validity;
+    private int subject;
+    private int publicKeyInfo;
+    private int extensions;
+
+    private String subjectName;
+    private String issuerName;
+
+    private CertView(byte[] der, X509Certificate certificate) {
+        this.der = der;
+        this.certificate = certificate;
+    }
+
+    /**
+     * @return a view for walking an extnValue OCTET STRING, as returned by
+     * {@link X509Certificate#getExtensionValue(String)}, from offset 0.
+     */
+    private static CertView extensionValue(byte[] value) {
+        CertView view = new CertView(value, null);
+        view.indexed = true;
+        return view;
+    }
+
+    /**
+     * @param der a DER-encoded X.509 certificate; not copied.
+     */
+    public static CertView of(byte[] der) {
+        return new CertView(der, null);
+    }
+
+    public static CertView of(X509Certificate certificate) {
+        return new CertView(null, certificate);
+    }
+
+    public static CertView[] of(X509Certificate[] chain) {
+        CertView[] views = new CertView[chain.length];
+        for (int i = 0; i < chain.length; i++) {
+            views[i] = of(chain[i]);
+        }
+        return views;
+    }
+
+    /**
+     * @return the decoded certificate, parsed through the {@link CertificateRegistry} on first call if the view was
+     * created from bytes.
+     */
+    public X509Certificate certificate() {
+        if (certificate == null) {
+            certificate = CertificateRegistry.INSTANCE.certificate(der);
+        }
+        return certificate;
+    }
+
+    public CanonicalName subject() {
+        if (certificate != null) {
+            return PrincipalTable.INSTANCE.subject(certificate);
+        }
+        index();
+        return PrincipalTable.INSTANCE.intern(der, subject, end(subject) - subject);
+    }
+
+    public CanonicalName issuer() {
+        if (certificate != null) {
+            return PrincipalTable.INSTANCE.issuer(certificate);
+        }
+        index();
+        return PrincipalTable.INSTANCE.intern(der, issuer, end(issuer) - issuer);
+    }
+
+    /**
+     * @return the subject in RFC 2253 form, as {@link X500Principal#getName()}. Rendered on first call; call it
+     * only where the name is reported.
+     */
+    public String subjectName() {
+        if (subjectName == null) {
+            if (certificate != null) {
+                subjectName = certificate.getSubjectX500Principal().getName();
+            } else {
+                index();
+                subjectName = principal(subject).getName();
+            }
+        }
+        return subjectName;
+    }
+
+    /**
+     * @return the issuer in RFC 2253 form, as {@link X500Principal#getName()}. Rendered on first call; call it
+     * only where the name is reported.
+     */
+    public String issuerName() {
+        if (issuerName == null) {
+            if (certificate != null) {
+                issuerName = certificate.getIssuerX500Principal().getName();
+            } else {
+                index();
+                issuerName = principal(issuer).getName();
+            }
+        }
+        return issuerName;
+    }
+
+    public Instant notBefore() {
+        if (certificate != null) {
+            return certificate.getNotBefore().toInstant();
+        }
+        index();
+        return time(content(validity));
+    }
+
+    public Instant notAfter() {
+        if (certificate != null) {
+            return certificate.getNotAfter().toInstant();
+        }
+        index();
+        return time(end(content(validity)));
+    }
+
+    /**
+     * @return the JCA name of the signature algorithm (as {@link X509Certificate#getSigAlgName()} for common
+     * algorithms), or its dotted OID if unknown.
+     */
+    public String signatureAlgorithm() {
+        if (certificate != null) {
+            return certificate.getSigAlgName();
+        }
+        index();
+        int oid = content(signature);
+        for (Object[] algorithm : SIGNATURE_ALGORITHMS) {
+            if (matches(oid, (byte[]) algorithm[0])) {
+                return (String) algorithm[1];
+            }
+        }
+        return dotted(oid);
+    }
+
+    /**
+     * @return "RSA", "RSASSA-PSS", "EC", or for other public key algorithms the JCA name, or the dotted OID in views
+     * of bytes.
+     */
+    public String keyAlgorithm() {
+        if (certificate != null) {
+            return certificate.getPublicKey().getAlgorithm();
+        }
+        index();
+        int oid = content(content(publicKeyInfo));
+        if (matches(oid, RSA)) {
+            return "RSA";
+        } else if (matches(oid, RSASSA_PSS)) {
+            return "RSASSA-PSS";
+        } else if (matches(oid, EC)) {
+            return "EC";
+        }
+        return dotted(oid);
+    }
+
+    /**
+     * @return the RSA modulus length, RSASSA-PSS keys included, or the EC curve order length in bits, or 0 for other
+     * key types.
+     */
+    public int keySize() {
+        if (certificate != null) {
+            PublicKey key = certificate.getPublicKey();
+            if (key instanceof RSAPublicKey rsa) {
+                return rsa.getModulus().bitLength();
+            } else if (key instanceof ECPublicKey ec) {
+                return ec.getParams().getOrder().bitLength();
+            }
+            return 0;
+        }
+
+        index();
+
+        int algorithm = content(publicKeyInfo);
+        int oid = content(algorithm);
+        int key = end(algorithm);
+
+        if (matches(oid, RSA) || matches(oid, RSASSA_PSS)) {
+            // BIT STRING { unused bits, SEQUENCE { INTEGER modulus, INTEGER exponent } }
+            int modulus = content(content(key) + 1);
+            return integerBits(content(modulus), length(modulus));
+        } else if (matches(oid, EC)) {
+            int parameters = end(oid);
+            if (parameters < end(algorithm) && tag(parameters) == OBJECT_IDENTIFIER) {
+                for (Object[] curve : CURVES) {
+                    if (matches(parameters, (byte[]) curve[0])) {
+                        return (Integer) curve[1];
+                    }
+                }
+            }
+            // Uncompressed point: unused bits, 0x04, X, Y.
+            return (length(key) - 2) / 2 * 8;
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the caIssuers URLs of the Authority Information Access extension.
+     */
+    public List<String> caIssuersUrls() {
+        return accessLocations(CA_ISSUERS);
+    }
+
+    /**
+     * @return the OCSP URLs of the Authority Information Access extension.
+     */
+    public List<String> ocspUrls() {
+        return accessLocations(OCSP);
+    }
+
+    /**
+     * @return the number of embedded Signed Certificate Timestamps, or 0 if the extension is absent or malformed.
+     * @throws IllegalArgumentException if the certificate itself is malformed.
+     */
+    public int sctCount() {
+
+        if (certificate != null) {
+            byte[] value = certificate.getExtensionValue(SCT_LIST_OID);
+            return value != null ? extensionValue(value).sctCount(0) : 0;
+        }
+
+        int value = extension(SCT_LIST);
+        return value >= 0 ? sctCount(value) : 0;
+    }
+
+    private int sctCount(int value) {
+        try {
+            // extnValue OCTET STRING { OCTET STRING { uint16 list length, { uint16 length, SCT }* } }
+            int list = content(value);
+            if (tag(list) != OCTET_STRING) {
+                return 0;
+            }
+
+            int position = content(list);
+            int limit = end(list);
+            int total = u16(position);
+            position += 2;
+
+            int count = 0;
+            int read = 0;
+            while (read < total && position + 2 <= limit) {
+                int length = u16(position);
+                position += 2 + length;
+                read += 2 + length;
+                count++;
+            }
+
+            return count;
+
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private List<String> accessLocations(byte[] method) {
+
+        if (certificate != null) {
+            byte[] value = certificate.getExtensionValue(AIA_OID);
+            return value != null ? extensionValue(value).accessLocations(0, method) : List.of();
+        }
+
+        int value = extension(AIA);
+        return value >= 0 ? accessLocations(value, method) : List.of();
+    }
+
+    private List<String> accessLocations(int value, byte[] method) {
+
+        // extnValue OCTET STRING { SEQUENCE OF SEQUENCE { OID accessMethod, GeneralName accessLocation } }
+        List<String> urls = new ArrayList<>(1);
+        int descriptions = content(value);
+        for (int d = content(descriptions); d < end(descriptions); d = end(d)) {
+            int oid = content(d);
+            int location = end(oid);
+            if (matches(oid, method) && tag(location) == URI) {
+                urls.add(new String(der, content(location), length(location), StandardCharsets.US_ASCII));
+            }
+        }
+
+        return urls;
+    }
+
+    /**
+     * @return the offset of the extnValue OCTET STRING of the given extension, or -1 if absent.
+     */
+    private int extension(byte[] oid) {
+
+        index();
+        if (extensions < 0) {
+            return -1;
+        }
+
+        int list = content(extensions);
+        for (int e = content(list); e < end(list); e = end(e)) {
+
+            int id = content(e);
+            if (!matches(id, oid)) {
+                continue;
+            }
+
+            int value = end(id);
+            if (tag(value) == BOOLEAN) {
+                value = end(value);
+            }
+
+            return tag(value) == OCTET_STRING ? value : -1;
+        }
+
+        return -1;
+    }
+
+    private void index() {
+
+        if (indexed) {
+            return;
+        }
+
+        if (der == null) {
+            try {
+                der = certificate.getEncoded();
+            } catch (CertificateEncodingException e) {
+                throw new RuntimeException("Unable to encode certificate [" + certificate.getSubjectX500Principal() + "].", e);
+            }
+        }
+
+        try {
+            // Certificate SEQUENCE { TBSCertificate SEQUENCE { ... }, signatureAlgorithm, signature }
+            int tbs = content(0);
+            if (tag(0) != SEQUENCE || tag(tbs) != SEQUENCE) {
+                throw new IllegalArgumentException("Not a DER-encoded certificate.");
+            }
+
+            int field = content(tbs);
+            if (tag(field) == VERSION) {
+                field = end(field);
+            }
+
+            int serial = field;
+            if (tag(serial) != INTEGER) {
+                throw new IllegalArgumentException("Missing serial number.");
+            }
+
+            signature = end(serial);
+            issuer = end(signature);
+            validity = end(issuer);
+            subject = end(validity);
+            publicKeyInfo = end(subject);
+
+            extensions = -1;
+            for (int f = end(publicKeyInfo); f < end(tbs); f = end(f)) {
+                if (tag(f) == EXTENSIONS) {
+                    extensions = f;
+                }
+            }
+
+            indexed = true;
+
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed DER-encoded certificate.", e);
+        }
+    }
+
+    private X500Principal principal(int offset) {
+        try {
+            return new X500Principal(Arrays.copyOfRange(der, offset, end(offset)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed distinguished name at offset " + offset + ".", e);
+        }
+    }
+
+    private int tag(int offset) {
+        if (offset < 0 || offset >= der.length) {
+            throw truncated(offset);
+        }
+        return der[offset] & 0xff;
+    }
+
+    private int length(int offset) {
+
+        int length = octet(offset + 1);
+        if (length < 0x80) {
+            return checked(offset, offset + 2, length);
+        }
+
+        int octets = length & 0x7f;
+        if (octets == 0 || octets > 3) {
+            throw new IllegalArgumentException("Unsupported DER length at offset " + offset + ".");
+        }
+
+        length = 0;
+        for (int i = 0; i < octets; i++) {
+            length = (length << 8) | octet(offset + 2 + i);
+        }
+
+        return checked(offset, offset + 2 + octets, length);
+    }
+
+    /**
+     * @return {@code length}, if the content it describes lies within the encoding.
+     */
+    private int checked(int offset, int content, int length) {
+        if (content + length > der.length) {
+            throw truncated(offset);
+        }
+        return length;
+    }
+
+    private int content(int offset) {
+        int first = octet(offset + 1);
+        return offset + 2 + (first < 0x80 ? 0 : first & 0x7f);
+    }
+
+    private int end(int offset) {
+        return content(offset) + length(offset);
+    }
+
+    private int u16(int offset) {
+        return (octet(offset) << 8) | octet(offset + 1);
+    }
+
+    private int octet(int offset) {
+        if (offset < 0 || offset >= der.length) {
+            throw truncated(offset);
+        }
+        return der[offset] & 0xff;
+    }
+
+    private static IllegalArgumentException truncated(int offset) {
+        return new IllegalArgumentException("Truncated DER-encoded certificate at offset " + offset + ".");
+    }
+
+    private boolean matches(int offset, byte[] oid) {
+        return tag(offset) == OBJECT_IDENTIFIER && length(offset) == oid.length
+                && Arrays.equals(der, content(offset), content(offset) + oid.length, oid, 0, oid.length);
+    }
+
+    private int integerBits(int offset, int length) {
+
+        while (length > 1 && octet(offset) == 0) {
+            offset++;
+            length--;
+        }
+
+        return (length - 1) * 8 + (32 - Integer.numberOfLeadingZeros(octet(offset)));
+    }
+
+    private Instant time(int offset) {
+
+        int position = content(offset);
+        int year;
+        if (tag(offset) == UTC_TIME) {
+            year = digits(position, 2);
+            year += year < 50 ? 2000 : 1900;
+            position += 2;
+        } else if (tag(offset) == GENERALIZED_TIME) {
+            year = digits(position, 4);
+            position += 4;
+        } else {
+            throw new IllegalArgumentException("Unsupported time encoding at offset " + offset + ".");
+        }
+
+        long days;
+        try {
+            days = LocalDate.of(year, digits(position, 2), digits(position + 2, 2)).toEpochDay();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid date at offset " + offset + ".", e);
+        }
+        long seconds = days * 86_400L
+                + digits(position + 4, 2) * 3_600L
+                + digits(position + 6, 2) * 60L
+                + digits(position + 8, 2);
+
+        return Instant.ofEpochSecond(seconds);
+    }
+
+    private int digits(int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = octet(offset + i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid time digit at offset " + (offset + i) + ".");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private String dotted(int offset) {
+
+        int position = content(offset);
+        int end = end(offset);
+
+        StringBuilder buffer = new StringBuilder();
+        long value = 0;
+        boolean first = true;
+        for (int i = position; i < end; i++) {
+            value = (value << 7) | (der[i] & 0x7f);
+            if ((der[i] & 0x80) == 0) {
+                if (first) {
+                    int arc = (int) Math.min(value / 40, 2);
+                    buffer.append(arc).append('.').append(value - arc * 40L);
+                    first = false;
+                } else {
+                    buffer.append('.').append(value);
+                }
+                value = 0;
+            }
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * @return the DER content octets of the given dotted OID.
+     */
+    private static byte[] oid(String dotted) {
+
+        String[] arcs = dotted.split("\\.");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        encodeArc(out, Long.parseLong(arcs[0]) * 40 + Long.parseLong(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            encodeArc(out, Long.parseLong(arcs[i]));
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void encodeArc(ByteArrayOutputStream out, long arc) {
+
+        int groups = 1;
+        for (long v = arc >>> 7; v != 0; v >>>= 7) {
+            groups++;
+        }
+
+        for (int i = groups - 1; i >= 0; i--) {
+            int b = (int) ((arc >>> (7 * i)) & 0x7f);
+            out.write(i > 0 ? b | 0x80 : b);
+        }
+    }
+}
@@ -50,6 +50,20 @@ public sealed interface Finding {
         }
     }
 
+    record ResolutionFinding(String host, Severity severity, String error) implements Finding {
+        @Override
+        public String summary() {
+            return "Unable to resolve " + host + ": " + error;
+        }
+    }
+
+    record ConnectionFinding(String host, int port, Severity severity, String status, String error) implements Finding {
+        @Override
+        public String summary() {
+            return "Unable to connect to " + host + ":" + port + " (" + status + ")" + (error != null ? ": " + error : "");
+        }
+    }
+
     record TransparencyFinding(String subject, Severity severity, int sctCount) implements Finding {
         @Override
         public String summary() {
@@ -2,10 +2,26 @@ package org.brylex.sancus.audit;
 
 import java.security.cert.X509Certificate;
 
+/**
+ * @param resolvedChain the chain as resolved ahead of the checks, which take it as final, or {@code null} if no
+ *                      resolution was attempted.
+ * @param timings where the time went for this endpoint; checks add the phases they spend on the network.
+ */
 public record HandshakeInfo(String protocol, String cipherSuite, X509Certificate[] serverChain,
-                            X509Certificate[] resolvedChain) {
+                            X509Certificate[] resolvedChain, PhaseTimings timings) {
+
+    public HandshakeInfo {
+        if (timings == null) {
+            timings = new PhaseTimings();
+        }
+    }
 
     public HandshakeInfo(String protocol, String cipherSuite, X509Certificate[] serverChain) {
         this(protocol, cipherSuite, serverChain, null);
     }
+
+    public HandshakeInfo(String protocol, String cipherSuite, X509Certificate[] serverChain,
+                         X509Certificate[] resolvedChain) {
+        this(protocol, cipherSuite, serverChain, resolvedChain, null);
+    }
 }
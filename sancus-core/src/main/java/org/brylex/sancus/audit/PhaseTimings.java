@@ -0,0 +1,117 @@
+package org.brylex.sancus.audit;
+
+import org.brylex.sancus.handshake.HandshakeResult;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time went while auditing one endpoint. The handshake phases are taken from the {@link HandshakeResult};
+ * checks that go to the network add theirs as they run, so several threads may record at once. A phase that occurs
+ * more than once, such as an AIA fetch per missing issuer, accumulates.
+ */
+public final class PhaseTimings {
+
+    public enum Phase {
+        DNS, CONNECT, HANDSHAKE, AIA, OCSP
+    }
+
+    private final Map<Phase, LongAdder> nanos = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> counts = new EnumMap<>(Phase.class);
+
+    public PhaseTimings() {
+        for (Phase phase : Phase.values()) {
+            nanos.put(phase, new LongAdder());
+            counts.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * @return timings holding the lookup, connect and handshake times of {@code result}, as far as it got.
+     */
+    public static PhaseTimings of(HandshakeResult result) {
+        PhaseTimings timings = new PhaseTimings();
+        timings.record(Phase.DNS, result.lookupTime());
+        timings.record(Phase.CONNECT, result.connectTime());
+        timings.record(Phase.HANDSHAKE, result.handshakeTime());
+        return timings;
+    }
+
+    /**
+     * Adds {@code duration} to {@code phase}; a {@code null} duration, for a phase that did not happen, is ignored.
+     */
+    public void record(Phase phase, Duration duration) {
+        if (duration != null) {
+            recordNanos(phase, duration.toNanos());
+        }
+    }
+
+    /**
+     * Adds the time since {@code startNanos}, a {@link System#nanoTime()} reading, to {@code phase}.
+     */
+    public void recordSince(Phase phase, long startNanos) {
+        recordNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the total time recorded for {@code phase}, or {@code null} if it was never recorded.
+     */
+    public Duration get(Phase phase) {
+        return counts.get(phase).sum() == 0 ? null : Duration.ofNanos(nanos.get(phase).sum());
+    }
+
+    /**
+     * @return how often {@code phase} was recorded.
+     */
+    public long count(Phase phase) {
+        return counts.get(phase).sum();
+    }
+
+    /**
+     * @return the recorded phases and their totals, in {@link Phase} order.
+     */
+    public Map<Phase, Duration> toMap() {
+        Map<Phase, Duration> map = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            Duration duration = get(phase);
+            if (duration != null) {
+                map.put(phase, duration);
+            }
+        }
+        return map;
+    }
+
+    public boolean isEmpty() {
+        return toMap().isEmpty();
+    }
+
+    public Duration total() {
+        Duration total = Duration.ZERO;
+        for (Duration duration : toMap().values()) {
+            total = total.plus(duration);
+        }
+        return total;
+    }
+
+    private void recordNanos(Phase phase, long duration) {
+        if (phase == null) {
+            throw new IllegalArgumentException("Phase is required.");
+        }
+        nanos.get(phase).add(Math.max(0, duration));
+        counts.get(phase).increment();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        toMap().forEach((phase, duration) -> {
+            if (!builder.isEmpty()) {
+                builder.append(", ");
+            }
+            builder.append(phase.name().toLowerCase()).append(' ').append(duration.toMillis()).append(" ms");
+        });
+        return builder.toString();
+    }
+}
@@ -1,16 +1,23 @@
 package org.brylex.sancus.audit.check;
 
 import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ChainEntry;
+import org.brylex.sancus.ResolverSource;
 import org.brylex.sancus.audit.AuditCheck;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.Finding.ChainFinding;
 import org.brylex.sancus.audit.HandshakeInfo;
+import org.brylex.sancus.audit.PhaseTimings.Phase;
 import org.brylex.sancus.audit.Severity;
-import org.brylex.sancus.resolver.RemoteResolver;
+import org.brylex.sancus.resolver.ResolverPipeline;
+import org.brylex.sancus.util.PrincipalTable;
 
 import javax.security.auth.x500.X500Principal;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ChainCompletenessCheck implements AuditCheck {
 
@@ -27,26 +34,29 @@ public class ChainCompletenessCheck implements AuditCheck {
         }
 
         X509Certificate[] resolvedChain = handshakeInfo.resolvedChain();
-        if (resolvedChain != null && resolvedChain.length > chain.length) {
+        if (resolvedChain != null && resolvedChain.length > 0) {
+            // resolved ahead of the checks, completely or not; not resolved again
+            int added = added(chain, resolvedChain);
             X509Certificate last = resolvedChain[resolvedChain.length - 1];
             X500Principal issuer = last.getIssuerX500Principal();
-            boolean complete = last.getSubjectX500Principal().equals(issuer);
+            boolean complete = PrincipalTable.INSTANCE.selfIssued(last);
             if (complete) {
-                int extra = resolvedChain.length - chain.length;
                 return List.of(new ChainFinding(Severity.WARNING, chain.length, false,
-                        List.of(extra + " certificate(s) resolved via AIA")));
+                        List.of(added + " certificate(s) resolved via AIA")));
             } else {
                 return List.of(new ChainFinding(Severity.CRITICAL, chain.length, false, List.of(issuer.getName())));
             }
         }
 
+        long start = System.nanoTime();
         try {
-            new RemoteResolver().resolve(certChain);
-        } catch (Exception ignored) {
+            ResolverPipeline.aia().resolve(certChain);
+        } finally {
+            handshakeInfo.timings().recordSince(Phase.AIA, start);
         }
 
         if (certChain.isComplete()) {
-            int resolved = certChain.toList().size() - chain.length;
+            int resolved = downloaded(certChain);
             return List.of(new ChainFinding(Severity.WARNING, chain.length, false,
                     List.of(resolved + " certificate(s) resolved via AIA")));
         }
@@ -55,4 +65,29 @@ public class ChainCompletenessCheck implements AuditCheck {
         String missingIssuer = last.getIssuerX500Principal().getName();
         return List.of(new ChainFinding(Severity.CRITICAL, chain.length, false, List.of(missingIssuer)));
     }
+
+    /**
+     * @return the certificates of {@code resolvedChain} the server did not send. The server chain may hold
+     * certificates the resolved path leaves out, so the lengths say nothing.
+     */
+    private static int added(X509Certificate[] chain, X509Certificate[] resolvedChain) {
+        Set<X509Certificate> sent = new HashSet<>(Arrays.asList(chain));
+        int added = 0;
+        for (X509Certificate certificate : resolvedChain) {
+            if (!sent.contains(certificate)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static int downloaded(CertificateChain chain) {
+        int downloaded = 0;
+        for (ChainEntry entry = chain.head(); entry != null; entry = entry.issuedBy()) {
+            if (entry.resolvedBy() == ResolverSource.REMOTE) {
+                downloaded++;
+            }
+        }
+        return downloaded;
+    }
 }
@@ -1,6 +1,7 @@
 package org.brylex.sancus.audit.check;
 
 import org.brylex.sancus.audit.AuditCheck;
+import org.brylex.sancus.audit.CertView;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.Finding.ExpiryFinding;
 import org.brylex.sancus.audit.HandshakeInfo;
@@ -19,19 +20,23 @@ public class ExpiryCheck implements AuditCheck {
 
     @Override
     public List<Finding> check(HandshakeInfo handshakeInfo, X509Certificate[] chain) {
+        return check(handshakeInfo, CertView.of(chain));
+    }
+
+    @Override
+    public List<Finding> check(HandshakeInfo handshakeInfo, CertView[] chain) {
         List<Finding> findings = new ArrayList<>();
         Instant now = Instant.now();
 
-        for (X509Certificate cert : chain) {
-            String cn = cert.getSubjectX500Principal().getName();
-            Instant notAfter = cert.getNotAfter().toInstant();
-            Instant notBefore = cert.getNotBefore().toInstant();
+        for (CertView cert : chain) {
+            Instant notAfter = cert.notAfter();
+            Instant notBefore = cert.notBefore();
 
             if (now.isAfter(notAfter)) {
                 long daysExpired = Duration.between(notAfter, now).toDays();
-                findings.add(new ExpiryFinding(cn, Severity.CRITICAL, -daysExpired, notAfter));
+                findings.add(new ExpiryFinding(cert.subjectName(), Severity.CRITICAL, -daysExpired, notAfter));
             } else if (now.isBefore(notBefore)) {
-                findings.add(new ExpiryFinding(cn, Severity.CRITICAL, 0, notAfter));
+                findings.add(new ExpiryFinding(cert.subjectName(), Severity.CRITICAL, 0, notAfter));
             } else {
                 long daysLeft = Duration.between(now, notAfter).toDays();
                 Severity severity;
@@ -42,7 +47,7 @@ public class ExpiryCheck implements AuditCheck {
                 } else {
                     severity = Severity.OK;
                 }
-                findings.add(new ExpiryFinding(cn, severity, daysLeft, notAfter));
+                findings.add(new ExpiryFinding(cert.subjectName(), severity, daysLeft, notAfter));
             }
         }
 
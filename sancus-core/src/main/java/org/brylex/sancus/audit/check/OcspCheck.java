@@ -7,7 +7,6 @@ import org.bouncycastle.asn1.ASN1TaggedObject;
 import org.bouncycastle.asn1.DLSequence;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
-import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.CertificateID;
 import org.bouncycastle.cert.ocsp.OCSPReq;
@@ -18,24 +17,34 @@ import org.bouncycastle.cert.ocsp.SingleResp;
 import org.bouncycastle.cert.ocsp.UnknownStatus;
 import org.bouncycastle.operator.DigestCalculatorProvider;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.brylex.sancus.CertificateRegistry;
 import org.brylex.sancus.audit.AuditCheck;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.Finding.RevocationFinding;
 import org.brylex.sancus.audit.HandshakeInfo;
+import org.brylex.sancus.audit.PhaseTimings.Phase;
 import org.brylex.sancus.audit.Severity;
+import org.brylex.sancus.http.HttpFetcher;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class OcspCheck implements AuditCheck {
 
+    private final HttpFetcher fetcher;
+
+    public OcspCheck() {
+        this(HttpFetcher.shared());
+    }
+
+    public OcspCheck(HttpFetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
     @Override
     public List<Finding> check(HandshakeInfo handshakeInfo, X509Certificate[] chain) {
         if (chain.length < 2) {
@@ -55,7 +64,13 @@ public class OcspCheck implements AuditCheck {
 
         try {
             OCSPReq request = buildOcspRequest(leaf, issuer);
-            OCSPResp response = sendOcspRequest(ocspUrl, request);
+            OCSPResp response;
+            long start = System.nanoTime();
+            try {
+                response = sendOcspRequest(ocspUrl, request);
+            } finally {
+                handshakeInfo.timings().recordSince(Phase.OCSP, start);
+            }
 
             if (response.getStatus() != OCSPResp.SUCCESSFUL) {
                 return List.of(new RevocationFinding(cn, Severity.WARNING,
@@ -123,7 +138,7 @@ public class OcspCheck implements AuditCheck {
         DigestCalculatorProvider digCalcProv = new JcaDigestCalculatorProviderBuilder().build();
         CertificateID certId = new CertificateID(
                 digCalcProv.get(CertificateID.HASH_SHA1),
-                new X509CertificateHolder(issuer.getEncoded()),
+                CertificateRegistry.INSTANCE.entry(issuer).holder(),
                 leaf.getSerialNumber());
 
         OCSPReqBuilder builder = new OCSPReqBuilder();
@@ -131,25 +146,14 @@ public class OcspCheck implements AuditCheck {
         return builder.build();
     }
 
-    private static OCSPResp sendOcspRequest(String urlString, OCSPReq request) throws Exception {
-        byte[] requestBytes = request.getEncoded();
-        URL url = URI.create(urlString).toURL();
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/ocsp-request");
-        connection.setRequestProperty("Accept", "application/ocsp-response");
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(10000);
-        connection.setDoOutput(true);
-
-        try (OutputStream out = connection.getOutputStream()) {
-            out.write(requestBytes);
-        }
+    private OCSPResp sendOcspRequest(String urlString, OCSPReq request) throws Exception {
+        HttpFetcher.Response response = fetcher.post(URI.create(urlString), "application/ocsp-request",
+                request.getEncoded(), Map.of("Accept", "application/ocsp-response"));
 
-        try (InputStream in = connection.getInputStream()) {
-            return new OCSPResp(in.readAllBytes());
-        } finally {
-            connection.disconnect();
+        if (!response.successful()) {
+            throw new IOException("OCSP responder [" + urlString + "] returned HTTP " + response.statusCode() + ".");
         }
+
+        return new OCSPResp(response.body());
     }
 }
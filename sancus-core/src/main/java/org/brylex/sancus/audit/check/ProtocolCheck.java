@@ -33,4 +33,12 @@ public class ProtocolCheck implements AuditCheck {
 
         return findings;
     }
+
+    /**
+     * Only a completed handshake shows that the server goes through with the protocol and cipher suite it chose.
+     */
+    @Override
+    public boolean requiresFullHandshake() {
+        return true;
+    }
 }
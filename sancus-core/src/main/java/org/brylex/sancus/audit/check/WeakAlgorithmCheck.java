@@ -1,14 +1,13 @@
 package org.brylex.sancus.audit.check;
 
 import org.brylex.sancus.audit.AuditCheck;
+import org.brylex.sancus.audit.CertView;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.Finding.WeakAlgorithmFinding;
 import org.brylex.sancus.audit.HandshakeInfo;
 import org.brylex.sancus.audit.Severity;
 
 import java.security.cert.X509Certificate;
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPublicKey;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,20 +15,24 @@ public class WeakAlgorithmCheck implements AuditCheck {
 
     @Override
     public List<Finding> check(HandshakeInfo handshakeInfo, X509Certificate[] chain) {
+        return check(handshakeInfo, CertView.of(chain));
+    }
+
+    @Override
+    public List<Finding> check(HandshakeInfo handshakeInfo, CertView[] chain) {
         List<Finding> findings = new ArrayList<>();
 
-        for (X509Certificate cert : chain) {
-            String cn = cert.getSubjectX500Principal().getName();
-            String sigAlg = cert.getSigAlgName();
+        for (CertView cert : chain) {
+            String sigAlg = cert.signatureAlgorithm();
             String sigAlgUpper = sigAlg.toUpperCase();
 
             if (sigAlgUpper.contains("SHA1") || sigAlgUpper.contains("SHA-1")) {
-                findings.add(new WeakAlgorithmFinding(cn, Severity.CRITICAL, sigAlg, 0));
+                findings.add(new WeakAlgorithmFinding(cert.subjectName(), Severity.CRITICAL, sigAlg, 0));
             }
 
-            var publicKey = cert.getPublicKey();
-            if (publicKey instanceof RSAPublicKey rsa) {
-                int bitLength = rsa.getModulus().bitLength();
+            String keyAlgorithm = cert.keyAlgorithm();
+            if (keyAlgorithm.equals("RSA") || keyAlgorithm.equals("RSASSA-PSS")) {
+                int bitLength = cert.keySize();
                 Severity severity;
                 if (bitLength < 2048) {
                     severity = Severity.CRITICAL;
@@ -38,11 +41,11 @@ public class WeakAlgorithmCheck implements AuditCheck {
                 } else {
                     severity = Severity.OK;
                 }
-                findings.add(new WeakAlgorithmFinding(cn, severity, sigAlg, bitLength));
-            } else if (publicKey instanceof ECPublicKey ec) {
-                int bitLength = ec.getParams().getOrder().bitLength();
+                findings.add(new WeakAlgorithmFinding(cert.subjectName(), severity, sigAlg, bitLength));
+            } else if (keyAlgorithm.equals("EC")) {
+                int bitLength = cert.keySize();
                 Severity severity = bitLength < 256 ? Severity.CRITICAL : Severity.OK;
-                findings.add(new WeakAlgorithmFinding(cn, severity, sigAlg, bitLength));
+                findings.add(new WeakAlgorithmFinding(cert.subjectName(), severity, sigAlg, bitLength));
             }
         }
 
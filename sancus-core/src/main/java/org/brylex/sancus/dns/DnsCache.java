@@ -0,0 +1,193 @@
+package org.brylex.sancus.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolver.LookupPolicy;
+import java.security.Security;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the answers of an {@link InetAddressResolver} for a fixed time to live: addresses for
+ * {@link Config#positiveTtl()}, failed lookups for {@link Config#negativeTtl()}. Concurrent lookups of the same name
+ * share one query, so a target list naming a host many times resolves it once.
+ * <p>
+ * The default TTLs are those of the JVM's own cache, the {@code networkaddress.cache.ttl} and
+ * {@code networkaddress.cache.negative.ttl} security properties, but unlike that cache this one can be inspected and
+ * cleared. It is meant to take the place of the JVM's cache, not to sit on top of it: given a resolver that already
+ * caches, such as {@link ResolutionStage#system()}, answers may be kept for up to twice the TTL.
+ */
+public final class DnsCache {
+
+    private static final LookupPolicy ANY = LookupPolicy.of(LookupPolicy.IPV4 | LookupPolicy.IPV6);
+
+    /**
+     * @param positiveTtl how long addresses are kept.
+     * @param negativeTtl how long a failed lookup is kept.
+     * @param maxEntries  names kept at most; expired entries, and then arbitrary ones, are dropped beyond that.
+     */
+    public record Config(Duration positiveTtl, Duration negativeTtl, int maxEntries) {
+
+        public static final Config DEFAULT = new Config(ttl("networkaddress.cache.ttl", Duration.ofSeconds(30)),
+                ttl("networkaddress.cache.negative.ttl", Duration.ofSeconds(10)), 65536);
+
+        public Config {
+            if (positiveTtl == null || negativeTtl == null || positiveTtl.isNegative() || negativeTtl.isNegative()
+                    || maxEntries <= 0) {
+                throw new IllegalArgumentException("Non-negative TTLs and a positive entry limit are required.");
+            }
+        }
+
+        private static Duration ttl(String property, Duration fallback) {
+            try {
+                String value = Security.getProperty(property);
+                if (value != null && !value.isBlank()) {
+                    long seconds = Long.parseLong(value.trim());
+                    return seconds < 0 ? Duration.ofDays(365) : Duration.ofSeconds(seconds);
+                }
+            } catch (NumberFormatException e) {
+                // not a number of seconds; use the fallback
+            }
+            return fallback;
+        }
+    }
+
+    /**
+     * Counters since creation.
+     *
+     * @param hits         lookups answered from the cache, failures included, or by joining a query in flight.
+     * @param negativeHits hits that were failed lookups.
+     * @param queries      lookups passed on to the resolver.
+     */
+    public record Stats(long hits, long negativeHits, long queries) {
+    }
+
+    private record Entry(List<InetAddress> addresses, UnknownHostException error, Instant expires) {
+
+        private boolean fresh(Instant now) {
+            return now.isBefore(expires);
+        }
+    }
+
+    private final InetAddressResolver resolver;
+    private final Config config;
+    private final Clock clock;
+    private final Map<String, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    public DnsCache(InetAddressResolver resolver, Config config) {
+        this(resolver, config, Clock.systemUTC());
+    }
+
+    DnsCache(InetAddressResolver resolver, Config config, Clock clock) {
+
+        if (resolver == null || config == null) {
+            throw new IllegalArgumentException("Resolver and config are required.");
+        }
+
+        this.resolver = resolver;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the addresses of {@code host}, in the order the resolver gave them.
+     * @throws UnknownHostException if the resolver failed, now or within the negative TTL.
+     */
+    public List<InetAddress> lookup(String host) throws UnknownHostException {
+
+        String key = host.toLowerCase(Locale.ROOT);
+
+        while (true) {
+
+            CompletableFuture<Entry> cached = entries.get(key);
+            if (cached != null) {
+                if (!cached.isDone() || cached.join().fresh(clock.instant())) {
+                    Entry entry = cached.join();
+                    hits.increment();
+                    if (entry.error() != null) {
+                        negativeHits.increment();
+                    }
+                    return addresses(entry);
+                }
+                entries.remove(key, cached);
+                continue;
+            }
+
+            CompletableFuture<Entry> query = new CompletableFuture<>();
+            if (entries.putIfAbsent(key, query) != null) {
+                continue;
+            }
+
+            queries.increment();
+            Entry entry;
+            try {
+                entry = query(host);
+            } catch (RuntimeException e) {
+                entries.remove(key, query);
+                query.completeExceptionally(e);
+                throw e;
+            }
+            query.complete(entry);
+
+            if (entries.size() > config.maxEntries()) {
+                evict();
+            }
+
+            return addresses(entry);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), negativeHits.sum(), queries.sum());
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private Entry query(String host) {
+        try {
+            List<InetAddress> addresses = resolver.lookupByName(host, ANY).toList();
+            if (addresses.isEmpty()) {
+                throw new UnknownHostException(host);
+            }
+            return new Entry(addresses, null, clock.instant().plus(config.positiveTtl()));
+        } catch (UnknownHostException e) {
+            return new Entry(null, e, clock.instant().plus(config.negativeTtl()));
+        }
+    }
+
+    private static List<InetAddress> addresses(Entry entry) throws UnknownHostException {
+        if (entry.error() != null) {
+            throw entry.error();
+        }
+        return entry.addresses();
+    }
+
+    private void evict() {
+
+        Instant now = clock.instant();
+        entries.values().removeIf(future -> future.isDone() && !future.isCompletedExceptionally()
+                && !future.join().fresh(now));
+
+        Iterator<CompletableFuture<Entry>> iterator = entries.values().iterator();
+        while (entries.size() > config.maxEntries() && iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+}
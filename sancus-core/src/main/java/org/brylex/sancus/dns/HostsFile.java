@@ -0,0 +1,148 @@
+package org.brylex.sancus.dns;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * An {@link InetAddressResolver} answering from a table in {@code /etc/hosts} format: an address followed by the
+ * names it answers for, one address per line, {@code #} starting a comment. Names are matched case-insensitively; a
+ * name listed on several lines resolves to all of their addresses, in file order. Names and addresses that are not
+ * in the table go to the fallback resolver, if any.
+ */
+public final class HostsFile implements InetAddressResolver {
+
+    private final Map<String, List<InetAddress>> byName;
+    private final Map<InetAddress, String> byAddress;
+    private final InetAddressResolver fallback;
+
+    private HostsFile(Map<String, List<InetAddress>> byName, Map<InetAddress, String> byAddress,
+                      InetAddressResolver fallback) {
+        this.byName = byName;
+        this.byAddress = byAddress;
+        this.fallback = fallback;
+    }
+
+    /**
+     * @param fallback resolves what the file does not list, or {@code null} to fail those lookups.
+     */
+    public static HostsFile load(Path path, InetAddressResolver fallback) throws IOException {
+        return parse(Files.readAllLines(path), fallback);
+    }
+
+    /**
+     * Parses hosts file lines; lines that do not start with an address literal are skipped.
+     */
+    public static HostsFile parse(List<String> lines, InetAddressResolver fallback) {
+
+        Map<String, List<InetAddress>> byName = new HashMap<>();
+        Map<InetAddress, String> byAddress = new HashMap<>();
+
+        for (String line : lines) {
+
+            int comment = line.indexOf('#');
+            String[] tokens = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+            if (tokens.length < 2) {
+                continue;
+            }
+
+            InetAddress literal = literal(tokens[0]);
+            if (literal == null) {
+                continue;
+            }
+
+            for (int i = 1; i < tokens.length; i++) {
+                String name = tokens[i].toLowerCase(Locale.ROOT);
+                try {
+                    InetAddress address = InetAddress.getByAddress(tokens[i], literal.getAddress());
+                    byName.computeIfAbsent(name, key -> new ArrayList<>()).add(address);
+                    byAddress.putIfAbsent(literal, tokens[i]);
+                } catch (UnknownHostException e) {
+                    // not reached; the address came from a literal
+                }
+            }
+        }
+
+        byName.replaceAll((name, addresses) -> List.copyOf(addresses));
+        return new HostsFile(Map.copyOf(byName), Map.copyOf(byAddress), fallback);
+    }
+
+    /**
+     * @return the names listed, in lower case.
+     */
+    public Set<String> names() {
+        return byName.keySet();
+    }
+
+    @Override
+    public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy) throws UnknownHostException {
+
+        List<InetAddress> addresses = byName.get(host.toLowerCase(Locale.ROOT));
+        if (addresses == null) {
+            if (fallback != null) {
+                return fallback.lookupByName(host, lookupPolicy);
+            }
+            throw new UnknownHostException(host);
+        }
+
+        int characteristics = lookupPolicy.characteristics();
+        boolean ipv4 = (characteristics & LookupPolicy.IPV4) != 0;
+        boolean ipv6 = (characteristics & LookupPolicy.IPV6) != 0;
+
+        List<InetAddress> matching = new ArrayList<>(addresses.size());
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet4Address ? ipv4 : ipv6) {
+                matching.add(address);
+            }
+        }
+
+        if (matching.isEmpty()) {
+            throw new UnknownHostException(host);
+        }
+
+        if ((characteristics & LookupPolicy.IPV4_FIRST) != 0) {
+            matching.sort(Comparator.comparing(address -> address instanceof Inet6Address));
+        } else if ((characteristics & LookupPolicy.IPV6_FIRST) != 0) {
+            matching.sort(Comparator.comparing(address -> address instanceof Inet4Address));
+        }
+
+        return matching.stream();
+    }
+
+    @Override
+    public String lookupByAddress(byte[] addr) throws UnknownHostException {
+
+        String name = byAddress.get(InetAddress.getByAddress(addr));
+        if (name != null) {
+            return name;
+        }
+        if (fallback != null) {
+            return fallback.lookupByAddress(addr);
+        }
+        throw new UnknownHostException("No name for " + InetAddress.getByAddress(addr).getHostAddress());
+    }
+
+    /**
+     * @return {@code value} as an address if it is an IPv4 or IPv6 literal, without consulting any resolver.
+     */
+    static InetAddress literal(String value) {
+        try {
+            return InetAddress.ofLiteral(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
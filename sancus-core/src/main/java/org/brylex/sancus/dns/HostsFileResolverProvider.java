@@ -0,0 +1,85 @@
+package org.brylex.sancus.dns;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolverProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Lets a {@link HostsFile} stand in for DNS for the whole JVM, for tests and closed environments.
+ * <p>
+ * The provider is not registered by this jar, as that would make it the resolver of every application embedding it.
+ * It is registered for the tests, and an application opts in by listing it in its own
+ * {@code META-INF/services/java.net.spi.InetAddressResolverProvider}. Each lookup checks the {@value #PROPERTY} system property: while it names a hosts file, that file answers first and
+ * the built-in resolver handles the rest; while it is unset, lookups go to the built-in resolver only. The file is
+ * re-read when the property or the file's modification time changes.
+ */
+public final class HostsFileResolverProvider extends InetAddressResolverProvider {
+
+    public static final String PROPERTY = "sancus.dns.hosts";
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    @Override
+    public InetAddressResolver get(Configuration configuration) {
+        return new Switching(configuration.builtinResolver());
+    }
+
+    @Override
+    public String name() {
+        return "sancus-hosts-file";
+    }
+
+    private record Loaded(Path path, FileTime modified, HostsFile hosts) {
+    }
+
+    private static final class Switching implements InetAddressResolver {
+
+        private final InetAddressResolver builtin;
+        private volatile Loaded loaded;
+
+        private Switching(InetAddressResolver builtin) {
+            this.builtin = builtin;
+        }
+
+        @Override
+        public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy) throws UnknownHostException {
+            return current().lookupByName(host, lookupPolicy);
+        }
+
+        @Override
+        public String lookupByAddress(byte[] addr) throws UnknownHostException {
+            return current().lookupByAddress(addr);
+        }
+
+        private InetAddressResolver current() {
+
+            String value = System.getProperty(PROPERTY);
+            if (value == null || value.isBlank()) {
+                return builtin;
+            }
+
+            Path path = Paths.get(value);
+            try {
+                FileTime modified = Files.getLastModifiedTime(path);
+                Loaded current = loaded;
+                if (current == null || !current.path().equals(path) || !current.modified().equals(modified)) {
+                    current = new Loaded(path, modified, HostsFile.load(path, builtin));
+                    loaded = current;
+                }
+                return current.hosts();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to read hosts file [" + path + "]; using the built-in resolver.", e);
+                return builtin;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.brylex.sancus.dns;
+
+import org.brylex.sancus.handshake.HandshakeTarget;
+import org.brylex.sancus.resolver.AsyncResolvers;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * Resolves handshake targets ahead of the handshakes: in parallel, and through a {@link DnsCache} so that a name
+ * listed many times is looked up once. Address literals are taken as they are.
+ * <p>
+ * The {@link #shared()} stage goes through {@link #system()}; answers are left to the JVM's own address cache, and the
+ * {@link DnsCache} only shares the lookups in flight.
+ */
+public final class ResolutionStage {
+
+    /**
+     * @param addresses the addresses of the target, empty if it did not resolve.
+     * @param time      time taken, including any wait for the same name being resolved for another target.
+     * @param error     why the target did not resolve, {@code null} if it did.
+     */
+    public record Resolution(HandshakeTarget target, List<InetAddress> addresses, Duration time,
+                             UnknownHostException error) {
+
+        public boolean resolved() {
+            return error == null;
+        }
+    }
+
+    private static final class DefaultInstance {
+        // the JVM caches the answers already; only share the queries in flight
+        private static final ResolutionStage INSTANCE = new ResolutionStage(new DnsCache(system(),
+                new DnsCache.Config(Duration.ZERO, Duration.ZERO, DnsCache.Config.DEFAULT.maxEntries())),
+                AsyncResolvers.defaultExecutor());
+    }
+
+    private final DnsCache cache;
+    private final Executor executor;
+
+    public ResolutionStage(DnsCache cache, Executor executor) {
+
+        if (cache == null || executor == null) {
+            throw new IllegalArgumentException("Cache and executor are required.");
+        }
+
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the process-wide stage, querying {@link #system()} on virtual threads and leaving its answers to the
+     * JVM's cache.
+     */
+    public static ResolutionStage shared() {
+        return DefaultInstance.INSTANCE;
+    }
+
+    /**
+     * @return a resolver going through {@link InetAddress#getAllByName(String)}, and so through whichever
+     * {@link java.net.spi.InetAddressResolverProvider} the JVM has installed.
+     */
+    public static InetAddressResolver system() {
+        return new InetAddressResolver() {
+            @Override
+            public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy) throws UnknownHostException {
+                return Arrays.stream(InetAddress.getAllByName(host));
+            }
+
+            @Override
+            public String lookupByAddress(byte[] addr) throws UnknownHostException {
+                return InetAddress.getByAddress(addr).getCanonicalHostName();
+            }
+        };
+    }
+
+    public DnsCache cache() {
+        return cache;
+    }
+
+    public Resolution resolve(HandshakeTarget target) {
+
+        long start = System.nanoTime();
+
+        InetAddress literal = HostsFile.literal(target.host());
+        if (literal != null) {
+            return new Resolution(target, List.of(literal), Duration.ofNanos(System.nanoTime() - start), null);
+        }
+
+        try {
+            List<InetAddress> addresses = cache.lookup(target.host());
+            return new Resolution(target, addresses, Duration.ofNanos(System.nanoTime() - start), null);
+        } catch (UnknownHostException e) {
+            return new Resolution(target, List.of(), Duration.ofNanos(System.nanoTime() - start), e);
+        } catch (RuntimeException e) {
+            UnknownHostException error = new UnknownHostException(target.host() + ": " + e.getMessage());
+            error.initCause(e);
+            return new Resolution(target, List.of(), Duration.ofNanos(System.nanoTime() - start), error);
+        }
+    }
+
+    /**
+     * @return a future of the resolutions in the order of {@code targets}; it never completes exceptionally.
+     */
+    public CompletableFuture<List<Resolution>> resolveAll(Collection<HandshakeTarget> targets) {
+
+        List<CompletableFuture<Resolution>> futures = new ArrayList<>(targets.size());
+        for (HandshakeTarget target : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> resolve(target), executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<Resolution> resolutions = new ArrayList<>(futures.size());
+            for (CompletableFuture<Resolution> future : futures) {
+                resolutions.add(future.join());
+            }
+            return resolutions;
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package org.brylex.sancus.handshake;
+
+/**
+ * How far a handshake is taken, see {@link HandshakeClient} and {@link NioHandshakeEngine}.
+ */
+public enum CaptureMode {
+
+    /**
+     * Complete the handshake, so that the protocol and cipher suite are those of an established session.
+     */
+    FULL,
+
+    /**
+     * Abort the handshake as soon as the server's chain has been received and accepted by the verifier, if any.
+     * Protocol and cipher suite are those negotiated so far, and the server sees a failed handshake (a fatal alert).
+     * <p>
+     * What this saves depends on the protocol. With TLS 1.2 the client's key exchange and the wait for the server's
+     * {@code Finished} are skipped, which is one round trip. With TLS 1.3 the keys are agreed in the
+     * {@code ServerHello} already and the client's {@code Finished} needs no answer, so no round trip is saved; only
+     * the check of the server's signature ({@code CertificateVerify}) and {@code Finished} is.
+     */
+    CERTIFICATE_ONLY
+}
@@ -0,0 +1,386 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.handshake.HandshakeResult.Status;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Performs TLS handshakes and reports what the server presented, for any number of targets.
+ * <p>
+ * One {@link SSLContext} is shared by all connections. Its trust manager records the server's chain and hands it to
+ * the trust manager supplied for that connection, if any, so that trust can still be decided per call. SNI is set
+ * per connection from the host name. Sessions are invalidated after each handshake so that the next handshake with
+ * the same server is a full one and presents the chain again. In {@link CaptureMode#CERTIFICATE_ONLY} the handshake is
+ * abandoned once the chain is in, and the result is still {@link Status#SUCCESS}; that saves a round trip with TLS 1.2
+ * but not with TLS 1.3.
+ */
+public final class HandshakeClient {
+
+    private static final X509Certificate[] NONE = new X509Certificate[0];
+
+    private static final String CAPTURED = "Server chain captured; handshake abandoned.";
+
+    /**
+     * @param connectTimeout TCP connect timeout, for all addresses of a host together.
+     * @param readTimeout    time allowed for each read during the handshake.
+     * @param attemptDelay   head start of each address of a host over the next, see {@link HappyEyeballsConnector}.
+     */
+    public record Config(Duration connectTimeout, Duration readTimeout, Duration attemptDelay) {
+
+        public static final Config DEFAULT = new Config(Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+        public Config {
+            if (connectTimeout == null || readTimeout == null || attemptDelay == null) {
+                throw new IllegalArgumentException("Connect and read timeouts and an attempt delay are required.");
+            }
+        }
+
+        public Config(Duration connectTimeout, Duration readTimeout) {
+            this(connectTimeout, readTimeout, HappyEyeballsConnector.DEFAULT_ATTEMPT_DELAY);
+        }
+    }
+
+    private static final class DefaultInstance {
+        private static final HandshakeClient INSTANCE = new HandshakeClient(Config.DEFAULT);
+    }
+
+    /**
+     * What the trust manager saw for one connection, keyed by its socket or engine.
+     */
+    static final class Capture {
+
+        private final X509TrustManager verifier;
+        private final CaptureMode mode;
+        private volatile X509Certificate[] chain;
+        private volatile boolean rejected;
+        private volatile boolean captured;
+        private volatile String protocol;
+        private volatile String cipherSuite;
+
+        private Capture(X509TrustManager verifier, CaptureMode mode) {
+            this.verifier = verifier;
+            this.mode = mode;
+        }
+
+        boolean rejected() {
+            return rejected;
+        }
+
+        /**
+         * @return whether a {@link CaptureMode#CERTIFICATE_ONLY} handshake was abandoned after taking the chain.
+         */
+        boolean captured() {
+            return captured;
+        }
+
+        HandshakeResult result(String host, int port, InetSocketAddress address, Duration lookupTime,
+                               Duration connectTime, Duration handshakeTime) {
+            return new HandshakeResult(host, port, Status.SUCCESS, protocol, cipherSuite, chain, address, lookupTime,
+                    connectTime, handshakeTime, null);
+        }
+
+        /**
+         * @return the chain the trust manager was given or, for a resumed session where it was not consulted, the
+         * session's peer certificates after checking them now.
+         */
+        X509Certificate[] presented(SSLSession session) throws SSLPeerUnverifiedException, CertificateException {
+            if (chain == null) {
+                check(peerCertificates(session), "UNKNOWN");
+            }
+            return chain;
+        }
+
+        void check(X509Certificate[] chain, String authType) throws CertificateException {
+            this.chain = chain;
+            if (verifier != null) {
+                try {
+                    verifier.checkServerTrusted(chain, authType);
+                } catch (CertificateException | RuntimeException e) {
+                    rejected = true;
+                    throw e;
+                }
+            }
+        }
+
+        private void received(X509Certificate[] chain, String authType, SSLSession handshake) throws CertificateException {
+
+            check(chain, authType);
+
+            if (mode == CaptureMode.CERTIFICATE_ONLY) {
+                if (handshake != null) {
+                    protocol = handshake.getProtocol();
+                    cipherSuite = handshake.getCipherSuite();
+                }
+                captured = true;
+                throw new CertificateException(CAPTURED);
+            }
+        }
+    }
+
+    private final Config config;
+    private final HappyEyeballsConnector connector;
+    private final SSLContext context;
+    private final SSLSocketFactory factory;
+    private final Map<Object, Capture> captures = new ConcurrentHashMap<>();
+
+    public HandshakeClient(Config config) {
+        this.config = config;
+        this.connector = new HappyEyeballsConnector(config.attemptDelay());
+        try {
+            this.context = SSLContext.getInstance("TLS");
+            this.context.init(null, new TrustManager[]{new CapturingTrustManager()}, null);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to initialize SSLContext.", e);
+        }
+        this.factory = context.getSocketFactory();
+    }
+
+    /**
+     * @return the process-wide client with {@link Config#DEFAULT}.
+     */
+    public static HandshakeClient shared() {
+        return DefaultInstance.INSTANCE;
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    /**
+     * Handshakes with {@code host} accepting any chain.
+     */
+    public HandshakeResult handshake(String host, int port) {
+        return handshake(host, port, null, null);
+    }
+
+    /**
+     * @param verifier decides whether the presented chain is trusted; the handshake fails as
+     *                 {@link Status#UNTRUSTED} if it throws. {@code null} accepts any chain.
+     */
+    public HandshakeResult handshake(String host, int port, X509TrustManager verifier) {
+        return handshake(host, port, null, verifier);
+    }
+
+    /**
+     * Handshakes with {@code host} accepting any chain, as far as {@code mode} says.
+     */
+    public HandshakeResult handshake(String host, int port, CaptureMode mode) {
+        return handshake(host, port, null, null, mode);
+    }
+
+    /**
+     * @param serverName the SNI host name to send, or {@code null} to send {@code host} unless it is an IP address.
+     */
+    public HandshakeResult handshake(String host, int port, String serverName, X509TrustManager verifier) {
+        return handshake(host, port, serverName, verifier, CaptureMode.FULL);
+    }
+
+    public HandshakeResult handshake(String host, int port, String serverName, X509TrustManager verifier,
+                                     CaptureMode mode) {
+        return handshake(host, port, null, serverName, verifier, mode);
+    }
+
+    /**
+     * @param addresses the addresses of {@code host}, already resolved, or {@code null} to look them up now.
+     */
+    public HandshakeResult handshake(String host, int port, List<InetAddress> addresses, String serverName,
+                                     X509TrustManager verifier, CaptureMode mode) {
+
+        Capture capture = new Capture(verifier, mode);
+        Duration lookupTime = null;
+        Duration connectTime = null;
+        Duration handshakeTime = null;
+
+        InetSocketAddress address = null;
+        Socket plain = null;
+        SSLSocket socket = null;
+        try {
+            long start = System.nanoTime();
+            if (addresses == null) {
+                try {
+                    addresses = List.of(InetAddress.getAllByName(host));
+                } finally {
+                    lookupTime = Duration.ofNanos(System.nanoTime() - start);
+                }
+            }
+
+            HappyEyeballsConnector.Connection connection = connector.connect(addresses, port, config.connectTimeout());
+            plain = connection.socket();
+            address = connection.address();
+            connectTime = connection.connectTime();
+
+            socket = (SSLSocket) factory.createSocket(plain, host, port, true);
+            socket.setSoTimeout((int) config.readTimeout().toMillis());
+            SSLParameters parameters = socket.getSSLParameters();
+            serverName(parameters, serverName != null ? serverName : sniHostName(host, address));
+            socket.setSSLParameters(parameters);
+            captures.put(socket, capture);
+
+            start = System.nanoTime();
+            try {
+                socket.startHandshake();
+            } finally {
+                handshakeTime = Duration.ofNanos(System.nanoTime() - start);
+            }
+            SSLSession session = socket.getSession();
+
+            X509Certificate[] chain = capture.presented(session);
+            session.invalidate();
+
+            return new HandshakeResult(host, port, Status.SUCCESS, session.getProtocol(), session.getCipherSuite(),
+                    chain, address, lookupTime, connectTime, handshakeTime, null);
+
+        } catch (UnknownHostException e) {
+            return failed(host, port, Status.UNKNOWN_HOST, capture, address, lookupTime, connectTime, handshakeTime, e);
+        } catch (SocketTimeoutException e) {
+            return failed(host, port, Status.TIMEOUT, capture, address, lookupTime, connectTime, handshakeTime, e);
+        } catch (SSLException | CertificateException e) {
+            if (capture.captured) {
+                return capture.result(host, port, address, lookupTime, connectTime, handshakeTime);
+            }
+            return failed(host, port, capture.rejected ? Status.UNTRUSTED : Status.HANDSHAKE_FAILED, capture,
+                    address, lookupTime, connectTime, handshakeTime, e);
+        } catch (IOException e) {
+            return failed(host, port, connectTime == null ? Status.CONNECT_FAILED : Status.HANDSHAKE_FAILED, capture,
+                    address, lookupTime, connectTime, handshakeTime, e);
+        } finally {
+            if (socket != null) {
+                captures.remove(socket);
+            }
+            close(socket != null ? socket : plain);
+        }
+    }
+
+    /**
+     * @return a client-mode engine from the shared context, sending {@code serverName} as SNI. Its handshake is
+     * recorded, and checked by {@code verifier}, like a socket's until {@link #release(SSLEngine)}.
+     */
+    SSLEngine engine(String host, int port, String serverName, X509TrustManager verifier, CaptureMode mode) {
+
+        SSLEngine engine = context.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+
+        SSLParameters parameters = engine.getSSLParameters();
+        serverName(parameters, serverName);
+        engine.setSSLParameters(parameters);
+
+        captures.put(engine, new Capture(verifier, mode));
+        return engine;
+    }
+
+    Capture release(SSLEngine engine) {
+        Capture capture = engine != null ? captures.remove(engine) : null;
+        return capture != null ? capture : new Capture(null, CaptureMode.FULL);
+    }
+
+    static HandshakeResult failed(String host, int port, Status status, Capture capture, InetSocketAddress address,
+                                  Duration lookupTime, Duration connectTime, Duration handshakeTime, Exception error) {
+        X509Certificate[] chain = capture.chain != null ? capture.chain : NONE;
+        return new HandshakeResult(host, port, status, null, null, chain, address, lookupTime, connectTime,
+                handshakeTime, error);
+    }
+
+    static String sniHostName(String host, InetSocketAddress address) {
+        if (host.indexOf(':') >= 0 || host.equals(address.getAddress().getHostAddress())) {
+            return null;
+        }
+        return host;
+    }
+
+    private static void serverName(SSLParameters parameters, String serverName) {
+        if (serverName == null) {
+            return;
+        }
+        try {
+            parameters.setServerNames(List.of(new SNIHostName(serverName)));
+        } catch (IllegalArgumentException e) {
+            // not a valid SNI host name; connect without
+        }
+    }
+
+    private static X509Certificate[] peerCertificates(SSLSession session) throws SSLPeerUnverifiedException {
+        return Arrays.stream(session.getPeerCertificates())
+                .filter(X509Certificate.class::isInstance)
+                .map(X509Certificate.class::cast)
+                .toArray(X509Certificate[]::new);
+    }
+
+    private static void close(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    private final class CapturingTrustManager extends X509ExtendedTrustManager {
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            Capture capture = captures.get(socket);
+            if (capture != null) {
+                capture.received(chain, authType, socket instanceof SSLSocket ssl ? ssl.getHandshakeSession() : null);
+            }
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            Capture capture = captures.get(engine);
+            if (capture != null) {
+                capture.received(chain, authType, engine.getHandshakeSession());
+            }
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            throw new CertificateException("Client certificates are not accepted.");
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            throw new CertificateException("Client certificates are not accepted.");
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            throw new CertificateException("Client certificates are not accepted.");
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.handshake.HappyEyeballsConnector.Family;
+
+import java.net.InetSocketAddress;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+/**
+ * Outcome of one TLS handshake, see {@link HandshakeClient}.
+ *
+ * @param chain         the certificates presented by the server, empty if the handshake did not get that far.
+ * @param address       the address connected to, {@code null} if no connection was established.
+ * @param lookupTime    time to resolve the host name, {@code null} if it was not looked up.
+ * @param connectTime   time to establish the TCP connection, {@code null} if it was not established.
+ * @param handshakeTime time from the first handshake message to its completion, {@code null} if it did not start.
+ * @param error         the cause of a failed handshake, {@code null} on success.
+ */
+public record HandshakeResult(String host, int port, Status status, String protocol, String cipherSuite,
+                              X509Certificate[] chain, InetSocketAddress address, Duration lookupTime,
+                              Duration connectTime, Duration handshakeTime, Exception error) {
+
+    public enum Status {
+        SUCCESS,
+        /**
+         * The handshake was aborted because the supplied trust manager rejected the server's chain.
+         */
+        UNTRUSTED,
+        UNKNOWN_HOST,
+        TIMEOUT,
+        CONNECT_FAILED,
+        HANDSHAKE_FAILED
+    }
+
+    /**
+     * @return the address family of {@link #address()}, {@code null} if no connection was established.
+     */
+    public Family family() {
+        return address != null ? Family.of(address.getAddress()) : null;
+    }
+
+    public boolean successful() {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * @return the message of {@link #error()}, or {@code null} on success.
+     */
+    public String message() {
+        if (error == null) {
+            return null;
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+}
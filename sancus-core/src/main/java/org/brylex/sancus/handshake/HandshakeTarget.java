@@ -0,0 +1,46 @@
+package org.brylex.sancus.handshake;
+
+/**
+ * A server to handshake with.
+ */
+public record HandshakeTarget(String host, int port) {
+
+    public HandshakeTarget {
+        if (host == null || host.isEmpty() || port <= 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid handshake target [" + host + ":" + port + "].");
+        }
+    }
+
+    /**
+     * @param spec        {@code host}, {@code host:port}, {@code [ipv6]} or {@code [ipv6]:port}.
+     * @param defaultPort used when {@code spec} has no port.
+     */
+    public static HandshakeTarget parse(String spec, int defaultPort) {
+
+        String value = spec.trim();
+        try {
+            if (value.startsWith("[")) {
+                int end = value.indexOf(']');
+                String host = value.substring(1, end);
+                return end + 1 < value.length() && value.charAt(end + 1) == ':'
+                        ? new HandshakeTarget(host, Integer.parseInt(value.substring(end + 2)))
+                        : new HandshakeTarget(host, defaultPort);
+            }
+
+            int colon = value.indexOf(':');
+            if (colon >= 0 && colon == value.lastIndexOf(':')) {
+                return new HandshakeTarget(value.substring(0, colon), Integer.parseInt(value.substring(colon + 1)));
+            }
+
+            return new HandshakeTarget(value, defaultPort);
+
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid handshake target [" + spec + "].", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + port;
+    }
+}
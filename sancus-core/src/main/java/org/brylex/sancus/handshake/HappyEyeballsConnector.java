@@ -0,0 +1,212 @@
+package org.brylex.sancus.handshake;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Connects to the first reachable address of a dual-stack host, in the manner of RFC 8305 ("Happy Eyeballs").
+ * <p>
+ * Addresses are interleaved by family, starting with the family of the first address the resolver returned, and
+ * tried in that order. A new attempt starts when the previous one fails, or once {@link #attemptDelay()} has passed
+ * without it connecting; earlier attempts keep running. The first attempt to connect wins and the others are closed,
+ * so a host whose IPv6 path is broken costs one attempt delay instead of a connect timeout.
+ */
+public final class HappyEyeballsConnector {
+
+    /**
+     * The delay RFC 8305 recommends between connection attempts.
+     */
+    public static final Duration DEFAULT_ATTEMPT_DELAY = Duration.ofMillis(250);
+
+    public enum Family {
+        IPV4, IPV6;
+
+        public static Family of(InetAddress address) {
+            return address instanceof Inet6Address ? IPV6 : IPV4;
+        }
+    }
+
+    /**
+     * @param socket      the connected socket, in blocking mode.
+     * @param address     the address that won.
+     * @param attempts    connection attempts started, the winner included.
+     * @param connectTime time from the first attempt until the winner connected.
+     */
+    public record Connection(Socket socket, InetSocketAddress address, int attempts, Duration connectTime) {
+
+        public Family family() {
+            return Family.of(address.getAddress());
+        }
+    }
+
+    private final Duration attemptDelay;
+
+    public HappyEyeballsConnector() {
+        this(DEFAULT_ATTEMPT_DELAY);
+    }
+
+    public HappyEyeballsConnector(Duration attemptDelay) {
+
+        if (attemptDelay == null || attemptDelay.isNegative()) {
+            throw new IllegalArgumentException("A non-negative attempt delay is required.");
+        }
+
+        this.attemptDelay = attemptDelay;
+    }
+
+    public Duration attemptDelay() {
+        return attemptDelay;
+    }
+
+    /**
+     * @return {@code addresses} interleaved by family, starting with the family of the first one and otherwise in
+     * the order given.
+     */
+    public static List<InetAddress> order(List<InetAddress> addresses) {
+
+        if (addresses.isEmpty()) {
+            return List.of();
+        }
+
+        Family first = Family.of(addresses.get(0));
+        Deque<InetAddress> preferred = new ArrayDeque<>();
+        Deque<InetAddress> other = new ArrayDeque<>();
+        for (InetAddress address : addresses) {
+            (Family.of(address) == first ? preferred : other).add(address);
+        }
+
+        List<InetAddress> ordered = new ArrayList<>(addresses.size());
+        while (!preferred.isEmpty() || !other.isEmpty()) {
+            if (!preferred.isEmpty()) {
+                ordered.add(preferred.poll());
+            }
+            if (!other.isEmpty()) {
+                ordered.add(other.poll());
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Connects to {@code port} on one of {@code addresses}, see {@link #order(List)}.
+     *
+     * @param timeout time allowed for the whole race.
+     * @throws SocketTimeoutException if no attempt connected within {@code timeout}.
+     * @throws IOException            the failure of the last attempt, if they all failed.
+     */
+    public Connection connect(List<InetAddress> addresses, int port, Duration timeout) throws IOException {
+
+        if (addresses == null || addresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one address is required.");
+        }
+
+        List<InetSocketAddress> targets = new ArrayList<>(addresses.size());
+        for (InetAddress address : order(addresses)) {
+            targets.add(new InetSocketAddress(address, port));
+        }
+
+        List<SocketChannel> attempts = new ArrayList<>(targets.size());
+        SocketChannel winner = null;
+        IOException failure = null;
+
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long nextAttempt = start;
+        int pending = 0;
+        int next = 0;
+
+        try (Selector selector = Selector.open()) {
+
+            while (winner == null) {
+
+                long now = System.nanoTime();
+                if (next > 0 && now - deadline >= 0) {
+                    throw new SocketTimeoutException("Connect timed out after " + next + " attempt(s).");
+                }
+
+                if (next < targets.size() && (pending == 0 || now - nextAttempt >= 0)) {
+                    InetSocketAddress target = targets.get(next++);
+                    nextAttempt = now + attemptDelay.toNanos();
+                    try {
+                        SocketChannel channel = SocketChannel.open();
+                        attempts.add(channel);
+                        channel.configureBlocking(false);
+                        if (channel.connect(target)) {
+                            winner = channel;
+                            break;
+                        }
+                        channel.register(selector, SelectionKey.OP_CONNECT, target);
+                        pending++;
+                    } catch (IOException e) {
+                        failure = e;
+                        nextAttempt = now;
+                    }
+                    continue;
+                }
+
+                if (pending == 0) {
+                    throw failure != null ? failure : new ConnectException("No address to connect to.");
+                }
+
+                long until = next < targets.size() && nextAttempt - deadline < 0 ? nextAttempt : deadline;
+                selector.select(Math.max(1, (until - now + 999_999) / 1_000_000));
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    try {
+                        if (channel.finishConnect()) {
+                            winner = channel;
+                            break;
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                        key.cancel();
+                        close(channel);
+                        pending--;
+                        // a failed attempt hands over to the next one straight away
+                        nextAttempt = System.nanoTime();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            for (SocketChannel channel : attempts) {
+                if (channel != winner) {
+                    close(channel);
+                }
+            }
+        }
+
+        // the selector is closed, so the winner is deregistered and may go back to blocking mode
+        Duration connectTime = Duration.ofNanos(System.nanoTime() - start);
+        try {
+            winner.configureBlocking(true);
+            return new Connection(winner.socket(), (InetSocketAddress) winner.getRemoteAddress(), attempts.size(),
+                    connectTime);
+        } catch (IOException e) {
+            close(winner);
+            throw e;
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+}
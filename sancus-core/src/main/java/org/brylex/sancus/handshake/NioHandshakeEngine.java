@@ -0,0 +1,721 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.handshake.HandshakeResult.Status;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.X509TrustManager;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking variant of {@link HandshakeClient}: handshakes run on {@link SSLEngine}s over non-blocking
+ * {@link SocketChannel}s, multiplexed on a few selector threads, so thousands can be in flight at once.
+ * <p>
+ * Engines come from the {@link HandshakeClient}'s shared context, so chains are captured and trust is decided the
+ * same way, and results are the same {@link HandshakeResult}s. At most {@link Config#maxInFlight()} handshakes are
+ * in progress; the rest wait in the order they became ready to connect. The selector threads only move bytes: host
+ * names are resolved, and the engines' delegated tasks (certificate checks, key exchange) run, on virtual threads.
+ * <p>
+ * Hosts with several addresses are connected to as {@link HappyEyeballsConnector} does, on the selector: addresses
+ * are tried in {@link HappyEyeballsConnector#order(List) interleaved family order}, starting the next attempt after
+ * {@link HappyEyeballsConnector#DEFAULT_ATTEMPT_DELAY} or as soon as the current one fails, and the first to connect
+ * is kept. The connect timeout covers all attempts.
+ */
+public final class NioHandshakeEngine implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * How often in-flight handshakes are checked for timeouts.
+     */
+    private static final long SWEEP_MILLIS = 50;
+
+    private static final long ATTEMPT_DELAY_NANOS = HappyEyeballsConnector.DEFAULT_ATTEMPT_DELAY.toNanos();
+
+    /**
+     * @param threads          selector threads.
+     * @param maxInFlight      handshakes in progress at once, from connect to completion.
+     * @param connectTimeout   TCP connect timeout.
+     * @param handshakeTimeout time allowed for the whole TLS handshake once connected.
+     */
+    public record Config(int threads, int maxInFlight, Duration connectTimeout, Duration handshakeTimeout) {
+
+        public static final Config DEFAULT = new Config(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())),
+                4096, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        public Config {
+            if (threads <= 0 || maxInFlight <= 0 || connectTimeout == null || handshakeTimeout == null) {
+                throw new IllegalArgumentException("Positive thread and in-flight limits and timeouts are required.");
+            }
+        }
+    }
+
+    private final HandshakeClient client;
+    private final Config config;
+    private final Worker[] workers;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Connection> waiting = new ConcurrentLinkedQueue<>();
+    private final ExecutorService tasks = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
+
+    public NioHandshakeEngine() {
+        this(HandshakeClient.shared(), Config.DEFAULT);
+    }
+
+    public NioHandshakeEngine(HandshakeClient client, Config config) {
+
+        this.client = client;
+        this.config = config;
+        this.workers = new Worker[config.threads()];
+
+        try {
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(Selector.open());
+                Thread thread = new Thread(workers[i], "sancus-nio-handshake-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Unable to open selector.", e);
+        }
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    public CompletableFuture<HandshakeResult> handshake(String host, int port) {
+        return handshake(host, port, null);
+    }
+
+    /**
+     * @param verifier decides whether the presented chain is trusted, see
+     *                 {@link HandshakeClient#handshake(String, int, X509TrustManager)}; it runs on a virtual thread.
+     */
+    public CompletableFuture<HandshakeResult> handshake(String host, int port, X509TrustManager verifier) {
+        return handshake(host, port, verifier, CaptureMode.FULL);
+    }
+
+    public CompletableFuture<HandshakeResult> handshake(String host, int port, X509TrustManager verifier,
+                                                        CaptureMode mode) {
+        return handshake(host, port, null, verifier, mode);
+    }
+
+    /**
+     * @param addresses the addresses of {@code host}, already resolved, or {@code null} to look them up, on a
+     *                  virtual thread.
+     */
+    public CompletableFuture<HandshakeResult> handshake(String host, int port, List<InetAddress> addresses,
+                                                        X509TrustManager verifier, CaptureMode mode) {
+
+        if (closed) {
+            throw new IllegalStateException("Handshake engine is closed.");
+        }
+
+        CompletableFuture<HandshakeResult> future = new CompletableFuture<>();
+
+        if (addresses != null && !addresses.isEmpty()) {
+            enqueue(host, port, addresses, null, verifier, mode, future);
+            return future;
+        }
+
+        try {
+            tasks.execute(() -> {
+                long start = System.nanoTime();
+                List<InetAddress> resolved;
+                try {
+                    resolved = List.of(InetAddress.getAllByName(host));
+                } catch (UnknownHostException e) {
+                    future.complete(new HandshakeResult(host, port, Status.UNKNOWN_HOST, null, null,
+                            new X509Certificate[0], null, Duration.ofNanos(System.nanoTime() - start), null, null, e));
+                    return;
+                }
+                enqueue(host, port, resolved, Duration.ofNanos(System.nanoTime() - start), verifier, mode, future);
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Handshake engine is closed.", e);
+        }
+
+        return future;
+    }
+
+    private void enqueue(String host, int port, List<InetAddress> addresses, Duration lookupTime,
+                         X509TrustManager verifier, CaptureMode mode, CompletableFuture<HandshakeResult> future) {
+
+        List<InetSocketAddress> ordered = new ArrayList<>(addresses.size());
+        for (InetAddress address : HappyEyeballsConnector.order(addresses)) {
+            ordered.add(new InetSocketAddress(address, port));
+        }
+
+        Connection connection = new Connection(host, port, ordered, lookupTime,
+                HandshakeClient.sniHostName(host, ordered.get(0)), verifier, mode, future);
+        if (closed) {
+            connection.fail(new IOException("Handshake engine closed."));
+            return;
+        }
+
+        waiting.add(connection);
+        admit();
+    }
+
+    /**
+     * @return a future of the results in the order of {@code targets}; it never completes exceptionally.
+     */
+    public CompletableFuture<List<HandshakeResult>> handshakeAll(Collection<HandshakeTarget> targets) {
+        return handshakeAll(targets, CaptureMode.FULL);
+    }
+
+    public CompletableFuture<List<HandshakeResult>> handshakeAll(Collection<HandshakeTarget> targets, CaptureMode mode) {
+
+        List<CompletableFuture<HandshakeResult>> futures = new ArrayList<>(targets.size());
+        for (HandshakeTarget target : targets) {
+            futures.add(handshake(target.host(), target.port(), null, mode));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<HandshakeResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<HandshakeResult> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * @return handshakes currently connecting or handshaking.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Stops the selector threads; handshakes still waiting or in flight fail as {@link Status#CONNECT_FAILED} or
+     * {@link Status#HANDSHAKE_FAILED}.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+        tasks.shutdown();
+
+        for (Worker worker : workers) {
+            if (worker != null) {
+                worker.selector.wakeup();
+            }
+        }
+
+        Connection connection;
+        while ((connection = waiting.poll()) != null) {
+            connection.fail(new IOException("Handshake engine closed."));
+        }
+    }
+
+    private void admit() {
+        while (!waiting.isEmpty()) {
+
+            int current = inFlight.get();
+            if (current >= config.maxInFlight()) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+
+            Connection connection = waiting.poll();
+            if (connection == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+
+            connection.admitted = true;
+            connection.worker = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+            connection.worker.add(connection);
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Connection> added = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> resumed = new ConcurrentLinkedQueue<>();
+
+        private Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void add(Connection connection) {
+            if (closed) {
+                connection.fail(new IOException("Handshake engine closed."));
+                return;
+            }
+            added.add(connection);
+            selector.wakeup();
+        }
+
+        /**
+         * Hands a connection whose delegated tasks have run back to the selector thread. A closed worker fails its
+         * connections on the way out instead.
+         */
+        private void resume(Connection connection) {
+            resumed.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                long nextSweep = System.nanoTime();
+                while (!closed) {
+
+                    selector.select(SWEEP_MILLIS);
+
+                    Connection connection;
+                    while ((connection = added.poll()) != null) {
+                        connection.open(selector);
+                    }
+                    while ((connection = resumed.poll()) != null) {
+                        connection.resume();
+                    }
+
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        // a key may have been cancelled by a connection attempt that lost
+                        if (key.isValid()) {
+                            ((Connection) key.attachment()).ready(key);
+                        }
+                    }
+                    selector.selectedKeys().clear();
+
+                    long now = System.nanoTime();
+                    if (now - nextSweep >= 0) {
+                        // copied, as expiring may register further connection attempts
+                        Set<Connection> connections = new LinkedHashSet<>();
+                        for (SelectionKey key : selector.keys()) {
+                            connections.add((Connection) key.attachment());
+                        }
+                        for (Connection open : connections) {
+                            open.expire(now);
+                        }
+                        nextSweep = now + SWEEP_MILLIS * 1_000_000;
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                LOG.log(Level.WARNING, "Handshake selector stopped.", e);
+            } finally {
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+
+            IOException closing = new IOException("Handshake engine closed.");
+
+            Connection connection;
+            while ((connection = added.poll()) != null) {
+                connection.fail(closing);
+            }
+
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).fail(closing);
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                LOG.log(Level.FINE, "Unable to close handshake selector.", e);
+            }
+        }
+    }
+
+    /**
+     * One handshake, driven by its worker's selector thread, except for the engine's delegated tasks.
+     */
+    private final class Connection {
+
+        private final String host;
+        private final int port;
+        private final List<InetSocketAddress> addresses;
+        private final Duration lookupTime;
+        private final String serverName;
+        private final X509TrustManager verifier;
+        private final CaptureMode mode;
+        private final CompletableFuture<HandshakeResult> future;
+
+        private Selector selector;
+        private final Map<SocketChannel, InetSocketAddress> attempts = new LinkedHashMap<>(2);
+        private int attempted;
+        private long nextAttempt;
+
+        private InetSocketAddress address;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private SSLEngine engine;
+        private ByteBuffer netIn;
+        private ByteBuffer netOut;
+        private ByteBuffer appIn;
+
+        private long started;
+        private long deadline;
+        private Duration connectTime;
+        private long handshakeStarted;
+        private boolean admitted;
+        private Worker worker;
+        private volatile RuntimeException taskFailure;
+        private boolean done;
+
+        private Connection(String host, int port, List<InetSocketAddress> addresses, Duration lookupTime,
+                           String serverName, X509TrustManager verifier, CaptureMode mode,
+                           CompletableFuture<HandshakeResult> future) {
+            this.host = host;
+            this.port = port;
+            this.addresses = addresses;
+            this.lookupTime = lookupTime;
+            this.serverName = serverName;
+            this.verifier = verifier;
+            this.mode = mode;
+            this.future = future;
+        }
+
+        private void open(Selector selector) {
+
+            this.selector = selector;
+            started = System.nanoTime();
+            deadline = started + config.connectTimeout().toNanos();
+
+            try {
+                attempt();
+            } catch (IOException | CertificateException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Starts connecting to the next address; the one after follows once the attempt delay has passed, see
+         * {@link #expire(long)}, or as soon as this attempt fails.
+         */
+        private void attempt() throws IOException, CertificateException {
+
+            InetSocketAddress target = addresses.get(attempted++);
+            nextAttempt = System.nanoTime() + ATTEMPT_DELAY_NANOS;
+
+            SocketChannel attempt = null;
+            try {
+                attempt = SocketChannel.open();
+                attempt.configureBlocking(false);
+                attempt.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                if (attempt.connect(target)) {
+                    attempts.put(attempt, target);
+                    won(attempt, attempt.register(selector, 0, this));
+                } else {
+                    attempt.register(selector, SelectionKey.OP_CONNECT, this);
+                    attempts.put(attempt, target);
+                }
+            } catch (IOException e) {
+                if (attempt != null) {
+                    attempts.remove(attempt);
+                    close(attempt);
+                }
+                attemptFailed(e);
+            }
+        }
+
+        private void attemptFailed(IOException error) throws IOException, CertificateException {
+            if (attempted < addresses.size()) {
+                attempt();
+            } else if (attempts.isEmpty()) {
+                throw error;
+            }
+        }
+
+        /**
+         * Keeps the connected channel and abandons the other attempts.
+         */
+        private void won(SocketChannel attempt, SelectionKey attemptKey) throws IOException, CertificateException {
+
+            address = attempts.remove(attempt);
+            for (SocketChannel other : attempts.keySet()) {
+                close(other);
+            }
+            attempts.clear();
+
+            channel = attempt;
+            key = attemptKey;
+            connected();
+        }
+
+        private void ready(SelectionKey key) {
+            try {
+                if (channel == null) {
+                    SocketChannel attempt = (SocketChannel) key.channel();
+                    try {
+                        attempt.finishConnect();
+                    } catch (IOException e) {
+                        attempts.remove(attempt);
+                        close(attempt);
+                        attemptFailed(e);
+                        return;
+                    }
+                    won(attempt, key);
+                } else {
+                    step();
+                }
+            } catch (IOException | CertificateException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void expire(long now) {
+
+            if (done) {
+                return;
+            }
+
+            if (now - deadline > 0) {
+                fail(new SocketTimeoutException(connectTime == null
+                        ? "Connect to [" + host + ":" + port + "] timed out."
+                        : "Handshake with [" + host + ":" + port + "] timed out."));
+            } else if (channel == null && attempted < addresses.size() && now - nextAttempt >= 0) {
+                try {
+                    attempt();
+                } catch (IOException | CertificateException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private void connected() throws IOException, CertificateException {
+
+            long now = System.nanoTime();
+            connectTime = Duration.ofNanos(now - started);
+
+            engine = client.engine(host, port, serverName, verifier, mode);
+            SSLSession session = engine.getSession();
+            netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+            netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+            netOut.flip();
+            appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+
+            handshakeStarted = now;
+            deadline = now + config.handshakeTimeout().toNanos();
+
+            engine.beginHandshake();
+            step();
+        }
+
+        private void step() throws IOException, CertificateException {
+
+            while (true) {
+
+                if (netOut.hasRemaining()) {
+                    channel.write(netOut);
+                    if (netOut.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                switch (engine.getHandshakeStatus()) {
+
+                    case NEED_TASK -> {
+                        runTasks();
+                        return;
+                    }
+
+                    case NEED_WRAP -> {
+                        netOut.clear();
+                        SSLEngineResult result = engine.wrap(EMPTY, netOut);
+                        netOut.flip();
+                        if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                            netOut = ByteBuffer.allocate(netOut.capacity() * 2);
+                            netOut.flip();
+                        } else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                            throw new SSLException("Connection closed by the TLS engine.");
+                        }
+                    }
+
+                    case NEED_UNWRAP, NEED_UNWRAP_AGAIN -> {
+                        netIn.flip();
+                        SSLEngineResult result = engine.unwrap(netIn, appIn);
+                        netIn.compact();
+
+                        switch (result.getStatus()) {
+                            case BUFFER_UNDERFLOW -> {
+                                if (!netIn.hasRemaining()) {
+                                    ByteBuffer larger = ByteBuffer.allocate(netIn.capacity() * 2);
+                                    netIn.flip();
+                                    larger.put(netIn);
+                                    netIn = larger;
+                                }
+                                int read = channel.read(netIn);
+                                if (read < 0) {
+                                    throw new EOFException("Connection closed by [" + host + ":" + port + "] during handshake.");
+                                }
+                                if (read == 0) {
+                                    key.interestOps(SelectionKey.OP_READ);
+                                    return;
+                                }
+                            }
+                            case BUFFER_OVERFLOW -> appIn = ByteBuffer.allocate(appIn.capacity() * 2);
+                            case CLOSED -> throw new SSLException("Connection closed by the TLS engine.");
+                            case OK -> appIn.clear();
+                        }
+                    }
+
+                    case FINISHED, NOT_HANDSHAKING -> {
+                        finished();
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs the delegated tasks on a virtual thread, with the connection out of the selector's interest meanwhile,
+         * then continues the handshake on the selector thread.
+         */
+        private void runTasks() {
+
+            key.interestOps(0);
+
+            tasks.execute(() -> {
+                try {
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                } catch (RuntimeException e) {
+                    taskFailure = e;
+                }
+                worker.resume(this);
+            });
+        }
+
+        private void resume() {
+
+            if (done) {
+                return;
+            }
+
+            try {
+                if (taskFailure != null) {
+                    throw taskFailure;
+                }
+                step();
+            } catch (IOException | CertificateException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void finished() throws IOException, CertificateException {
+
+            Duration handshakeTime = Duration.ofNanos(System.nanoTime() - handshakeStarted);
+
+            SSLSession session = engine.getSession();
+            X509Certificate[] chain = client.release(engine).presented(session);
+            session.invalidate();
+
+            complete(new HandshakeResult(host, port, Status.SUCCESS, session.getProtocol(), session.getCipherSuite(),
+                    chain, address, lookupTime, connectTime, handshakeTime, null));
+        }
+
+        private void fail(Exception error) {
+
+            if (done) {
+                return;
+            }
+
+            HandshakeClient.Capture capture = client.release(engine);
+            Duration handshakeTime = engine != null ? Duration.ofNanos(System.nanoTime() - handshakeStarted) : null;
+
+            if (capture.captured()) {
+                complete(capture.result(host, port, address, lookupTime, connectTime, handshakeTime));
+                return;
+            }
+
+            Status status;
+            if (error instanceof SocketTimeoutException) {
+                status = Status.TIMEOUT;
+            } else if (connectTime == null) {
+                status = Status.CONNECT_FAILED;
+            } else if (capture.rejected()) {
+                status = Status.UNTRUSTED;
+            } else {
+                status = Status.HANDSHAKE_FAILED;
+            }
+
+            complete(HandshakeClient.failed(host, port, status, capture,
+                    connectTime != null ? address : null, lookupTime, connectTime, handshakeTime, error));
+        }
+
+        private void complete(HandshakeResult result) {
+
+            done = true;
+
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                close(channel);
+            }
+            for (SocketChannel attempt : attempts.keySet()) {
+                close(attempt);
+            }
+            attempts.clear();
+
+            // free the slot first, so that a caller woken by the future sees it released
+            if (admitted) {
+                inFlight.decrementAndGet();
+            }
+
+            future.complete(result);
+
+            if (admitted) {
+                admit();
+            }
+        }
+
+        private static void close(SocketChannel channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.brylex.sancus.http;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Shared HTTP client for the small fetches Sancus makes: AIA issuer certificates and OCSP requests.
+ * <p>
+ * Built on {@link HttpClient}, so connections to the same CA host are kept alive and reused, and HTTP/2 is used
+ * where the server offers it. Responses are read fully into memory and capped at {@link Config#maxResponseBytes()};
+ * the whole exchange, body included, must complete within {@link Config#requestTimeout()}, and the calling thread
+ * stops waiting when it is interrupted. Latency, volume and failures are recorded per endpoint (scheme, host and
+ * port).
+ */
+public final class HttpFetcher {
+
+    /**
+     * @param connectTimeout   TCP (and TLS) connect timeout.
+     * @param requestTimeout   time allowed for the whole fetch, from sending the request until the response body has
+     *                         been read; a server sending its body slowly cannot hold a caller past it.
+     * @param maxResponseBytes larger response bodies fail with a {@link FetchException}.
+     */
+    public record Config(Duration connectTimeout, Duration requestTimeout, int maxResponseBytes) {
+
+        public static final Config DEFAULT = new Config(Duration.ofSeconds(5), Duration.ofSeconds(10), 1 << 20);
+
+        public Config {
+            if (connectTimeout == null || requestTimeout == null || maxResponseBytes <= 0) {
+                throw new IllegalArgumentException("Timeouts and a positive response size limit are required.");
+            }
+        }
+    }
+
+    /**
+     * A fully read response. Non-2xx statuses are returned, not thrown; see {@link #successful()}.
+     */
+    public record Response(URI uri, int statusCode, HttpHeaders headers, byte[] body, Duration elapsed) {
+
+        public boolean successful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        /**
+         * @return the first value of the header, or {@code null}.
+         */
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+    }
+
+    /**
+     * Per-endpoint counters.
+     *
+     * @param requests requests sent, including failed ones.
+     * @param failures requests that ended in an I/O error, a timeout or an oversized body.
+     * @param bytes    response body bytes read.
+     */
+    public record Stats(String endpoint, long requests, long failures, long bytes, Duration mean, Duration max) {
+    }
+
+    /**
+     * Thrown when a request could not be completed. HTTP error statuses are not failures at this level.
+     */
+    public static class FetchException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final URI uri;
+
+        public FetchException(URI uri, String message, Throwable cause) {
+            super(message, cause);
+            this.uri = uri;
+        }
+
+        public URI uri() {
+            return uri;
+        }
+    }
+
+    private static final class DefaultInstance {
+        private static final HttpFetcher INSTANCE = new HttpFetcher(Config.DEFAULT);
+    }
+
+    private final Config config;
+    private final HttpClient client;
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public HttpFetcher(Config config) {
+        this.config = config;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(config.connectTimeout())
+                .build();
+    }
+
+    /**
+     * @return the process-wide fetcher with {@link Config#DEFAULT}.
+     */
+    public static HttpFetcher shared() {
+        return DefaultInstance.INSTANCE;
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    public Response get(URI uri) {
+        return get(uri, Map.of());
+    }
+
+    public Response get(URI uri, Map<String, String> headers) {
+        return send(request(uri, headers).GET());
+    }
+
+    public Response post(URI uri, String contentType, byte[] body, Map<String, String> headers) {
+        return send(request(uri, headers)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)));
+    }
+
+    /**
+     * @return a snapshot of the statistics per endpoint, sorted by endpoint.
+     */
+    public Map<String, Stats> stats() {
+        Map<String, Stats> snapshot = new TreeMap<>();
+        endpoints.forEach((name, endpoint) -> snapshot.put(name, endpoint.snapshot(name)));
+        return snapshot;
+    }
+
+    public void resetStats() {
+        endpoints.clear();
+    }
+
+    private HttpRequest.Builder request(URI uri, Map<String, String> headers) {
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(config.requestTimeout());
+        headers.forEach(builder::header);
+
+        return builder;
+    }
+
+    private Response send(HttpRequest.Builder builder) {
+
+        HttpRequest request = builder.build();
+        URI uri = request.uri();
+        Endpoint endpoint = endpoints.computeIfAbsent(endpoint(uri), k -> new Endpoint());
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(request,
+                info -> new BoundedBody(uri, config.maxResponseBytes()));
+        try {
+            HttpResponse<byte[]> response = exchange.get(config.requestTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            byte[] body = response.body();
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            endpoint.record(elapsed, body.length, false);
+
+            return new Response(uri, response.statusCode(), response.headers(), body, elapsed);
+
+        } catch (ExecutionException e) {
+            endpoint.record(Duration.ofNanos(System.nanoTime() - start), 0, true);
+            if (e.getCause() instanceof FetchException fetchException) {
+                throw fetchException;
+            }
+            throw new FetchException(uri, "Unable to fetch [" + uri + "].", e.getCause());
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            endpoint.record(Duration.ofNanos(System.nanoTime() - start), 0, true);
+            throw new FetchException(uri, "Timed out after " + config.requestTimeout().toMillis() + " ms fetching ["
+                    + uri + "].", e);
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            Thread.currentThread().interrupt();
+            endpoint.record(Duration.ofNanos(System.nanoTime() - start), 0, true);
+            throw new FetchException(uri, "Interrupted while fetching [" + uri + "].", e);
+        }
+    }
+
+    private static String endpoint(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Collects the response body, failing as soon as it grows past the limit instead of buffering all of it.
+     */
+    private static final class BoundedBody implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final URI uri;
+        private final int limit;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        private BoundedBody(URI uri, int limit) {
+            this.uri = uri;
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+
+            if (body.isDone()) {
+                return;
+            }
+
+            for (ByteBuffer item : items) {
+                if (buffer.size() + item.remaining() > limit) {
+                    subscription.cancel();
+                    body.completeExceptionally(new FetchException(uri, "Response from [" + uri + "] exceeds " + limit
+                            + " bytes.", null));
+                    return;
+                }
+                byte[] chunk = new byte[item.remaining()];
+                item.get(chunk);
+                buffer.write(chunk, 0, chunk.length);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(buffer.toByteArray());
+        }
+    }
+
+    private static final class Endpoint {
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(Duration elapsed, long length, boolean failed) {
+            long nanos = elapsed.toNanos();
+            requests.incrementAndGet();
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            bytes.addAndGet(length);
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        private Stats snapshot(String name) {
+            long count = requests.get();
+            Duration mean = Duration.ofNanos(count > 0 ? totalNanos.get() / count : 0);
+            return new Stats(name, count, failures.get(), bytes.get(), mean, Duration.ofNanos(maxNanos.get()));
+        }
+    }
+}
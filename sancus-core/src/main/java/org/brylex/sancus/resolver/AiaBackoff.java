@@ -0,0 +1,145 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Negative cache for AIA resolution. Failed downloads open a circuit for the caIssuers URL and for the issuer DN it
+ * was meant to resolve; while open, resolvers skip the download instead of waiting on the same timeouts again.
+ * <p>
+ * The back-off starts at {@link #INITIAL} and doubles with each consecutive failure up to {@link #MAXIMUM}. A
+ * successful download closes both circuits. A failure is forgotten once its circuit has been closed for
+ * {@link #MAXIMUM}; forgotten failures are dropped when looked up, and swept from both maps at most once per
+ * {@link #INITIAL} as new failures are recorded.
+ */
+public final class AiaBackoff {
+
+    public static final Duration INITIAL = Duration.ofSeconds(30);
+    public static final Duration MAXIMUM = Duration.ofHours(1);
+
+    private record Failure(int count, Instant openUntil, Instant forgetAt) {
+    }
+
+    private static final class DefaultInstance {
+        private static final AiaBackoff INSTANCE = new AiaBackoff(Clock.systemUTC(), INITIAL, MAXIMUM);
+    }
+
+    private final Clock clock;
+    private final Duration initial;
+    private final Duration maximum;
+    private final ConcurrentHashMap<String, Failure> urls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<CanonicalName, Failure> issuers = new ConcurrentHashMap<>();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile Instant nextSweep;
+
+    AiaBackoff(Clock clock, Duration initial, Duration maximum) {
+        this.clock = clock;
+        this.initial = initial;
+        this.maximum = maximum;
+        this.nextSweep = clock.instant().plus(initial);
+    }
+
+    public static AiaBackoff shared() {
+        return DefaultInstance.INSTANCE;
+    }
+
+    public boolean isCircuitOpen(String url) {
+        return open(lookup(urls, url));
+    }
+
+    public boolean isCircuitOpen(CanonicalName issuer) {
+        return open(lookup(issuers, issuer));
+    }
+
+    /**
+     * @return the instant the circuit for {@code url} closes again, or {@code null} if it is not open.
+     */
+    public Instant openUntil(String url) {
+        Failure failure = lookup(urls, url);
+        return open(failure) ? failure.openUntil() : null;
+    }
+
+    public void failure(String url, CanonicalName issuer) {
+        sweep();
+        urls.compute(url, (k, failure) -> next(failure));
+        if (issuer != null) {
+            issuers.compute(issuer, (k, failure) -> next(failure));
+        }
+    }
+
+    public void success(String url, CanonicalName issuer) {
+        urls.remove(url);
+        if (issuer != null) {
+            issuers.remove(issuer);
+        }
+    }
+
+    /**
+     * Counts a download skipped because a circuit was open.
+     */
+    void skipped() {
+        skipped.incrementAndGet();
+    }
+
+    /**
+     * @return downloads skipped because a circuit was open.
+     */
+    public long skippedCount() {
+        return skipped.get();
+    }
+
+    public void clear() {
+        urls.clear();
+        issuers.clear();
+    }
+
+    /**
+     * @return the number of URLs and issuers with a failure that is not yet forgotten.
+     */
+    int size() {
+        return urls.size() + issuers.size();
+    }
+
+    private <K> Failure lookup(ConcurrentHashMap<K, Failure> failures, K key) {
+        Failure failure = failures.get(key);
+        if (failure != null && forgotten(failure, clock.instant())) {
+            failures.remove(key, failure);
+            return null;
+        }
+        return failure;
+    }
+
+    private void sweep() {
+        Instant now = clock.instant();
+        if (now.isBefore(nextSweep)) {
+            return;
+        }
+        nextSweep = now.plus(initial);
+        urls.values().removeIf(failure -> forgotten(failure, now));
+        issuers.values().removeIf(failure -> forgotten(failure, now));
+    }
+
+    private static boolean forgotten(Failure failure, Instant now) {
+        return !now.isBefore(failure.forgetAt());
+    }
+
+    private boolean open(Failure failure) {
+        return failure != null && clock.instant().isBefore(failure.openUntil());
+    }
+
+    private Failure next(Failure previous) {
+        Instant now = clock.instant();
+        int count = previous == null || forgotten(previous, now) ? 1 : previous.count() + 1;
+        Duration delay = initial.multipliedBy(1L << Math.min(count - 1, 30));
+        if (delay.compareTo(maximum) > 0) {
+            delay = maximum;
+        }
+        Instant openUntil = now.plus(delay);
+        return new Failure(count, openUntil, openUntil.plus(maximum));
+    }
+}
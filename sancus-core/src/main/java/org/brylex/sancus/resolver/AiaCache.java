@@ -0,0 +1,366 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.http.HttpFetcher;
+import org.brylex.sancus.util.Fingerprint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of documents downloaded from AIA caIssuers URLs, in memory and optionally on disk.
+ * <p>
+ * The disk layout is content addressed: payloads are stored once under {@code blobs/} named by their SHA-256
+ * {@link Fingerprint}, and {@code urls/} maps each URL to a payload together with the {@code ETag} and
+ * {@code Last-Modified} validators it was served with. Entries are served without a request while fresh (the
+ * response's {@code max-age}, or {@link #DEFAULT_MAX_AGE}), and revalidated with a conditional GET once stale. A
+ * stale entry is also served when the revalidation fails. Only responses that parse as a certificate (DER, PEM or
+ * PKCS#7) are stored. An LRU of recently used entries sits in front of the disk.
+ * <p>
+ * The {@link #shared()} instance stores to the directory named by the {@value #DIRECTORY_PROPERTY} system property,
+ * and keeps entries in memory only when it is unset or {@code none}.
+ */
+public final class AiaCache {
+
+    public static final String DIRECTORY_PROPERTY = "sancus.aia.cache.dir";
+
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofHours(24);
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+
+    /**
+     * Counters since creation.
+     *
+     * @param memoryHits   fresh entries served from memory.
+     * @param diskHits     fresh entries served from disk.
+     * @param revalidated  stale entries confirmed by a {@code 304 Not Modified}.
+     * @param downloads    full responses downloaded.
+     * @param staleServed  stale entries served because revalidation failed.
+     */
+    public record Stats(long memoryHits, long diskHits, long revalidated, long downloads, long staleServed) {
+    }
+
+    private record Entry(URI uri, Fingerprint fingerprint, String etag, String lastModified, Instant expires,
+                         byte[] payload) {
+
+        private boolean fresh(Instant now) {
+            return now.isBefore(expires);
+        }
+
+        private Entry expires(Instant expires) {
+            return new Entry(uri, fingerprint, etag, lastModified, expires, payload);
+        }
+    }
+
+    private static final class DefaultInstance {
+        private static final AiaCache INSTANCE = new AiaCache(directory(System.getProperty(DIRECTORY_PROPERTY)),
+                HttpFetcher.shared(), 256);
+
+        private static Path directory(String value) {
+            return value == null || value.isBlank() || value.equalsIgnoreCase("none") ? null : Paths.get(value);
+        }
+    }
+
+    private final Path directory;
+    private final HttpFetcher fetcher;
+    private final int capacity;
+    private final Map<URI, Entry> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    /**
+     * @param directory where entries are stored, or {@code null} to keep them in memory only.
+     * @param capacity  number of entries kept in memory.
+     */
+    public AiaCache(Path directory, HttpFetcher fetcher, int capacity) {
+        this.directory = directory;
+        this.fetcher = fetcher;
+        this.capacity = capacity;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, Entry> eldest) {
+                return size() > AiaCache.this.capacity;
+            }
+        };
+    }
+
+    public static AiaCache shared() {
+        return DefaultInstance.INSTANCE;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * @return the document at {@code uri}, from the cache if fresh and otherwise (re)validated against the server.
+     */
+    public byte[] fetch(URI uri) {
+
+        Instant now = Instant.now();
+
+        Entry cached = fromMemory(uri);
+        if (cached != null && cached.fresh(now)) {
+            memoryHits.incrementAndGet();
+            return cached.payload();
+        }
+
+        if (cached == null) {
+            cached = fromDisk(uri);
+            if (cached != null && cached.fresh(now)) {
+                diskHits.incrementAndGet();
+                remember(cached);
+                return cached.payload();
+            }
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null && cached.etag() != null) {
+            headers.put("If-None-Match", cached.etag());
+        }
+        if (cached != null && cached.lastModified() != null) {
+            headers.put("If-Modified-Since", cached.lastModified());
+        }
+
+        HttpFetcher.Response response;
+        try {
+            response = fetcher.get(uri, headers);
+        } catch (HttpFetcher.FetchException e) {
+            if (cached != null) {
+                return stale(cached, e.getMessage());
+            }
+            throw new RuntimeException("Unable to download remote certificate bytes.", e);
+        }
+
+        if (response.statusCode() == 304 && cached != null) {
+            revalidated.incrementAndGet();
+            Entry refreshed = cached.expires(expiry(response, now));
+            store(refreshed);
+            return refreshed.payload();
+        }
+
+        if (!response.successful()) {
+            if (cached != null && response.statusCode() >= 500) {
+                return stale(cached, "HTTP " + response.statusCode());
+            }
+            throw new RuntimeException("Unable to download remote certificate bytes; HTTP " + response.statusCode() + " from [" + uri + "].");
+        }
+
+        // checked before anything is kept, so that an error page served as 200 is not cached for a day
+        try {
+            RemoteResolver.parse(response.body());
+        } catch (RuntimeException e) {
+            if (cached != null) {
+                return stale(cached, "not a certificate");
+            }
+            throw new RuntimeException("Unable to download remote certificate bytes; [" + uri + "] did not serve a certificate.", e);
+        }
+
+        downloads.incrementAndGet();
+        Entry downloaded = new Entry(uri, Fingerprint.of(response.body()), response.header("ETag"),
+                response.header("Last-Modified"), expiry(response, now), response.body());
+        store(downloaded);
+
+        return downloaded.payload();
+    }
+
+    /**
+     * @return the document at {@code uri} if a fresh copy is cached in memory or on disk, otherwise {@code null}; the
+     * server is never contacted.
+     */
+    public byte[] cached(URI uri) {
+
+        Instant now = Instant.now();
+
+        Entry cached = fromMemory(uri);
+        if (cached != null && cached.fresh(now)) {
+            memoryHits.incrementAndGet();
+            return cached.payload();
+        }
+
+        cached = fromDisk(uri);
+        if (cached != null && cached.fresh(now)) {
+            diskHits.incrementAndGet();
+            remember(cached);
+            return cached.payload();
+        }
+
+        return null;
+    }
+
+    public Stats stats() {
+        return new Stats(memoryHits.get(), diskHits.get(), revalidated.get(), downloads.get(), staleServed.get());
+    }
+
+    /**
+     * Drops the in-memory entries; the disk is left as is.
+     */
+    public void clearMemory() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    private byte[] stale(Entry cached, String reason) {
+        LOG.warning("Serving cached copy of [" + cached.uri() + "]; revalidation failed (" + reason + ").");
+        staleServed.incrementAndGet();
+        remember(cached);
+        return cached.payload();
+    }
+
+    private static Instant expiry(HttpFetcher.Response response, Instant now) {
+
+        String cacheControl = response.header("Cache-Control");
+        if (cacheControl != null) {
+            String directives = cacheControl.toLowerCase();
+            if (directives.contains("no-cache") || directives.contains("no-store")) {
+                return now;
+            }
+            Matcher matcher = MAX_AGE.matcher(directives);
+            if (matcher.find()) {
+                try {
+                    return now.plusSeconds(Long.parseLong(matcher.group(1)));
+                } catch (NumberFormatException e) {
+                    return now;
+                }
+            }
+        }
+
+        return now.plus(DEFAULT_MAX_AGE);
+    }
+
+    private Entry fromMemory(URI uri) {
+        synchronized (memory) {
+            return memory.get(uri);
+        }
+    }
+
+    private void remember(Entry entry) {
+        synchronized (memory) {
+            memory.put(entry.uri(), entry);
+        }
+    }
+
+    private void store(Entry entry) {
+
+        remember(entry);
+
+        if (directory == null) {
+            return;
+        }
+
+        try {
+            Path blob = blob(entry.fingerprint());
+            if (!Files.exists(blob)) {
+                write(blob, entry.payload());
+            }
+
+            Properties properties = new Properties();
+            properties.setProperty("url", entry.uri().toString());
+            properties.setProperty("fingerprint", entry.fingerprint().toString());
+            properties.setProperty("expires", entry.expires().toString());
+            if (entry.etag() != null) {
+                properties.setProperty("etag", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                properties.setProperty("last-modified", entry.lastModified());
+            }
+
+            Path index = index(entry.uri());
+            Path tmp = temporary(index);
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                properties.store(os, null);
+            }
+            move(tmp, index);
+
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to write AIA cache entry for [" + entry.uri() + "] to [" + directory + "].", e);
+        }
+    }
+
+    private Entry fromDisk(URI uri) {
+
+        if (directory == null) {
+            return null;
+        }
+
+        try {
+            Properties properties = new Properties();
+            try (InputStream is = Files.newInputStream(index(uri))) {
+                properties.load(is);
+            }
+
+            if (!uri.toString().equals(properties.getProperty("url"))) {
+                return null;
+            }
+
+            Fingerprint fingerprint = Fingerprint.fromHex(properties.getProperty("fingerprint"));
+            byte[] payload = Files.readAllBytes(blob(fingerprint));
+            if (!Fingerprint.of(payload).equals(fingerprint)) {
+                LOG.warning("Ignoring corrupt AIA cache blob [" + blob(fingerprint) + "].");
+                return null;
+            }
+
+            return new Entry(uri, fingerprint, properties.getProperty("etag"), properties.getProperty("last-modified"),
+                    Instant.parse(properties.getProperty("expires")), payload);
+
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.FINE, "Ignoring unreadable AIA cache entry for [" + uri + "].", e);
+            return null;
+        }
+    }
+
+    private Path blob(Fingerprint fingerprint) {
+        return directory.resolve("blobs").resolve(fingerprint.toString());
+    }
+
+    private Path index(URI uri) {
+        return directory.resolve("urls").resolve(Fingerprint.of(uri.toString().getBytes(StandardCharsets.UTF_8)) + ".properties");
+    }
+
+    private static void write(Path target, byte[] bytes) throws IOException {
+        Path tmp = temporary(target);
+        Files.write(tmp, bytes);
+        move(tmp, target);
+    }
+
+    private static Path temporary(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.CertificateChain.AsyncResolver;
+import org.brylex.sancus.CertificateChain.Resolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adapters between the blocking {@link Resolver} and the non-blocking {@link AsyncResolver}.
+ * <p>
+ * Blocking resolvers are run on an {@link Executor}; by default one virtual thread per resolution, so that many
+ * chains can wait on AIA downloads at once without holding a platform thread each.
+ */
+public final class AsyncResolvers {
+
+    private AsyncResolvers() {
+    }
+
+    private static final class DefaultExecutor {
+        private static final ExecutorService INSTANCE = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * @return the shared virtual-thread-per-task executor used when no executor is given.
+     */
+    public static ExecutorService defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    public static AsyncResolver async(Resolver resolver) {
+        return async(resolver, defaultExecutor());
+    }
+
+    public static AsyncResolver async(Resolver resolver, Executor executor) {
+
+        if (resolver == null || executor == null) {
+            throw new IllegalArgumentException("Resolver and executor are required.");
+        }
+
+        return chain -> CompletableFuture.supplyAsync(() -> resolver.resolve(chain), executor);
+    }
+
+    /**
+     * Runs the resolvers one after another on the same chain, each starting when the previous one completed.
+     */
+    public static AsyncResolver sequence(AsyncResolver... resolvers) {
+        return chain -> {
+            CompletableFuture<CertificateChain> future = CompletableFuture.completedFuture(chain);
+            for (AsyncResolver resolver : resolvers) {
+                future = future.thenCompose(resolver::resolveAsync);
+            }
+            return future;
+        };
+    }
+
+    /**
+     * Resolves every chain concurrently.
+     *
+     * @return a future of the resolved chains in input order, completing exceptionally if any resolution fails.
+     */
+    public static CompletableFuture<List<CertificateChain>> resolveAll(AsyncResolver resolver,
+                                                                        Collection<CertificateChain> chains) {
+
+        List<CompletableFuture<CertificateChain>> futures = new ArrayList<>(chains.size());
+        for (CertificateChain chain : chains) {
+            futures.add(resolver.resolveAsync(chain));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<CertificateChain> resolved = new ArrayList<>(futures.size());
+            for (CompletableFuture<CertificateChain> future : futures) {
+                resolved.add(future.join());
+            }
+            return resolved;
+        });
+    }
+
+    /**
+     * @return a blocking resolver waiting for the given one, rethrowing its failure unwrapped when it is a
+     * {@link RuntimeException}.
+     */
+    public static Resolver blocking(AsyncResolver resolver) {
+        return chain -> {
+            try {
+                return resolver.resolveAsync(chain).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while resolving CertificateChain.", e);
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            }
+        };
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new RuntimeException("Unable to resolve CertificateChain.", cause);
+    }
+}
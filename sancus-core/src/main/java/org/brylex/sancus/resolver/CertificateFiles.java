@@ -0,0 +1,269 @@
+package org.brylex.sancus.resolver;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.brylex.sancus.CertificateRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads certificates from files: single DER certificates, PEM files and bundles with any number of
+ * {@code CERTIFICATE} or {@code PKCS7} blocks, and DER-encoded PKCS#7 bundles.
+ * <p>
+ * PEM files are split while streaming, line by line, and the certificates of a file and the files of a directory
+ * are parsed in parallel on the common fork-join pool. Errors are collected per file, together with whatever could
+ * be read from it, rather than thrown.
+ */
+public final class CertificateFiles {
+
+    public static final Set<String> EXTENSIONS = Set.of(".pem", ".crt", ".cer", ".der", ".p7b", ".p7c");
+
+    private static final byte[] BEGIN = "-----BEGIN ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "-----END ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param certificates certificates read from the file, in file order.
+     * @param errors       what went wrong reading the file or one of its blocks; empty on success.
+     */
+    public record Result(Path file, List<X509Certificate> certificates, List<String> errors) {
+
+        public boolean failed() {
+            return !errors.isEmpty();
+        }
+    }
+
+    private enum Block {
+        CERTIFICATE, PKCS7, OTHER
+    }
+
+    private record Encoded(Block type, int line, byte[] der) {
+    }
+
+    private CertificateFiles() {
+    }
+
+    public static boolean accepts(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+
+    /**
+     * Reads the accepted files of {@code dir}, in parallel.
+     */
+    public static List<Result> readDirectory(Path dir) {
+        try (var stream = Files.list(dir)) {
+            return readAll(stream.filter(CertificateFiles::accepts).toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to list certificate directory [" + dir.toAbsolutePath() + "].", e);
+        }
+    }
+
+    public static List<Result> readAll(Collection<Path> files) {
+        return files.parallelStream().map(CertificateFiles::read).toList();
+    }
+
+    public static Result read(Path file) {
+
+        List<String> errors = new ArrayList<>();
+        List<Encoded> blocks = new ArrayList<>();
+
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+
+            is.mark(1);
+            int first = is.read();
+            is.reset();
+
+            if (first == 0x30) {
+                byte[] der = is.readAllBytes();
+                Block type = isPkcs7(file) ? Block.PKCS7 : Block.CERTIFICATE;
+                blocks.add(new Encoded(type, 0, der));
+            } else {
+                split(is, blocks, errors);
+            }
+
+        } catch (IOException e) {
+            errors.add("Unable to read file: " + e.getMessage());
+            return new Result(file, List.of(), List.copyOf(errors));
+        }
+
+        List<List<X509Certificate>> parsed = blocks.parallelStream().map(block -> parse(block, errors)).toList();
+
+        List<X509Certificate> certificates = new ArrayList<>();
+        parsed.forEach(certificates::addAll);
+
+        if (certificates.isEmpty() && errors.isEmpty()) {
+            errors.add("No certificates found.");
+        }
+
+        return new Result(file, List.copyOf(certificates), List.copyOf(errors));
+    }
+
+    private static List<X509Certificate> parse(Encoded block, List<String> errors) {
+        try {
+            return switch (block.type()) {
+                case CERTIFICATE -> {
+                    try {
+                        yield List.of(CertificateRegistry.INSTANCE.certificate(block.der()));
+                    } catch (RuntimeException e) {
+                        // a DER file without a .p7b/.p7c extension may still be a PKCS#7 bundle
+                        if (block.line() == 0) {
+                            yield pkcs7(block.der());
+                        }
+                        throw e;
+                    }
+                }
+                case PKCS7 -> pkcs7(block.der());
+                case OTHER -> List.of();
+            };
+        } catch (Exception e) {
+            synchronized (errors) {
+                errors.add((block.line() > 0 ? "Block at line " + block.line() + ": " : "") + message(e));
+            }
+            return List.of();
+        }
+    }
+
+    private static List<X509Certificate> pkcs7(byte[] der) throws Exception {
+        List<X509Certificate> certificates = new ArrayList<>();
+        for (X509CertificateHolder holder : new CMSSignedData(der).getCertificates().getMatches(null)) {
+            certificates.add(CertificateRegistry.INSTANCE.certificate(holder.getEncoded()));
+        }
+        return certificates;
+    }
+
+    /**
+     * Collects the base64 body of each PEM block, one line at a time, so that only the current block is held in
+     * memory as text.
+     */
+    private static void split(InputStream is, List<Encoded> blocks, List<String> errors) throws IOException {
+
+        LineReader reader = new LineReader(is);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(2048);
+        Block current = null;
+        int start = 0;
+
+        while (reader.next()) {
+
+            byte[] line = reader.buffer;
+            int length = reader.length;
+
+            if (current == null) {
+                if (startsWith(line, length, BEGIN)) {
+                    current = type(line, length);
+                    start = reader.number;
+                    body.reset();
+                }
+            } else if (startsWith(line, length, END)) {
+                if (current != Block.OTHER) {
+                    try {
+                        blocks.add(new Encoded(current, start, Base64.getMimeDecoder().decode(body.toByteArray())));
+                    } catch (IllegalArgumentException e) {
+                        errors.add("Block at line " + start + ": invalid base64 (" + e.getMessage() + ").");
+                    }
+                }
+                current = null;
+            } else if (current != Block.OTHER && indexOf(line, length, (byte) ':') < 0) {
+                // skips RFC 1421 headers such as Proc-Type
+                body.write(line, 0, length);
+            }
+        }
+
+        if (current != null) {
+            errors.add("Block at line " + start + ": missing END line.");
+        }
+    }
+
+    private static Block type(byte[] line, int length) {
+        String label = new String(line, BEGIN.length, length - BEGIN.length, StandardCharsets.US_ASCII);
+        if (label.startsWith("CERTIFICATE-----") || label.startsWith("X509 CERTIFICATE-----")) {
+            return Block.CERTIFICATE;
+        } else if (label.startsWith("PKCS7-----") || label.startsWith("CMS-----")) {
+            return Block.PKCS7;
+        }
+        return Block.OTHER;
+    }
+
+    /**
+     * Reads ASCII lines into a reusable buffer, dropping the line terminator.
+     */
+    private static final class LineReader {
+
+        private final InputStream is;
+        private byte[] buffer = new byte[256];
+        private int length;
+        private int number;
+
+        private LineReader(InputStream is) {
+            this.is = is;
+        }
+
+        private boolean next() throws IOException {
+
+            length = 0;
+            int b;
+            while ((b = is.read()) >= 0 && b != '\n') {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = (byte) b;
+            }
+
+            if (b < 0 && length == 0) {
+                return false;
+            }
+
+            if (length > 0 && buffer[length - 1] == '\r') {
+                length--;
+            }
+            number++;
+            return true;
+        }
+    }
+
+    private static boolean startsWith(byte[] line, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] line, int length, byte value) {
+        for (int i = 0; i < length; i++) {
+            if (line[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPkcs7(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".p7b") || name.endsWith(".p7c");
+    }
+
+    private static String message(Throwable e) {
+        while (e.getCause() != null && e.getMessage() != null && e.getMessage().startsWith("Unable to load")) {
+            e = e.getCause();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
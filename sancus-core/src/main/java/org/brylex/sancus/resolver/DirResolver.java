@@ -3,15 +3,11 @@ package org.brylex.sancus.resolver;
 import org.brylex.sancus.CertificateChain;
 import org.brylex.sancus.ChainEntry;
 import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
 
-import java.io.InputStream;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
-import java.util.Map;
 import javax.security.auth.x500.X500Principal;
 
 /**
@@ -37,47 +33,31 @@ public class DirResolver implements CertificateChain.Resolver {
             throw new IllegalArgumentException("Cannot resolve NULL certificate chain.");
         }
 
-        final Map<X500Principal, X509Certificate> map = new HashMap<>();
-
+        final DirectoryIndex index;
         try {
-            final CertificateFactory factory = CertificateFactory.getInstance("X.509");
-
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-                stream.forEach(path -> {
-
-                    if (path.toString().endsWith(".pem")) {
-
-                        try (InputStream is = Files.newInputStream(path)) {
-                            X509Certificate certificate = (X509Certificate) factory.generateCertificate(is);
-                            map.put(certificate.getSubjectX500Principal(), certificate);
-                        } catch (Exception e) {
-                            throw new RuntimeException("Unable to load certificate from classpath resources [" + path + "].", e);
-                        }
-                    }
-
-                });
-            }
-
+            index = DirectoryIndex.of(dir);
         } catch (Exception e) {
             throw new RuntimeException("Unable to resolve CertificateChain from directory [" + dir.toAbsolutePath() + "].", e);
         }
 
         ChainEntry issuer = chain.issuedBy();
-        if (issuer.certificate() == null && map.containsKey(issuer.dn())) {
-            X509Certificate issuerCertificate = map.get(issuer.dn());
-            issuer.apply(issuerCertificate, ResolverSource.DIR);
+        if (issuer.certificate() == null) {
+            X509Certificate issuerCertificate = index.find(issuer.name(), null);
+            if (issuerCertificate != null) {
+                issuer.applyIfAbsent(issuerCertificate, ResolverSource.DIR);
+            }
         }
 
-        resolve(issuer, map);
+        resolve(issuer, index);
 
         return chain;
     }
 
-    private ChainEntry resolve(ChainEntry entry, Map<X500Principal, X509Certificate> map) {
+    private ChainEntry resolve(ChainEntry entry, DirectoryIndex index) {
 
         if (entry.certificate() == null) {
             return entry;
-        } else if (entry.certificate().getSubjectX500Principal().equals(entry.certificate().getIssuerX500Principal())) {
+        } else if (PrincipalTable.INSTANCE.selfIssued(entry.certificate())) {
             return entry;
         }
 
@@ -85,8 +65,9 @@ public class DirResolver implements CertificateChain.Resolver {
         if (issuer == null) {
 
             X500Principal issuerDN = entry.certificate().getIssuerX500Principal();
-            if (map.containsKey(issuerDN)) {
-                issuer = entry.issuedBy(map.get(issuerDN));
+            X509Certificate issuerCertificate = index.issuerOf(entry.certificate());
+            if (issuerCertificate != null) {
+                issuer = entry.issuedBy(issuerCertificate);
                 issuer.resolvedBy(ResolverSource.DIR);
             } else {
                 issuer = entry.issuedBy(issuerDN);
@@ -94,11 +75,14 @@ public class DirResolver implements CertificateChain.Resolver {
             }
         }
 
-        if (issuer.certificate() == null && map.containsKey(issuer.dn())) {
-            issuer.apply(map.get(issuer.dn()), ResolverSource.DIR);
+        if (issuer.certificate() == null) {
+            X509Certificate issuerCertificate = index.find(issuer.name(), KeyIdentifiers.authorityKeyIdentifier(entry.certificate()));
+            if (issuerCertificate != null) {
+                issuer.applyIfAbsent(issuerCertificate, ResolverSource.DIR);
+            }
         }
 
-        resolve(issuer, map);
+        resolve(issuer, index);
 
         return entry;
     }
@@ -0,0 +1,309 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Certificates of a directory, or of a single bundle file, indexed by interned subject DN and by Subject Key
+ * Identifier.
+ * <p>
+ * The source is read once, with {@link CertificateFiles}, and a {@link WatchService} keeps the index up to date as
+ * files are added, modified or deleted; lookups are hash lookups on an immutable snapshot. Indexes are shared per
+ * path, see {@link #of(Path)}. Errors are logged and kept per file, see {@link #errors()}; whatever could be read
+ * from a file is indexed regardless.
+ */
+public final class DirectoryIndex implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    private static final Map<Path, DirectoryIndex> INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * @param files        certificate files currently indexed.
+     * @param certificates certificates currently indexed.
+     * @param scans        full reads of the source.
+     * @param reloads      single files (re)read after a change.
+     * @param removals     files dropped from the index after a delete.
+     * @param failures     file reads that reported errors.
+     * @param lastScan     duration of the last full read.
+     * @param lastChange   when the index last changed.
+     */
+    public record Stats(int files, int certificates, long scans, long reloads, long removals, long failures,
+                        Duration lastScan, Instant lastChange) {
+    }
+
+    private record Snapshot(int size, Map<CanonicalName, List<X509Certificate>> bySubject,
+                            Map<ByteBuffer, List<X509Certificate>> byKeyIdentifier) {
+    }
+
+    private final Path dir;
+    private final Path file;
+    private final Map<Path, List<X509Certificate>> files = new ConcurrentHashMap<>();
+    private final Map<Path, List<String>> errors = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(0, Map.of(), Map.of());
+    private final WatchService watcher;
+
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong removals = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Duration lastScan = Duration.ZERO;
+    private volatile Instant lastChange = Instant.EPOCH;
+
+    private DirectoryIndex(Path path) {
+
+        if (!Files.exists(path)) {
+            throw new RuntimeException("Unable to index certificate directory [" + path + "]; it does not exist.");
+        }
+
+        this.file = Files.isDirectory(path) ? null : path;
+        this.dir = file == null ? path : path.getParent();
+        this.watcher = watch(dir);
+
+        scan();
+
+        if (watcher != null) {
+            Thread thread = new Thread(this::watchLoop, "sancus-dir-watch-" + dir.getFileName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @param path a directory, or a single (bundle) file.
+     * @return the shared index of {@code path}, reading it on first use.
+     */
+    public static DirectoryIndex of(Path path) {
+        return INDEXES.computeIfAbsent(path.toAbsolutePath().normalize(), DirectoryIndex::new);
+    }
+
+    public Path directory() {
+        return dir;
+    }
+
+    /**
+     * @return the number of certificates indexed.
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * @return the errors of each file that reported any in its last read.
+     */
+    public Map<Path, List<String>> errors() {
+        return Map.copyOf(errors);
+    }
+
+    public List<X509Certificate> bySubject(CanonicalName subject) {
+        return snapshot.bySubject().getOrDefault(subject, List.of());
+    }
+
+    public List<X509Certificate> byKeyIdentifier(byte[] keyIdentifier) {
+        if (keyIdentifier == null) {
+            return List.of();
+        }
+        return snapshot.byKeyIdentifier().getOrDefault(ByteBuffer.wrap(keyIdentifier), List.of());
+    }
+
+    /**
+     * Finds the certificate with the given subject DN, preferring the one whose Subject Key Identifier matches the
+     * supplied Authority Key Identifier when several files share the DN.
+     *
+     * @return the matching certificate, or {@code null} if none has the given subject.
+     */
+    public X509Certificate find(CanonicalName subject, byte[] authorityKeyIdentifier) {
+
+        for (X509Certificate candidate : byKeyIdentifier(authorityKeyIdentifier)) {
+            if (subject.equals(PrincipalTable.INSTANCE.subject(candidate))) {
+                return candidate;
+            }
+        }
+
+        List<X509Certificate> candidates = bySubject(subject);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    /**
+     * @return the indexed certificate that issued the given certificate, or {@code null}.
+     */
+    public X509Certificate issuerOf(X509Certificate certificate) {
+        return find(PrincipalTable.INSTANCE.issuer(certificate), KeyIdentifiers.authorityKeyIdentifier(certificate));
+    }
+
+    public Stats stats() {
+        return new Stats(files.size(), snapshot.size(), scans.get(), reloads.get(), removals.get(), failures.get(),
+                lastScan, lastChange);
+    }
+
+    /**
+     * Stops watching the directory and drops the shared index, so the next {@link #of(Path)} reads it again.
+     */
+    @Override
+    public void close() {
+        INDEXES.remove(file != null ? file : dir, this);
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Unable to close directory watcher for [" + dir + "].", e);
+            }
+        }
+    }
+
+    private static WatchService watch(Path dir) {
+        try {
+            WatchService watcher = dir.getFileSystem().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            return watcher;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.log(Level.WARNING, "Unable to watch certificate directory [" + dir + "]; changes will not be picked up.", e);
+            return null;
+        }
+    }
+
+    private void scan() {
+
+        long start = System.nanoTime();
+
+        List<CertificateFiles.Result> results;
+        try {
+            results = file != null ? List.of(CertificateFiles.read(file)) : CertificateFiles.readDirectory(dir);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Unable to index certificate directory [" + dir.toAbsolutePath() + "].", e);
+        }
+
+        Map<Path, List<X509Certificate>> loaded = new HashMap<>();
+        errors.clear();
+        for (CertificateFiles.Result result : results) {
+            if (!result.certificates().isEmpty()) {
+                loaded.put(result.file(), result.certificates());
+            }
+            report(result);
+        }
+
+        files.keySet().retainAll(loaded.keySet());
+        files.putAll(loaded);
+
+        scans.incrementAndGet();
+        lastScan = Duration.ofNanos(System.nanoTime() - start);
+        rebuild();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scan();
+                        continue;
+                    }
+
+                    Path path = dir.resolve((Path) event.context());
+                    if (!accepts(path)) {
+                        continue;
+                    }
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        errors.remove(path);
+                        if (files.remove(path) != null) {
+                            removals.incrementAndGet();
+                            changed = true;
+                        }
+                    } else if (Files.exists(path)) {
+                        reloads.incrementAndGet();
+                        CertificateFiles.Result result = CertificateFiles.read(path);
+                        report(result);
+                        List<X509Certificate> previous = result.certificates().isEmpty()
+                                ? files.remove(path)
+                                : files.put(path, result.certificates());
+                        changed |= !result.certificates().equals(previous != null ? previous : List.of());
+                    }
+                }
+
+                if (changed) {
+                    rebuild();
+                }
+
+                if (!key.reset()) {
+                    LOG.warning("Certificate directory [" + dir + "] is no longer accessible; index is frozen.");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Stopped watching certificate directory [" + dir + "].", e);
+        }
+    }
+
+    private void report(CertificateFiles.Result result) {
+        if (result.failed()) {
+            failures.incrementAndGet();
+            errors.put(result.file(), result.errors());
+            LOG.warning("Unable to read all certificates from [" + result.file() + "]: " + result.errors());
+        } else {
+            errors.remove(result.file());
+        }
+    }
+
+    private void rebuild() {
+
+        Map<CanonicalName, List<X509Certificate>> bySubject = new HashMap<>(files.size() * 2);
+        Map<ByteBuffer, List<X509Certificate>> byKeyIdentifier = new HashMap<>(files.size() * 2);
+        Set<X509Certificate> indexed = new HashSet<>();
+
+        for (List<X509Certificate> certificates : files.values()) {
+            for (X509Certificate certificate : certificates) {
+
+                // the same certificate is often found in several bundles
+                if (!indexed.add(certificate)) {
+                    continue;
+                }
+
+                bySubject.computeIfAbsent(PrincipalTable.INSTANCE.subject(certificate), k -> new ArrayList<>(1)).add(certificate);
+
+                byte[] ski = KeyIdentifiers.subjectKeyIdentifier(certificate);
+                if (ski != null) {
+                    byKeyIdentifier.computeIfAbsent(ByteBuffer.wrap(ski), k -> new ArrayList<>(1)).add(certificate);
+                }
+            }
+        }
+
+        snapshot = new Snapshot(indexed.size(), bySubject, byKeyIdentifier);
+        lastChange = Instant.now();
+    }
+
+    private boolean accepts(Path path) {
+        return file != null ? file.equals(path) : CertificateFiles.accepts(path);
+    }
+}
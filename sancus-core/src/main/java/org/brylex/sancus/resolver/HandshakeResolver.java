@@ -2,72 +2,78 @@ package org.brylex.sancus.resolver;
 
 import org.brylex.sancus.CertificateChain;
 import org.brylex.sancus.SancusTrustManager;
+import org.brylex.sancus.handshake.HandshakeClient;
+import org.brylex.sancus.handshake.HandshakeResult;
 
-import javax.net.ssl.*;
-import java.net.SocketTimeoutException;
-import java.net.UnknownHostException;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.util.logging.Logger;
 
 /**
  * Created by <a href="mailto:rpbjo@nets.eu">Rune Peter Bjørnstad</a> on 14/07/2017.
  */
 public class HandshakeResolver implements CertificateChain.Resolver {
 
+    private static final Logger LOG = Logger.getLogger("sancus");
+
     private final String host;
     private final int port;
+    private final HandshakeClient client;
 
     public HandshakeResolver(String host, int port) {
+        this(host, port, HandshakeClient.shared());
+    }
+
+    public HandshakeResolver(String host, int port, HandshakeClient client) {
         this.host = host;
         this.port = port;
+        this.client = client;
     }
 
     @Override
     public CertificateChain resolve(CertificateChain chain) {
-        return resolveCertificateChain(chain);
+        handshake(chain);
+        return chain;
     }
 
-    private CertificateChain resolveCertificateChain(CertificateChain chain) {
+    /**
+     * Handshakes with the server, applying the presented certificates to {@code chain} and marking trust against
+     * its KeyStore.
+     *
+     * @return the outcome of the handshake; a chain the KeyStore does not trust is {@link HandshakeResult.Status#UNTRUSTED}.
+     */
+    public HandshakeResult handshake(CertificateChain chain) {
+
+        LOG.fine("Performing SSL Handshake with [" + host + ":" + port + "] ...");
+
+        HandshakeResult result = client.handshake(host, port, new SancusTrustManager(chain, trustManager(chain)));
+        if (result.successful()) {
+            LOG.fine("Handshake with [" + host + ":" + port + "] over " + result.family() + " completed in "
+                    + result.handshakeTime().toMillis() + " ms using " + result.protocol() + ".");
+        } else {
+            LOG.info("Handshake with [" + host + ":" + port + "] failed: " + result.status() + " (" + result.message() + ").");
+        }
 
-        System.out.println("\nPerforming SSL Handshake with [" + host + ":" + port + "] ...\n");
+        return result;
+    }
 
+    private static X509TrustManager trustManager(CertificateChain chain) {
         try {
             TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
             tmf.init(chain.jks());
 
-            TrustManager[] defaultTrustManagers = tmf.getTrustManagers();
-
-            SancusTrustManager[] trustManagers = new SancusTrustManager[defaultTrustManagers.length];
-            for (int i = 0; i < defaultTrustManagers.length; i++) {
-                trustManagers[i] = new SancusTrustManager(chain, (X509TrustManager) defaultTrustManagers[i]);
-            }
-
-            SSLContext context = SSLContext.getInstance("TLS");
-            context.init(null, trustManagers, null);
-
-            SSLSocketFactory factory = context.getSocketFactory();
-            try (SSLSocket socket = (SSLSocket) factory.createSocket(host, port)) {
-                socket.setSoTimeout(5000);
-                socket.startHandshake();
+            for (TrustManager trustManager : tmf.getTrustManagers()) {
+                if (trustManager instanceof X509TrustManager x509) {
+                    return x509;
+                }
             }
 
-            System.out.println("Status: SUCCESS");
+            throw new IllegalStateException("No X509TrustManager available.");
 
-        } catch (Exception e) {
-
-            if (e instanceof UnknownHostException) {
-                System.out.println("Status: UNKNOWN_HOST_EXCEPTION");
-            } else if (e instanceof SocketTimeoutException) {
-                System.out.println("Status: TIMEOUT_EXCEPTION");
-            } else if (e instanceof SSLHandshakeException) {
-                System.out.println("Status: SSL_HANDSHAKE_EXCEPTION");
-                System.out.println(" Cause: " + e.getCause());
-            } else {
-                throw new RuntimeException(e);
-            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to initialize TrustManager from CertificateChain KeyStore.", e);
         }
-
-        System.out.println();
-
-        return chain;
     }
-
 }
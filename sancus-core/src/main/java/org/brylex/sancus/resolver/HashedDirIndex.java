@@ -0,0 +1,353 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateRegistry;
+import org.brylex.sancus.util.SubjectHash;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Memory-mapped index of the certificates in a directory, from 64-bit subject id ({@link SubjectHash#id}) to the
+ * DER encoding of each certificate with that subject.
+ * <p>
+ * The file starts with a header (magic, version, the directory's modification time, file count, entry count),
+ * followed by a table of the indexed files {@code (int name offset, long size, long modified)}, fixed-size entries
+ * {@code (long id, int file, int DER offset, int DER length)} sorted by id, the length-prefixed UTF-8 file names and
+ * the DER encodings. A lookup is a binary search over the mapped entries, and only the certificates it finds are
+ * parsed, once per index; neither the directory nor its files are read.
+ * <p>
+ * The index file must not be kept in the indexed directory: writing it changes the directory's modification time, so
+ * the index would never be current.
+ */
+public final class HashedDirIndex {
+
+    private static final long MAGIC = 0x53414e4355534858L; // "SANCUSHX"
+    private static final int VERSION = 2;
+    private static final int HEADER = 8 + 4 + 8 + 4 + 4;
+    private static final int FILE = 4 + 8 + 8;
+    private static final int ENTRY = 8 + 4 + 4 + 4;
+
+    private static final Pattern HASHED_NAME = Pattern.compile("[0-9a-f]{8}\\.[0-9]+");
+
+    private record Indexed(String name, long size, long modified, List<X509Certificate> certificates) {
+    }
+
+    private final Path dir;
+    private final long modified;
+    private final int files;
+    private final int count;
+    private final MappedByteBuffer buffer;
+    private final AtomicReferenceArray<X509Certificate> parsed;
+
+    private HashedDirIndex(Path dir, MappedByteBuffer buffer) {
+
+        if (buffer.capacity() < HEADER || buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION) {
+            throw new IllegalStateException("Not a sancus hashed directory index.");
+        }
+
+        this.dir = dir;
+        this.buffer = buffer;
+        this.modified = buffer.getLong(12);
+        this.files = buffer.getInt(20);
+        this.count = buffer.getInt(24);
+
+        if (files < 0 || count < 0 || HEADER + (long) files * FILE + (long) count * ENTRY > buffer.capacity()) {
+            throw new IllegalStateException("Truncated sancus hashed directory index.");
+        }
+
+        this.parsed = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * Opens the index of {@code dir} stored in {@code indexFile}, building it first if it is missing, unreadable or
+     * no longer {@link #isCurrent(boolean) current}, the indexed files included.
+     *
+     * @throws IllegalArgumentException if {@code indexFile} is in {@code dir}.
+     */
+    public static HashedDirIndex open(Path dir, Path indexFile) {
+
+        requireOutside(dir, indexFile);
+
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                HashedDirIndex index = map(dir, indexFile);
+                if (index.isCurrent(true)) {
+                    return index;
+                }
+            } catch (IOException | RuntimeException e) {
+                // rebuilt below
+            }
+        }
+
+        return build(dir, indexFile);
+    }
+
+    /**
+     * Reads every certificate file of {@code dir}, including {@code c_rehash} links, and writes a new index to
+     * {@code indexFile}.
+     *
+     * @throws IllegalArgumentException if {@code indexFile} is in {@code dir}.
+     */
+    public static HashedDirIndex build(Path dir, Path indexFile) {
+
+        requireOutside(dir, indexFile);
+
+        long modified;
+        Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            modified = Files.getLastModifiedTime(dir).toMillis();
+            for (Path file : stream.filter(HashedDirIndex::indexable).toList()) {
+                // taken before the file is read, so that a concurrent change leaves the index stale, not wrong
+                attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to list certificate directory [" + dir.toAbsolutePath() + "].", e);
+        }
+
+        List<Indexed> indexed = new ArrayList<>(attributes.size());
+        for (CertificateFiles.Result result : CertificateFiles.readAll(attributes.keySet())) {
+            BasicFileAttributes fileAttributes = attributes.get(result.file());
+            indexed.add(new Indexed(result.file().getFileName().toString(), fileAttributes.size(),
+                    fileAttributes.lastModifiedTime().toMillis(), result.certificates()));
+        }
+
+        try {
+            Path parent = indexFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, indexFile.getFileName().toString(), ".tmp");
+
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                write(out, modified, indexed);
+            }
+
+            try {
+                Files.move(tmp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return map(dir, indexFile);
+
+        } catch (IOException | CertificateEncodingException e) {
+            throw new RuntimeException("Unable to write hashed directory index [" + indexFile.toAbsolutePath() + "].", e);
+        }
+    }
+
+    private static void write(DataOutputStream out, long modified, List<Indexed> indexed)
+            throws IOException, CertificateEncodingException {
+
+        List<byte[]> names = new ArrayList<>(indexed.size());
+        int namesLength = 0;
+        for (Indexed file : indexed) {
+            byte[] name = file.name().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            namesLength += 2 + name.length;
+        }
+
+        // certificates linked under several names are stored once
+        Map<ByteBuffer, Integer> offsets = new HashMap<>();
+        List<byte[]> encodings = new ArrayList<>();
+        List<long[]> entries = new ArrayList<>();
+
+        int entryCount = 0;
+        for (Indexed file : indexed) {
+            entryCount += file.certificates().size();
+        }
+
+        int base = HEADER + indexed.size() * FILE + entryCount * ENTRY + namesLength;
+        int offset = base;
+        for (int i = 0; i < indexed.size(); i++) {
+            for (X509Certificate certificate : indexed.get(i).certificates()) {
+                byte[] der = certificate.getEncoded();
+                Integer existing = offsets.putIfAbsent(ByteBuffer.wrap(der), offset);
+                if (existing == null) {
+                    encodings.add(der);
+                    existing = offset;
+                    offset += der.length;
+                }
+                entries.add(new long[]{SubjectHash.id(certificate.getSubjectX500Principal()), i, existing, der.length});
+            }
+        }
+
+        entries.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(modified);
+        out.writeInt(indexed.size());
+        out.writeInt(entries.size());
+
+        int nameOffset = HEADER + indexed.size() * FILE + entries.size() * ENTRY;
+        for (int i = 0; i < indexed.size(); i++) {
+            out.writeInt(nameOffset);
+            out.writeLong(indexed.get(i).size());
+            out.writeLong(indexed.get(i).modified());
+            nameOffset += 2 + names.get(i).length;
+        }
+        for (long[] entry : entries) {
+            out.writeLong(entry[0]);
+            out.writeInt((int) entry[1]);
+            out.writeInt((int) entry[2]);
+            out.writeInt((int) entry[3]);
+        }
+        for (byte[] name : names) {
+            out.writeShort(name.length);
+            out.write(name);
+        }
+        for (byte[] der : encodings) {
+            out.write(der);
+        }
+    }
+
+    public Path directory() {
+        return dir;
+    }
+
+    /**
+     * @return the number of indexed certificates.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return {@code false} if the directory has been modified since the index was built, which covers files added,
+     * removed or renamed but not files edited in place; one {@code stat} of the directory.
+     */
+    public boolean isCurrent() {
+        return isCurrent(false);
+    }
+
+    /**
+     * @param checkFiles also compare each indexed file by size and modification time, which stats every file.
+     * @return {@code false} if the directory, or with {@code checkFiles} any of the indexed files, has been modified
+     * since the index was built.
+     */
+    public boolean isCurrent(boolean checkFiles) {
+        try {
+            if (Files.getLastModifiedTime(dir).toMillis() != modified) {
+                return false;
+            }
+            if (!checkFiles) {
+                return true;
+            }
+            for (int i = 0; i < files; i++) {
+                int position = HEADER + i * FILE;
+                BasicFileAttributes attributes = Files.readAttributes(dir.resolve(string(buffer.getInt(position))),
+                        BasicFileAttributes.class);
+                if (attributes.size() != buffer.getLong(position + 4)
+                        || attributes.lastModifiedTime().toMillis() != buffer.getLong(position + 12)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the distinct certificates with the given subject; may include certificates with a colliding id.
+     */
+    public List<X509Certificate> lookup(X500Principal subject) {
+
+        long id = SubjectHash.id(subject);
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = id(mid);
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                int first = mid;
+                while (first > 0 && id(first - 1) == id) {
+                    first--;
+                }
+                List<X509Certificate> certificates = new ArrayList<>(1);
+                for (int i = first; i < count && id(i) == id; i++) {
+                    X509Certificate certificate = certificate(i);
+                    if (!certificates.contains(certificate)) {
+                        certificates.add(certificate);
+                    }
+                }
+                return certificates;
+            }
+        }
+
+        return List.of();
+    }
+
+    private long id(int entry) {
+        return buffer.getLong(entryPosition(entry));
+    }
+
+    private int entryPosition(int entry) {
+        return HEADER + files * FILE + entry * ENTRY;
+    }
+
+    private X509Certificate certificate(int entry) {
+
+        X509Certificate certificate = parsed.get(entry);
+        if (certificate == null) {
+            int position = entryPosition(entry);
+            byte[] der = new byte[buffer.getInt(position + 16)];
+            buffer.get(buffer.getInt(position + 12), der);
+            certificate = CertificateRegistry.INSTANCE.certificate(der);
+            parsed.set(entry, certificate);
+        }
+        return certificate;
+    }
+
+    private String string(int position) {
+        int length = buffer.getShort(position) & 0xffff;
+        byte[] bytes = new byte[length];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void requireOutside(Path dir, Path indexFile) {
+        Path parent = indexFile.toAbsolutePath().normalize().getParent();
+        if (parent != null && parent.equals(dir.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Index file [" + indexFile + "] must not be kept in the indexed directory [" + dir + "].");
+        }
+    }
+
+    static boolean indexable(Path path) {
+        return Files.isRegularFile(path)
+                && (CertificateFiles.accepts(path) || HASHED_NAME.matcher(path.getFileName().toString()).matches());
+    }
+
+    private static HashedDirIndex map(Path dir, Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            return new HashedDirIndex(dir, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ChainEntry;
+import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+import org.brylex.sancus.util.SubjectHash;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves issuers from an OpenSSL hashed directory such as {@code /etc/ssl/certs}, where {@code c_rehash} links each
+ * certificate as {@code <subject hash>.<n>}. Only the files named by the hash of the missing issuer's DN are read, and
+ * each is parsed again only when its size or modification time changes.
+ * <p>
+ * With an index file, lookups go through a memory-mapped {@link HashedDirIndex} instead, which also covers
+ * directories that have not been rehashed. The index is built on first use, or when a file changed since the last run,
+ * and at most once per second the directory's modification time is checked to rebuild it when files are added or
+ * removed. Files edited in place are only noticed while the index is in use when every file is checked as well, see
+ * {@link #HashedDirResolver(Path, Path, boolean)}.
+ */
+public class HashedDirResolver implements CertificateChain.Resolver {
+
+    private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private record Parsed(long size, FileTime modified, List<X509Certificate> certificates) {
+    }
+
+    private final Path dir;
+    private final Path indexFile;
+    private final boolean checkFiles;
+    private final ConcurrentHashMap<Path, Parsed> parsed = new ConcurrentHashMap<>();
+    private volatile HashedDirIndex index;
+    private volatile long checked;
+
+    public HashedDirResolver(Path dir) {
+        this(dir, null);
+    }
+
+    /**
+     * @param indexFile where the index is kept between runs, or {@code null} to rely on the hashed file names; not
+     *                  in {@code dir}.
+     */
+    public HashedDirResolver(Path dir, Path indexFile) {
+        this(dir, indexFile, false);
+    }
+
+    /**
+     * @param checkFiles also stat every indexed file when checking whether the index is current, to notice files
+     *                   edited in place.
+     */
+    public HashedDirResolver(Path dir, Path indexFile, boolean checkFiles) {
+
+        if (dir == null) {
+            throw new IllegalArgumentException("Cannot specify NULL certificate directory.");
+        }
+        if (indexFile != null) {
+            HashedDirIndex.requireOutside(dir, indexFile);
+        }
+
+        this.dir = dir;
+        this.indexFile = indexFile;
+        this.checkFiles = checkFiles;
+    }
+
+    @Override
+    public CertificateChain resolve(CertificateChain chain) {
+
+        if (chain == null) {
+            throw new IllegalArgumentException("Cannot resolve NULL certificate chain.");
+        }
+
+        ChainEntry issuer = chain.issuedBy();
+        if (issuer.certificate() == null) {
+            X509Certificate issuerCertificate = find(issuer.dn(), null);
+            if (issuerCertificate != null) {
+                issuer.applyIfAbsent(issuerCertificate, ResolverSource.DIR);
+            }
+        }
+
+        resolve(issuer);
+
+        return chain;
+    }
+
+    private ChainEntry resolve(ChainEntry entry) {
+
+        if (entry.certificate() == null) {
+            return entry;
+        } else if (PrincipalTable.INSTANCE.selfIssued(entry.certificate())) {
+            return entry;
+        }
+
+        byte[] aki = KeyIdentifiers.authorityKeyIdentifier(entry.certificate());
+
+        ChainEntry issuer = entry.issuedBy();
+        if (issuer == null) {
+
+            X500Principal issuerDN = entry.certificate().getIssuerX500Principal();
+            X509Certificate issuerCertificate = find(issuerDN, aki);
+            if (issuerCertificate != null) {
+                issuer = entry.issuedBy(issuerCertificate);
+                issuer.resolvedBy(ResolverSource.DIR);
+            } else {
+                issuer = entry.issuedBy(issuerDN);
+                issuer.resolvedBy(ResolverSource.MISSING);
+            }
+        }
+
+        if (issuer.certificate() == null) {
+            X509Certificate issuerCertificate = find(issuer.dn(), aki);
+            if (issuerCertificate != null) {
+                issuer.applyIfAbsent(issuerCertificate, ResolverSource.DIR);
+            }
+        }
+
+        resolve(issuer);
+
+        return entry;
+    }
+
+    /**
+     * @return the certificate with the given subject, preferring the one whose Subject Key Identifier matches
+     * {@code authorityKeyIdentifier}, or {@code null}.
+     */
+    X509Certificate find(X500Principal subject, byte[] authorityKeyIdentifier) {
+
+        CanonicalName name = PrincipalTable.INSTANCE.intern(subject);
+        X509Certificate found = null;
+
+        for (X509Certificate certificate : candidates(subject)) {
+            if (!name.equals(PrincipalTable.INSTANCE.subject(certificate))) {
+                continue;
+            }
+            if (authorityKeyIdentifier == null
+                    || Arrays.equals(authorityKeyIdentifier, KeyIdentifiers.subjectKeyIdentifier(certificate))) {
+                return certificate;
+            }
+            if (found == null) {
+                found = certificate;
+            }
+        }
+
+        return found;
+    }
+
+    private List<X509Certificate> candidates(X500Principal subject) {
+
+        if (indexFile != null) {
+            return index().lookup(subject);
+        }
+
+        String hash = SubjectHash.hex(subject);
+        List<X509Certificate> certificates = new ArrayList<>(1);
+        for (int i = 0; ; i++) {
+            Path file = dir.resolve(hash + "." + i);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                parsed.remove(file);
+                return certificates;
+            }
+            certificates.addAll(certificates(file, attributes));
+        }
+    }
+
+    private List<X509Certificate> certificates(Path file, BasicFileAttributes attributes) {
+
+        Parsed cached = parsed.get(file);
+        if (cached != null && cached.size() == attributes.size()
+                && cached.modified().equals(attributes.lastModifiedTime())) {
+            return cached.certificates();
+        }
+
+        List<X509Certificate> certificates = CertificateFiles.read(file).certificates();
+        parsed.put(file, new Parsed(attributes.size(), attributes.lastModifiedTime(), certificates));
+        return certificates;
+    }
+
+    private HashedDirIndex index() {
+
+        HashedDirIndex current = index;
+        if (current != null && System.nanoTime() - checked < RECHECK_NANOS) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (index == null || System.nanoTime() - checked >= RECHECK_NANOS) {
+                if (index == null || !index.isCurrent(checkFiles)) {
+                    index = HashedDirIndex.open(dir, indexFile);
+                }
+                checked = System.nanoTime();
+            }
+            return index;
+        }
+    }
+}
@@ -3,9 +3,10 @@ package org.brylex.sancus.resolver;
 import org.brylex.sancus.CertificateChain;
 import org.brylex.sancus.ChainEntry;
 import org.brylex.sancus.ResolverSource;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
-import javax.net.ssl.X509TrustManager;
+import org.brylex.sancus.TrustAnchorIndex;
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
+
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
 
@@ -14,64 +15,43 @@ import java.security.cert.X509Certificate;
  */
 public class KeyStoreResolver implements CertificateChain.Resolver {
 
-    private final X509TrustManager[] trustManagers;
+    private final TrustAnchorIndex anchors;
     private final ResolverSource source;
 
     public KeyStoreResolver(final ResolverSource source, final KeyStore keyStore) {
-
-        this.source = source;
-
-        try {
-            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-            tmf.init(keyStore);
-
-            this.trustManagers = toX509(tmf.getTrustManagers());
-
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to initialize TrustManagers.", e);
-        }
+        this(source, TrustAnchorIndex.of(keyStore));
     }
 
-    private static X509TrustManager[] toX509(TrustManager[] trustManagers) {
-        X509TrustManager[] array = new X509TrustManager[trustManagers.length];
-        for (int i = 0; i < trustManagers.length; i++) {
-            array[i] = (X509TrustManager) trustManagers[i];
-        }
-        return array;
+    public KeyStoreResolver(final ResolverSource source, final TrustAnchorIndex anchors) {
+        this.source = source;
+        this.anchors = anchors;
     }
 
     @Override
     public CertificateChain resolve(CertificateChain chain) {
 
         if (chain.issuedBy() != null) {
-            resolve(chain.issuedBy());
+            resolve(chain.issuedBy(), chain.head().certificate());
         }
 
         return chain;
     }
 
-    private ChainEntry resolve(ChainEntry entry) {
+    private ChainEntry resolve(ChainEntry entry, X509Certificate subject) {
 
         if (entry.certificate() == null) {
 
-            boolean applied = false;
+            byte[] aki = subject != null ? KeyIdentifiers.authorityKeyIdentifier(subject) : null;
 
-            for (X509TrustManager trustManager : trustManagers) {
-                for (X509Certificate certificate : trustManager.getAcceptedIssuers()) {
-                    if (entry.dn().equals(certificate.getSubjectX500Principal())) {
-                        entry.apply(certificate, source);
-                        applied = true;
-                        break;
-                    }
-                }
-            }
-
-            if (!applied) {
+            X509Certificate certificate = anchors.find(entry.dn(), aki);
+            if (certificate == null) {
                 return entry;
             }
+
+            entry.applyIfAbsent(certificate, source);
         }
 
-        if (entry.certificate().getSubjectX500Principal().equals(entry.certificate().getIssuerX500Principal())) {
+        if (PrincipalTable.INSTANCE.selfIssued(entry.certificate())) {
 
             if (entry.resolvedBy() == null) {
                 entry.resolvedBy(source);
@@ -80,7 +60,7 @@ public class KeyStoreResolver implements CertificateChain.Resolver {
             return entry;
         }
 
-        resolve(entry.issuedBy());
+        resolve(entry.issuedBy(), entry.certificate());
 
         return entry;
     }
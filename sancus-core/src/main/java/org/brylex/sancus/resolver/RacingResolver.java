@@ -0,0 +1,220 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ChainEntry;
+import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.TrustAnchorIndex;
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.PrincipalTable;
+
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves each missing issuer by querying all sources at once and applying the first valid answer: a certificate
+ * with the missing subject whose key verifies the signature of the certificate below it. The remaining lookups are
+ * cancelled. That only interrupts their own wait: downloads run detached (see {@link SingleFlight#executeDetached}),
+ * so one shared with other resolvers completes for them, and fills the AIA cache.
+ * <p>
+ * Where a {@link ResolverPipeline} costs the sum of the latencies of the sources that miss, a race costs the latency
+ * of the fastest source that hits, at the price of always starting the slower lookups.
+ */
+public class RacingResolver implements CertificateChain.Resolver {
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    /**
+     * Upper bound on issuers resolved for one chain, guarding against cross-signed loops.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    @FunctionalInterface
+    public interface Lookup {
+
+        /**
+         * @return a candidate issuer of {@code subject}, named by {@code missing}, or {@code null}. Implementations
+         * should give up promptly when interrupted.
+         */
+        X509Certificate issuerOf(X509Certificate subject, ChainEntry missing);
+    }
+
+    public record Source(ResolverSource source, Lookup lookup) {
+
+        public static Source keyStore(ResolverSource source, TrustAnchorIndex anchors) {
+            return new Source(source, (subject, missing) ->
+                    anchors.find(missing.dn(), KeyIdentifiers.authorityKeyIdentifier(subject)));
+        }
+
+        public static Source directory(Path dir) {
+            return new Source(ResolverSource.DIR, (subject, missing) ->
+                    DirectoryIndex.of(dir).find(missing.name(), KeyIdentifiers.authorityKeyIdentifier(subject)));
+        }
+
+        public static Source remote(RemoteResolver resolver) {
+            return new Source(ResolverSource.REMOTE, resolver::issuerOf);
+        }
+    }
+
+    private record Answer(ResolverSource source, X509Certificate certificate) {
+    }
+
+    private final List<Source> sources;
+    private final ExecutorService executor;
+
+    private final Map<ResolverSource, AtomicLong> wins = new EnumMap<>(ResolverSource.class);
+    private final AtomicLong races = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public RacingResolver(List<Source> sources) {
+        this(sources, AsyncResolvers.defaultExecutor());
+    }
+
+    /**
+     * @param executor runs the lookups; cancelling its tasks must interrupt them, as with any {@link ExecutorService}.
+     */
+    public RacingResolver(List<Source> sources, ExecutorService executor) {
+
+        if (sources == null || sources.isEmpty() || executor == null) {
+            throw new IllegalArgumentException("Sources and executor are required.");
+        }
+
+        this.sources = List.copyOf(sources);
+        this.executor = executor;
+        for (ResolverSource source : ResolverSource.values()) {
+            wins.put(source, new AtomicLong());
+        }
+    }
+
+    @Override
+    public CertificateChain resolve(CertificateChain chain) {
+
+        if (chain == null) {
+            throw new IllegalArgumentException("Cannot resolve NULL certificate chain.");
+        }
+
+        for (int depth = 0; depth < MAX_DEPTH && !chain.isComplete(); depth++) {
+
+            ChainEntry subject = null;
+            ChainEntry missing = chain.head();
+            while (missing != null && missing.certificate() != null) {
+                subject = missing;
+                missing = missing.issuedBy();
+            }
+
+            if (missing == null || subject == null) {
+                break;
+            }
+
+            Answer answer = race(subject.certificate(), missing);
+            if (answer == null) {
+                chain.last(missing);
+                break;
+            }
+
+            // another resolver may have filled the entry meanwhile; either way it now has a certificate
+            if (missing.applyIfAbsent(answer.certificate(), answer.source())) {
+                wins.get(answer.source()).incrementAndGet();
+            }
+        }
+
+        return chain;
+    }
+
+    /**
+     * @return races won per source, counting only answers that were applied.
+     */
+    public Map<ResolverSource, Long> wins() {
+        Map<ResolverSource, Long> copy = new EnumMap<>(ResolverSource.class);
+        wins.forEach((source, count) -> {
+            if (count.get() > 0) {
+                copy.put(source, count.get());
+            }
+        });
+        return copy;
+    }
+
+    public long races() {
+        return races.get();
+    }
+
+    /**
+     * @return lookups that were still running when a race was decided.
+     */
+    public long cancelled() {
+        return cancelled.get();
+    }
+
+    private Answer race(X509Certificate subject, ChainEntry missing) {
+
+        races.incrementAndGet();
+
+        CompletableFuture<Answer> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(sources.size());
+        List<Future<?>> lookups = new ArrayList<>(sources.size());
+        List<AtomicBoolean> answered = new ArrayList<>(sources.size());
+
+        for (Source source : sources) {
+            AtomicBoolean done = new AtomicBoolean();
+            answered.add(done);
+            lookups.add(executor.submit(() -> {
+                try {
+                    X509Certificate candidate = source.lookup().issuerOf(subject, missing);
+                    done.set(true);
+                    if (candidate != null && issued(subject, candidate, missing)) {
+                        winner.complete(new Answer(source.source(), candidate));
+                    }
+                } catch (RuntimeException e) {
+                    done.set(true);
+                    LOG.log(Level.FINE, "Lookup of [" + missing.dn() + "] from " + source.source() + " failed.", e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        winner.complete(null);
+                    }
+                }
+            }));
+        }
+
+        try {
+            return winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            for (int i = 0; i < lookups.size(); i++) {
+                if (!answered.get(i).get() && lookups.get(i).cancel(true)) {
+                    cancelled.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static boolean issued(X509Certificate subject, X509Certificate candidate, ChainEntry missing) {
+
+        if (!missing.name().equals(PrincipalTable.INSTANCE.subject(candidate))) {
+            return false;
+        }
+
+        try {
+            subject.verify(candidate.getPublicKey());
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
@@ -8,20 +8,19 @@ import org.bouncycastle.asn1.DLSequence;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSSignedData;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.util.Store;
 import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.CertificateRegistry;
 import org.brylex.sancus.ChainEntry;
 import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.util.PrincipalTable;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.logging.Logger;
@@ -33,15 +32,61 @@ public class RemoteResolver implements CertificateChain.Resolver {
 
     private static final Logger LOG = Logger.getLogger("sancus");
 
-    final JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME);
+    private static final SingleFlight<String, X509Certificate> DOWNLOADS = new SingleFlight<>();
+
+    private final AiaCache cache;
+    private final SingleFlight<String, X509Certificate> downloads;
+    private final AiaBackoff backoff;
+    private final boolean cacheOnly;
+
+    public RemoteResolver() {
+        this(AiaCache.shared());
+    }
+
+    public RemoteResolver(AiaCache cache) {
+        this(cache, DOWNLOADS);
+    }
+
+    /**
+     * @param downloads coalesces concurrent downloads of the same caIssuers URL. Resolvers created without one share
+     *                  a process-wide instance, see {@link #sharedDownloads()}.
+     */
+    public RemoteResolver(AiaCache cache, SingleFlight<String, X509Certificate> downloads) {
+        this(cache, downloads, AiaBackoff.shared());
+    }
+
+    /**
+     * @param backoff negative cache consulted before, and updated after, each download.
+     */
+    public RemoteResolver(AiaCache cache, SingleFlight<String, X509Certificate> downloads, AiaBackoff backoff) {
+        this(cache, downloads, backoff, false);
+    }
+
+    private RemoteResolver(AiaCache cache, SingleFlight<String, X509Certificate> downloads, AiaBackoff backoff,
+                           boolean cacheOnly) {
+        this.cache = cache;
+        this.downloads = downloads;
+        this.backoff = backoff;
+        this.cacheOnly = cacheOnly;
+    }
+
+    /**
+     * @return a resolver that only applies issuers already fresh in {@code cache}, without any network access; the
+     * cheap stage to run before a regular {@link RemoteResolver}, see {@link ResolverPipeline}.
+     */
+    public static RemoteResolver cacheOnly(AiaCache cache) {
+        return new RemoteResolver(cache, DOWNLOADS, AiaBackoff.shared(), true);
+    }
+
+    /**
+     * @return the process-wide download coalescer, with counters for issued and coalesced fetches.
+     */
+    public static SingleFlight<String, X509Certificate> sharedDownloads() {
+        return DOWNLOADS;
+    }
 
     private static X509Certificate loadCertificate(byte[] bytes) {
-        try (InputStream is = new ByteArrayInputStream(bytes)) {
-            CertificateFactory factory = CertificateFactory.getInstance("X.509");
-            return (X509Certificate) factory.generateCertificate(is);
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to load DER-encoded certificate.", e);
-        }
+        return CertificateRegistry.INSTANCE.certificate(bytes);
     }
 
     private static URL getIssuerCaUrl(X509Certificate certificate) {
@@ -90,23 +135,71 @@ public class RemoteResolver implements CertificateChain.Resolver {
 
     byte[] downloadX509CertificateBytes(URL url) {
         try {
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(10000);
-            try (InputStream is = connection.getInputStream()) {
-                return is.readAllBytes();
-            } finally {
-                connection.disconnect();
-            }
-        } catch (IOException e) {
+            return cache.fetch(url.toURI());
+        } catch (URISyntaxException e) {
             throw new RuntimeException("Unable to download remote certificate bytes.", e);
         }
     }
 
-    X509Certificate downloadX509Certificate(URL url) {
+    /**
+     * @return the issuer certificate, or {@code null} if the download was skipped because a circuit is open.
+     */
+    X509Certificate downloadX509Certificate(URL url, ChainEntry issuer) {
 
-        byte[] bytes = downloadX509CertificateBytes(url);
+        if (cacheOnly) {
+            return cached(url);
+        }
 
+        // keyed on the external form; URL.equals() would resolve the host name
+        String key = url.toExternalForm();
+
+        if (backoff.isCircuitOpen(key) || backoff.isCircuitOpen(issuer.name())) {
+            backoff.skipped();
+            LOG.fine("Skipping download of issuer [" + issuer.dn() + "] from [" + url + "]; circuit open after earlier failures.");
+            return null;
+        }
+
+        LOG.info("Downloading issuer [" + issuer.dn() + "] certificate from [" + url + "]");
+        // detached, so that a caller giving up (such as the loser of a race) does not fail the callers it coalesced
+        return downloads.executeDetached(key, () -> {
+            try {
+                X509Certificate certificate = parseDownload(url);
+                backoff.success(key, issuer.name());
+                return certificate;
+            } catch (RuntimeException e) {
+                backoff.failure(key, issuer.name());
+                throw e;
+            }
+        }, AsyncResolvers.defaultExecutor());
+    }
+
+    /**
+     * @return the issuer of {@code subject} from its caIssuers URL, or {@code null} if it has none or the download
+     * was skipped.
+     */
+    X509Certificate issuerOf(X509Certificate subject, ChainEntry issuer) {
+        URL url = getIssuerCaUrl(subject);
+        return url != null ? downloadX509Certificate(url, issuer) : null;
+    }
+
+    private X509Certificate cached(URL url) {
+        try {
+            byte[] bytes = cache.cached(url.toURI());
+            return bytes != null ? parse(bytes) : null;
+        } catch (URISyntaxException | RuntimeException e) {
+            LOG.fine("Ignoring cached copy of [" + url + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private X509Certificate parseDownload(URL url) {
+        return parse(downloadX509CertificateBytes(url));
+    }
+
+    /**
+     * @return the certificate in a DER or PEM encoded certificate, or the first certificate of a PKCS#7 bundle.
+     */
+    static X509Certificate parse(byte[] bytes) {
         try (InputStream is = new ByteArrayInputStream(bytes)) {
 
             CMSSignedData sd = new CMSSignedData(is);
@@ -114,7 +207,7 @@ public class RemoteResolver implements CertificateChain.Resolver {
 
             Collection<X509CertificateHolder> matches = certificates.getMatches(null);
             for (X509CertificateHolder holder : matches) {
-                return converter.getCertificate(holder);
+                return CertificateRegistry.INSTANCE.certificate(holder.getEncoded());
             }
 
         } catch (CMSException e) {
@@ -136,9 +229,10 @@ public class RemoteResolver implements CertificateChain.Resolver {
             URL url = getIssuerCaUrl(chain.head().certificate());
 
             if (url != null) {
-                LOG.info("Downloading issuer [" + issuer.dn() + "] certificate from [" + url + "]");
-                X509Certificate certificate = downloadX509Certificate(url);
-                issuer.apply(certificate, ResolverSource.REMOTE);
+                X509Certificate certificate = downloadX509Certificate(url, issuer);
+                if (certificate != null) {
+                    issuer.applyIfAbsent(certificate, ResolverSource.REMOTE);
+                }
             }
 
         }
@@ -152,7 +246,7 @@ public class RemoteResolver implements CertificateChain.Resolver {
 
         if (entry.certificate() == null) {
             return entry;
-        } else if (entry.certificate().getSubjectX500Principal().equals(entry.certificate().getIssuerX500Principal())) {
+        } else if (PrincipalTable.INSTANCE.selfIssued(entry.certificate())) {
             return entry;
         }
 
@@ -173,9 +267,12 @@ public class RemoteResolver implements CertificateChain.Resolver {
                 return entry;
             }
 
-            LOG.info("Downloading issuer [" + entry.issuedBy().dn() + "] certificate from [" + url + "]");
-            X509Certificate certificate = downloadX509Certificate(url);
-            issuer.apply(certificate, ResolverSource.REMOTE);
+            X509Certificate certificate = downloadX509Certificate(url, issuer);
+            if (certificate == null) {
+                entry.last(issuer);
+                return entry;
+            }
+            issuer.applyIfAbsent(certificate, ResolverSource.REMOTE);
         }
 
         resolve(issuer);
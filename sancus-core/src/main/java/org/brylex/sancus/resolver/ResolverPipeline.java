@@ -0,0 +1,208 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.CertificateChain.Resolver;
+import org.brylex.sancus.ChainEntry;
+import org.brylex.sancus.ResolverSource;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs an ordered list of resolvers on a chain, stopping as soon as it {@link CertificateChain#isComplete() is
+ * complete}.
+ * <p>
+ * Stages are ordered by {@link Tier} first, so local sources always run before cached and network ones whatever
+ * order they were added in, and by the order they were added within a tier. A stage that fails is logged and
+ * counted, and the next stage runs regardless. Each stage keeps hit, miss and latency counters, see
+ * {@link #stats()}.
+ */
+public final class ResolverPipeline implements Resolver {
+
+    private static final Logger LOG = Logger.getLogger("sancus");
+
+    /**
+     * Relative cost of a stage, cheapest first.
+     */
+    public enum Tier {
+        LOCAL, CACHE, NETWORK
+    }
+
+    /**
+     * @param runs      times the stage was run.
+     * @param hits      runs that changed the chain: added a certificate, marked an entry as resolved by a source or
+     *                  completed it.
+     * @param misses    runs that changed nothing, failed runs included.
+     * @param failures  runs that threw.
+     * @param skipped   times the stage was not run because the chain was already complete.
+     * @param totalTime time spent in the stage over all runs.
+     */
+    public record StageStats(String name, Tier tier, long runs, long hits, long misses, long failures, long skipped,
+                             Duration totalTime) {
+
+        public Duration meanTime() {
+            return runs == 0 ? Duration.ZERO : totalTime.dividedBy(runs);
+        }
+    }
+
+    /**
+     * What a stage can change: the certificate of each entry, the source it was resolved by, and completeness.
+     */
+    private record Progress(boolean complete, List<X509Certificate> certificates, List<ResolverSource> sources) {
+
+        private static Progress of(CertificateChain chain) {
+            List<X509Certificate> certificates = new ArrayList<>();
+            List<ResolverSource> sources = new ArrayList<>();
+            for (ChainEntry entry = chain.head(); entry != null; entry = entry.issuedBy()) {
+                certificates.add(entry.certificate());
+                sources.add(entry.resolvedBy());
+            }
+            return new Progress(chain.isComplete(), certificates, sources);
+        }
+    }
+
+    private static final class Stage {
+
+        private final String name;
+        private final Tier tier;
+        private final Resolver resolver;
+
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Stage(String name, Tier tier, Resolver resolver) {
+            this.name = name;
+            this.tier = tier;
+            this.resolver = resolver;
+        }
+
+        private StageStats stats() {
+            return new StageStats(name, tier, runs.sum(), hits.sum(), misses.sum(), failures.sum(), skipped.sum(),
+                    Duration.ofNanos(nanos.sum()));
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<Stage> stages = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder stage(String name, Tier tier, Resolver resolver) {
+
+            if (name == null || tier == null || resolver == null) {
+                throw new IllegalArgumentException("Stage name, tier and resolver are required.");
+            }
+
+            stages.add(new Stage(name, tier, resolver));
+            return this;
+        }
+
+        public Builder local(String name, Resolver resolver) {
+            return stage(name, Tier.LOCAL, resolver);
+        }
+
+        public Builder cache(String name, Resolver resolver) {
+            return stage(name, Tier.CACHE, resolver);
+        }
+
+        public Builder network(String name, Resolver resolver) {
+            return stage(name, Tier.NETWORK, resolver);
+        }
+
+        /**
+         * Adds the stages of {@link ResolverPipeline#aia()}: issuers in the {@link AiaCache#shared() AIA cache}, then
+         * downloads.
+         */
+        public Builder aia() {
+            return cache("CACHE", RemoteResolver.cacheOnly(AiaCache.shared()))
+                    .network("REMOTE", new RemoteResolver());
+        }
+
+        public ResolverPipeline build() {
+            List<Stage> ordered = new ArrayList<>(stages);
+            ordered.sort(Comparator.comparing(stage -> stage.tier));
+            return new ResolverPipeline(ordered);
+        }
+    }
+
+    private static final class DefaultAia {
+        private static final ResolverPipeline INSTANCE = builder().aia().build();
+    }
+
+    private final List<Stage> stages;
+
+    private ResolverPipeline(List<Stage> stages) {
+        this.stages = List.copyOf(stages);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the shared pipeline resolving missing issuers from caIssuers URLs: issuers already in the
+     * {@link AiaCache#shared() AIA cache} first, then downloads.
+     */
+    public static ResolverPipeline aia() {
+        return DefaultAia.INSTANCE;
+    }
+
+    @Override
+    public CertificateChain resolve(CertificateChain chain) {
+
+        if (chain == null) {
+            throw new IllegalArgumentException("Cannot resolve NULL certificate chain.");
+        }
+
+        for (Stage stage : stages) {
+
+            if (chain.isComplete()) {
+                stage.skipped.increment();
+                continue;
+            }
+
+            Progress before = Progress.of(chain);
+            long start = System.nanoTime();
+            try {
+                stage.resolver.resolve(chain);
+            } catch (RuntimeException e) {
+                stage.failures.increment();
+                LOG.log(Level.FINE, "Resolver stage [" + stage.name + "] failed.", e);
+            } finally {
+                stage.nanos.add(System.nanoTime() - start);
+                stage.runs.increment();
+            }
+
+            if (!Progress.of(chain).equals(before)) {
+                stage.hits.increment();
+            } else {
+                stage.misses.increment();
+            }
+        }
+
+        return chain;
+    }
+
+    /**
+     * @return the counters of each stage, in the order the stages run.
+     */
+    public List<StageStats> stats() {
+        List<StageStats> stats = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            stats.add(stage.stats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,131 @@
+package org.brylex.sancus.resolver;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the supplier, callers arriving while it is
+ * still running wait for and share its result (or failure). Nothing is cached once the call has completed.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public V execute(K key, Supplier<V> supplier) {
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        issued.incrementAndGet();
+        try {
+            V value = supplier.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Like {@link #execute}, but runs the supplier on {@code executor}, so every caller, the first one included, only
+     * waits for the shared result. An interrupted caller stops waiting and gets a {@link CancellationException} with
+     * its interrupt status kept, while the call carries on for the others.
+     */
+    public V executeDetached(K key, Supplier<V> supplier, Executor executor) {
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return awaitInterruptibly(existing);
+        }
+
+        issued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                V value;
+                try {
+                    value = supplier.get();
+                } catch (RuntimeException | Error e) {
+                    inFlight.remove(key, mine);
+                    mine.completeExceptionally(e);
+                    return;
+                }
+                // removed first, so that nothing is in flight once the waiters have their result
+                inFlight.remove(key, mine);
+                mine.complete(value);
+            });
+        } catch (RejectedExecutionException e) {
+            mine.completeExceptionally(e);
+            inFlight.remove(key, mine);
+            throw e;
+        }
+
+        return awaitInterruptibly(mine);
+    }
+
+    /**
+     * @return calls that ran the supplier.
+     */
+    public long issued() {
+        return issued.get();
+    }
+
+    /**
+     * @return calls that waited for another caller's result instead of running the supplier.
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V awaitInterruptibly(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a shared call.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            } else if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            } else if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
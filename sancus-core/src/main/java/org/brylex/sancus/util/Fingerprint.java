@@ -0,0 +1,140 @@
+package org.brylex.sancus.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SHA-256 fingerprint of a DER-encoded certificate, usable as a map key.
+ * <p>
+ * The 32 digest bytes are kept as-is and the hash code is taken from them once; the hex form is only built by
+ * {@link #toString()}. Fingerprints of {@link X509Certificate} instances are remembered per instance (weakly), so a
+ * certificate that JSSE hands out again from its session cache is not hashed a second time.
+ */
+public final class Fingerprint {
+
+    private static final int LENGTH = 32;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to initialize SHA-256 MessageDigest.", e);
+        }
+    });
+
+    private static final ConcurrentHashMap<InstanceKey, Fingerprint> BY_INSTANCE = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<X509Certificate> COLLECTED = new ReferenceQueue<>();
+
+    private final byte[] digest;
+    private final int hash;
+
+    private Fingerprint(byte[] digest) {
+        this.digest = digest;
+        this.hash = (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | (digest[3] & 0xff);
+    }
+
+    public static Fingerprint of(X509Certificate certificate) {
+
+        expunge();
+
+        Fingerprint fingerprint = BY_INSTANCE.get(new InstanceKey(certificate, null));
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+
+        try {
+            fingerprint = of(certificate.getEncoded());
+        } catch (CertificateEncodingException e) {
+            throw new RuntimeException("Unable to compute certificate fingerprint.", e);
+        }
+
+        BY_INSTANCE.put(new InstanceKey(certificate, COLLECTED), fingerprint);
+        return fingerprint;
+    }
+
+    public static Fingerprint of(byte[] der) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return new Fingerprint(digest.digest(der));
+    }
+
+    public static Fingerprint fromHex(String hex) {
+        byte[] digest = HexFormat.of().parseHex(hex);
+        if (digest.length != LENGTH) {
+            throw new IllegalArgumentException("A SHA-256 fingerprint is " + LENGTH + " bytes, not " + digest.length + ".");
+        }
+        return new Fingerprint(digest);
+    }
+
+    public byte[] toByteArray() {
+        return digest.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Fingerprint other && hash == other.hash && Arrays.equals(digest, other.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return the lowercase hex form, 64 characters.
+     */
+    @Override
+    public String toString() {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    static int cachedInstances() {
+        expunge();
+        return BY_INSTANCE.size();
+    }
+
+    private static void expunge() {
+        for (Object key; (key = COLLECTED.poll()) != null; ) {
+            BY_INSTANCE.remove(key);
+        }
+    }
+
+    /**
+     * Weak, identity-based key. Lookups use a key without a queue; stored keys are enqueued once collected.
+     */
+    private static final class InstanceKey extends WeakReference<X509Certificate> {
+
+        private final int hash;
+
+        private InstanceKey(X509Certificate certificate, ReferenceQueue<X509Certificate> queue) {
+            super(certificate, queue);
+            this.hash = System.identityHashCode(certificate);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof InstanceKey other) || hash != other.hash) {
+                return false;
+            }
+            X509Certificate certificate = get();
+            return certificate != null && certificate == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.brylex.sancus.util;
+
+import org.bouncycastle.asn1.x509.Extension;
+
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Extracts the Subject and Authority Key Identifiers used to link certificates without comparing DNs.
+ * <p>
+ * Both extensions have a fixed, shallow structure, so they are read straight from the DER instead of going
+ * through an ASN.1 object tree; chain linking calls this for every certificate it sees.
+ */
+public final class KeyIdentifiers {
+
+    private static final String SKI_OID = Extension.subjectKeyIdentifier.getId();
+    private static final String AKI_OID = Extension.authorityKeyIdentifier.getId();
+
+    private static final int OCTET_STRING = 0x04;
+    private static final int SEQUENCE = 0x30;
+    private static final int KEY_IDENTIFIER = 0x80;
+
+    private KeyIdentifiers() {
+    }
+
+    /**
+     * @return the raw key identifier octets, or {@code null} if the extension is absent or malformed.
+     */
+    public static byte[] subjectKeyIdentifier(X509Certificate certificate) {
+        return subjectKeyIdentifier(certificate.getExtensionValue(SKI_OID));
+    }
+
+    /**
+     * @return the keyIdentifier field of the extension, or {@code null} if the extension is absent, malformed
+     * or only carries an issuer name and serial number.
+     */
+    public static byte[] authorityKeyIdentifier(X509Certificate certificate) {
+        return authorityKeyIdentifier(certificate.getExtensionValue(AKI_OID));
+    }
+
+    /**
+     * @param extensionValue the DER OCTET STRING returned by {@link X509Certificate#getExtensionValue(String)}.
+     */
+    public static byte[] subjectKeyIdentifier(byte[] extensionValue) {
+        if (extensionValue == null) {
+            return null;
+        }
+
+        // OCTET STRING { OCTET STRING keyIdentifier }
+        int[] outer = header(extensionValue, 0, OCTET_STRING);
+        if (outer == null) {
+            return null;
+        }
+
+        int[] inner = header(extensionValue, outer[0], OCTET_STRING);
+        return inner != null ? Arrays.copyOfRange(extensionValue, inner[0], inner[0] + inner[1]) : null;
+    }
+
+    /**
+     * @param extensionValue the DER OCTET STRING returned by {@link X509Certificate#getExtensionValue(String)}.
+     */
+    public static byte[] authorityKeyIdentifier(byte[] extensionValue) {
+        if (extensionValue == null) {
+            return null;
+        }
+
+        // OCTET STRING { SEQUENCE { [0] keyIdentifier OPTIONAL, [1] issuer OPTIONAL, [2] serial OPTIONAL } }
+        int[] outer = header(extensionValue, 0, OCTET_STRING);
+        if (outer == null) {
+            return null;
+        }
+
+        int[] sequence = header(extensionValue, outer[0], SEQUENCE);
+        if (sequence == null || sequence[1] == 0) {
+            return null;
+        }
+
+        int[] keyId = header(extensionValue, sequence[0], KEY_IDENTIFIER);
+        return keyId != null ? Arrays.copyOfRange(extensionValue, keyId[0], keyId[0] + keyId[1]) : null;
+    }
+
+    /**
+     * @return {content offset, content length} of the TLV at {@code offset}, or {@code null} if the tag does not
+     * match or the length runs past the end of the buffer.
+     */
+    private static int[] header(byte[] der, int offset, int tag) {
+
+        if (offset + 2 > der.length || (der[offset] & 0xff) != tag) {
+            return null;
+        }
+
+        int length = der[offset + 1] & 0xff;
+        int position = offset + 2;
+
+        if (length > 0x80) {
+            int octets = length & 0x7f;
+            if (octets > 3 || position + octets > der.length) {
+                return null;
+            }
+
+            length = 0;
+            for (int i = 0; i < octets; i++) {
+                length = (length << 8) | (der[position++] & 0xff);
+            }
+        } else if (length == 0x80) {
+            return null;
+        }
+
+        return position + length <= der.length ? new int[]{position, length} : null;
+    }
+}
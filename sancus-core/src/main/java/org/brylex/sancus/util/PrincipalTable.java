@@ -0,0 +1,202 @@
+package org.brylex.sancus.util;
+
+import javax.security.auth.x500.X500Principal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide interning table for distinguished names.
+ * <p>
+ * {@link X500Principal#equals(Object)} canonicalizes both names on every call. The table does that once per
+ * distinct name and hands out a {@link CanonicalName} with a compact id, so chain linking, resolver lookups and
+ * trust marking compare ints. Lookups are keyed by the principal instance first, then by the DER encoding, which is
+ * the same for the subject and issuer fields of linked certificates in practice, and only canonicalize on a miss.
+ */
+public final class PrincipalTable {
+
+    /**
+     * A generation is dropped when it grows past this many distinct encodings. Names handed out before that stay
+     * valid; they just no longer share ids with names interned after it.
+     */
+    static final int MAX_SIZE = 1 << 16;
+
+    public static final PrincipalTable INSTANCE = new PrincipalTable(MAX_SIZE);
+
+    /**
+     * One generation of the table. It is replaced as a whole, so the maps of a generation always agree on the name
+     * of an encoding, however interns and evictions interleave.
+     * <p>
+     * {@code byPrincipal} is keyed on principal identity: certificates hand out the same principal on every call, so
+     * a certificate seen before costs neither a canonicalization nor the copy {@link X500Principal#getEncoded()}
+     * makes.
+     */
+    private record Generation(Map<Identity, CanonicalName> byPrincipal, Map<ByteBuffer, CanonicalName> byEncoded,
+                              Map<String, CanonicalName> byCanonical) {
+
+        private Generation() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    private record Identity(X500Principal principal) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity other && principal == other.principal;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(principal);
+        }
+    }
+
+    private final int maxSize;
+    private final AtomicReference<Generation> generation = new AtomicReference<>(new Generation());
+    private final AtomicInteger ids = new AtomicInteger();
+
+    PrincipalTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public CanonicalName intern(X500Principal principal) {
+
+        Generation current = generation.get();
+        Identity identity = new Identity(principal);
+
+        CanonicalName name = current.byPrincipal().get(identity);
+        if (name != null) {
+            return name;
+        }
+
+        name = intern(current, principal, ByteBuffer.wrap(principal.getEncoded()));
+        if (current.byPrincipal().size() >= maxSize) {
+            // principals are per certificate instance, so this map fills faster than the others; start it over
+            generation.compareAndSet(current, new Generation(new ConcurrentHashMap<>(), current.byEncoded(),
+                    current.byCanonical()));
+        } else {
+            current.byPrincipal().putIfAbsent(identity, name);
+        }
+        return name;
+    }
+
+    /**
+     * Interns the DER-encoded name at {@code der[offset, offset + length)} without copying it when the encoding has
+     * been seen before.
+     */
+    public CanonicalName intern(byte[] der, int offset, int length) {
+
+        Generation current = generation.get();
+
+        CanonicalName name = current.byEncoded().get(ByteBuffer.wrap(der, offset, length));
+        if (name != null) {
+            return name;
+        }
+
+        byte[] encoded = Arrays.copyOfRange(der, offset, offset + length);
+        return intern(current, new X500Principal(encoded), ByteBuffer.wrap(encoded));
+    }
+
+    private CanonicalName intern(Generation current, X500Principal principal, ByteBuffer encoded) {
+
+        CanonicalName name = current.byEncoded().get(encoded);
+        if (name != null) {
+            return name;
+        }
+
+        if (current.byEncoded().size() >= maxSize) {
+            generation.compareAndSet(current, new Generation());
+            current = generation.get();
+        }
+
+        name = current.byCanonical().computeIfAbsent(principal.getName(X500Principal.CANONICAL),
+                canonical -> new CanonicalName(ids.incrementAndGet(), principal, canonical));
+
+        CanonicalName existing = current.byEncoded().putIfAbsent(encoded, name);
+        return existing != null ? existing : name;
+    }
+
+    public CanonicalName subject(X509Certificate certificate) {
+        return intern(certificate.getSubjectX500Principal());
+    }
+
+    public CanonicalName issuer(X509Certificate certificate) {
+        return intern(certificate.getIssuerX500Principal());
+    }
+
+    /**
+     * Equivalent to {@code left.equals(right)} for principals, without canonicalizing names already seen.
+     */
+    public boolean same(X500Principal left, X500Principal right) {
+        return left == right || intern(left).equals(intern(right));
+    }
+
+    public boolean selfIssued(X509Certificate certificate) {
+        return subject(certificate).equals(issuer(certificate));
+    }
+
+    public int size() {
+        return generation.get().byCanonical().size();
+    }
+
+    /**
+     * An interned distinguished name. Two names are equal if they canonicalize to the same string; names from the
+     * same table generation are compared by id only.
+     */
+    public static final class CanonicalName {
+
+        private final int id;
+        private final X500Principal principal;
+        private final byte[] canonical;
+        private final int hash;
+
+        private CanonicalName(int id, X500Principal principal, String canonical) {
+            this.id = id;
+            this.principal = principal;
+            this.canonical = canonical.getBytes(StandardCharsets.UTF_8);
+            this.hash = Arrays.hashCode(this.canonical);
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public X500Principal principal() {
+            return principal;
+        }
+
+        /**
+         * @return the UTF-8 bytes of {@link X500Principal#CANONICAL RFC 2253 canonical} form; do not modify.
+         */
+        public byte[] canonical() {
+            return canonical;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CanonicalName other) || hash != other.hash) {
+                return false;
+            }
+            return id == other.id || Arrays.equals(canonical, other.canonical);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return principal.toString();
+        }
+    }
+}
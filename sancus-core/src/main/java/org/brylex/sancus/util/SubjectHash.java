@@ -0,0 +1,129 @@
+package org.brylex.sancus.util;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1String;
+import org.bouncycastle.asn1.DERBMPString;
+import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.DERPrintableString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.DERT61String;
+import org.bouncycastle.asn1.DERUTF8String;
+import org.bouncycastle.asn1.DERUniversalString;
+import org.bouncycastle.asn1.DERVisibleString;
+import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * The OpenSSL subject name hash, as printed by {@code openssl x509 -subject_hash} and used to name the
+ * {@code <hash>.<n>} links of a {@code c_rehash} directory such as {@code /etc/ssl/certs}.
+ * <p>
+ * It is the first four bytes, little-endian, of the SHA-1 digest of the name's canonical encoding: each RDN's
+ * string values converted to UTF-8, trimmed, with runs of white space collapsed and ASCII lower-cased, and the RDN
+ * sets concatenated without the outer SEQUENCE.
+ */
+public final class SubjectHash {
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unable to initialize SHA-1 digest.", e);
+        }
+    });
+
+    private SubjectHash() {
+    }
+
+    /**
+     * @return the hash as an unsigned 32-bit value.
+     */
+    public static long of(X500Principal name) {
+        byte[] digest = digest(name);
+        return (digest[0] & 0xffL) | (digest[1] & 0xffL) << 8 | (digest[2] & 0xffL) << 16 | (digest[3] & 0xffL) << 24;
+    }
+
+    /**
+     * @return the hash as eight lower-case hex digits, the base name of the files in a hashed directory.
+     */
+    public static String hex(X500Principal name) {
+        return String.format(Locale.ROOT, "%08x", of(name));
+    }
+
+    /**
+     * @return the first eight bytes of the same digest as a 64-bit identifier; far less collision prone than the
+     * 32-bit hash, for indexes that are not bound by the OpenSSL file names.
+     */
+    public static long id(X500Principal name) {
+        byte[] digest = digest(name);
+        long id = 0;
+        for (int i = 7; i >= 0; i--) {
+            id = id << 8 | (digest[i] & 0xffL);
+        }
+        return id;
+    }
+
+    public static byte[] canonicalEncoding(X500Principal name) {
+
+        ByteArrayOutputStream canonical = new ByteArrayOutputStream(name.getEncoded().length);
+        try {
+            for (RDN rdn : X500Name.getInstance(name.getEncoded()).getRDNs()) {
+
+                ASN1EncodableVector values = new ASN1EncodableVector();
+                for (AttributeTypeAndValue value : rdn.getTypesAndValues()) {
+                    values.add(new DERSequence(new ASN1Encodable[]{value.getType(), canonical(value.getValue())}));
+                }
+
+                canonical.write(new DERSet(values).getEncoded(ASN1Encoding.DER));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to encode canonical name [" + name + "].", e);
+        }
+
+        return canonical.toByteArray();
+    }
+
+    private static byte[] digest(X500Principal name) {
+        MessageDigest sha1 = SHA1.get();
+        sha1.reset();
+        return sha1.digest(canonicalEncoding(name));
+    }
+
+    private static ASN1Encodable canonical(ASN1Encodable value) {
+
+        if (!(value instanceof DERUTF8String || value instanceof DERBMPString || value instanceof DERUniversalString
+                || value instanceof DERPrintableString || value instanceof DERT61String || value instanceof DERIA5String
+                || value instanceof DERVisibleString)) {
+            return value;
+        }
+
+        String string = ((ASN1String) value).getString();
+        StringBuilder buffer = new StringBuilder(string.length());
+
+        boolean space = false;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r') {
+                space = buffer.length() > 0;
+                continue;
+            }
+            if (space) {
+                buffer.append(' ');
+                space = false;
+            }
+            buffer.append(c < 0x80 ? Character.toLowerCase(c) : c);
+        }
+
+        return new DERUTF8String(buffer.toString());
+    }
+}
@@ -1,10 +1,9 @@
 package org.brylex.sancus.util;
 
-import java.io.InputStream;
-import java.nio.file.Files;
+import org.brylex.sancus.TrustStores;
+
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.security.KeyStore;
 
 /**
@@ -17,20 +16,14 @@ public class Util {
     private Util() {
     }
 
+    /**
+     * Loads the KeyStore through {@link TrustStores}, so each trust store file is decoded once per process. The
+     * returned KeyStore is the caller's own and may be modified.
+     */
     public static KeyStore loadKeyStore(Path path, String password) {
-        try (InputStream is = Files.newInputStream(path, StandardOpenOption.READ)) {
-
-            KeyStore jks = KeyStore.getInstance("JKS");
-            jks.load(is, password.toCharArray());
-
-            return jks;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to load KeyStore [" + path.toAbsolutePath() + "].", e);
-        }
+        return TrustStores.keyStore(path, password);
     }
 
-
     public static Path getEffectiveDefaultJksPath() {
         String javaHome = System.getProperty("java.home");
 
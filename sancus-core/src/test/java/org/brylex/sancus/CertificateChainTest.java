@@ -3,6 +3,7 @@ package org.brylex.sancus;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.brylex.sancus.resolver.KeyStoreResolver;
 import static org.brylex.sancus.ResolverSource.JKS;
+import org.brylex.sancus.util.ChainGenerator;
 import org.brylex.sancus.util.Util;
 import org.junit.jupiter.api.Test;
 
@@ -10,6 +11,13 @@ import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.Security;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.brylex.sancus.util.Certificates.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -50,6 +58,42 @@ public class CertificateChainTest {
         assertNull(chain.issuedBy().certificate());
     }
 
+    @Test
+    void resolvedCertificatesAreDeduplicated() throws Exception {
+
+        final CertificateChain chain = CertificateChain.create(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2);
+        assertFalse(chain.isComplete());
+
+        chain.last().apply(STARFIELD_CLASS2, JKS);
+        chain.last().apply(VALICERT_CLASS2, JKS);
+        chain.last().apply(VALICERT_CLASS2, JKS);
+
+        assertTrue(chain.isComplete());
+        assertEquals(2, chain.resolvedCertificates().size());
+        assertEquals(2, chain.jks().size());
+        assertNotNull(chain.jks().getCertificateAlias(VALICERT_CLASS2));
+    }
+
+    @Test
+    void keepsCrossSignedIssuerAsCandidate() {
+
+        ChainGenerator.Issued oldRoot = ChainGenerator.root("Old Root");
+        ChainGenerator.Issued newRoot = ChainGenerator.root("New Root");
+        ChainGenerator.Issued cross = ChainGenerator.crossSign(newRoot, oldRoot, Duration.ofDays(365), "SHA256withECDSA");
+        ChainGenerator.Issued ca = ChainGenerator.intermediate("Issuing CA", newRoot);
+        ChainGenerator.Issued leaf = ChainGenerator.leaf("cross.example", ca);
+
+        TrustAnchorIndex anchors = TrustAnchorIndex.of(List.of(oldRoot.certificate()));
+        CertificateChain chain = CertificateChain.create(anchors, leaf.certificate(), ca.certificate(),
+                newRoot.certificate(), cross.certificate());
+
+        assertTrue(chain.isAnchored());
+        assertFalse(chain.isComplete());
+        assertEquals(2, chain.paths().size());
+        assertEquals(cross.certificate(), chain.issuedBy().issuedBy().certificate());
+        assertEquals(List.of(cross.certificate(), newRoot.certificate()), chain.issuedBy().candidateIssuers());
+    }
+
     @Test
     public void resolveFromDefaultTrustManager() throws Exception {
 
@@ -72,6 +116,25 @@ public class CertificateChainTest {
         //assertThat(chain.last().resolvedBy(), equalTo("JALLA"));
     }
 
+    @Test
+    void anchorsAreIndexedOncePerKeyStore() throws Exception {
+
+        KeyStore jks = jks("src/test/resources/jks/aws.jks", "changeit");
+        CertificateChain chain = CertificateChain.create(jks);
+
+        TrustAnchorIndex anchors = chain.anchors();
+        assertEquals(2, anchors.size());
+        assertSame(anchors, chain.anchors());
+
+        // resolving from the anchors stores them again, which changes nothing
+        chain.apply(anchors, AWS_AMAZON);
+        new KeyStoreResolver(JKS, anchors).resolve(chain);
+        assertSame(anchors, chain.anchors());
+
+        jks.deleteEntry(jks.aliases().nextElement());
+        assertEquals(1, chain.anchors().size());
+    }
+
     private KeyStoreResolver resolver() throws Exception {
         return resolver(null);
     }
@@ -80,4 +143,31 @@ public class CertificateChainTest {
         return new KeyStoreResolver(JKS, jks);
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void concurrentResolversApplyAnIssuerOnce() throws Exception {
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2);
+        ChainEntry missing = chain.last();
+
+        List<Callable<Boolean>> resolvers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            ResolverSource source = i % 2 == 0 ? JKS : ResolverSource.REMOTE;
+            resolvers.add(() -> missing.applyIfAbsent(VALICERT_CLASS2, source));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            long applied = 0;
+            for (Future<Boolean> result : executor.invokeAll(resolvers)) {
+                applied += result.get() ? 1 : 0;
+            }
+            assertEquals(1, applied);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(chain.isComplete());
+        assertEquals(List.of(VALICERT_CLASS2), chain.resolvedCertificates());
+    }
+}
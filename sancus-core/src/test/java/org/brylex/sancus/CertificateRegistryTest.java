@@ -0,0 +1,143 @@
+package org.brylex.sancus;
+
+import org.bouncycastle.asn1.x509.Extension;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CertificateRegistryTest {
+
+    @Test
+    void sameEncodingGivesSameCertificate() throws Exception {
+
+        CertificateRegistry registry = new CertificateRegistry(16);
+
+        X509Certificate first = registry.certificate(AMAZON_CA.getEncoded());
+        X509Certificate second = registry.certificate(AMAZON_CA.getEncoded());
+
+        assertSame(first, second);
+        assertEquals(AMAZON_CA, first);
+        assertEquals(1, registry.size());
+        assertEquals(1, registry.hits());
+        assertEquals(1, registry.misses());
+    }
+
+    @Test
+    void pemAndDerShareOneEntry() throws Exception {
+
+        CertificateRegistry registry = new CertificateRegistry(16);
+
+        byte[] pem;
+        try (InputStream is = getClass().getResourceAsStream("/amazon.ca.pem")) {
+            pem = is.readAllBytes();
+        }
+
+        assertSame(registry.entry(pem), registry.entry(AMAZON_CA.getEncoded()));
+        assertSame(registry.entry(AMAZON_CA), registry.entry(pem));
+    }
+
+    @Test
+    void equalCertificatesAreFoundWithoutTheirEncoding() throws Exception {
+
+        CertificateRegistry registry = new CertificateRegistry(16);
+        CertificateRegistry.Entry entry = registry.entry(AMAZON_CA);
+
+        X509Certificate copy = new CertificateRegistry(16).certificate(AMAZON_CA.getEncoded());
+        assertEquals(AMAZON_CA, copy);
+
+        assertSame(entry, registry.entry(copy));
+        assertSame(entry.subjectKeyIdentifier(), registry.entry(AMAZON_CA).subjectKeyIdentifier());
+        assertEquals(2, registry.hits());
+        assertEquals(1, registry.misses());
+    }
+
+    @Test
+    void derivedDataMatchesCertificate() throws Exception {
+
+        CertificateRegistry.Entry entry = new CertificateRegistry(16).entry(AWS_AMAZON);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(AWS_AMAZON.getEncoded()));
+        assertEquals(expected, entry.fingerprint().toString());
+        assertArrayEquals(AWS_AMAZON.getEncoded(), entry.holder().getEncoded());
+        assertNotNull(entry.extensions().getExtension(Extension.authorityInfoAccess));
+        assertEquals(entry.issuer(), new CertificateRegistry(16).entry(AMAZON_CA).subject());
+        assertArrayEquals(new CertificateRegistry(16).entry(AMAZON_CA).subjectKeyIdentifier(), entry.authorityKeyIdentifier());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+
+        CertificateRegistry registry = new CertificateRegistry(2);
+
+        registry.entry(AWS_AMAZON);
+        registry.entry(AMAZON_CA);
+        registry.entry(AWS_AMAZON);
+        registry.entry(AMAZON_ROOT);
+
+        assertEquals(2, registry.size());
+
+        long misses = registry.misses();
+        registry.entry(AWS_AMAZON);
+        assertEquals(misses, registry.misses());
+
+        registry.entry(AMAZON_CA);
+        assertEquals(misses + 1, registry.misses());
+    }
+
+    @Test
+    void pemIsRecognizedByItsHeaderOnly() throws Exception {
+
+        CertificateRegistry registry = new CertificateRegistry(16);
+
+        byte[] pem;
+        try (InputStream is = getClass().getResourceAsStream("/amazon.ca.pem")) {
+            pem = is.readAllBytes();
+        }
+
+        // leading text starting with '0', the first byte of a DER SEQUENCE
+        byte[] annotated = ("0: Amazon\n" + new String(pem, StandardCharsets.US_ASCII)).getBytes(StandardCharsets.US_ASCII);
+        assertSame(registry.entry(AMAZON_CA), registry.entry(annotated));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> registry.entry("not a certificate".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("Unable to load DER-encoded certificate.", e.getMessage());
+    }
+
+    @Test
+    void staysBoundedUnderConcurrentUse() throws Exception {
+
+        CertificateRegistry registry = new CertificateRegistry(2);
+        List<X509Certificate> certificates = List.of(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, VALICERT_CLASS2);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        X509Certificate certificate = certificates.get((i + offset) % certificates.size());
+                        assertEquals(certificate, registry.entry(certificate).certificate());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+
+        registry.entry(AWS_AMAZON);
+        assertTrue(registry.size() <= 2, "size " + registry.size());
+    }
+}
@@ -0,0 +1,100 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.ChainGenerator;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link ChainAssembler} with the {@link ChainComparator} sort it replaced, on shuffled chains of 2 to 20
+ * certificates (leaf first, the rest in random order). Run with {@code main()}; not part of the test suite.
+ */
+public class ChainAssemblerBenchmark {
+
+    private static final int SHUFFLES = 32;
+    private static final int WARMUP_ROUNDS = 50_000;
+    private static final int MEASURED_ROUNDS = 50_000;
+
+    public static void main(String[] args) {
+
+        Random random = new Random(17);
+
+        System.out.printf("%6s %14s %14s %10s %10s%n", "certs", "sort ns/op", "assemble ns/op", "sort ok", "assemble ok");
+
+        for (int length = 2; length <= 20; length += (length < 6 ? 1 : 2)) {
+
+            List<X509Certificate> chain = ChainGenerator.chain("Bench" + length, length);
+            List<X509Certificate[]> inputs = shuffles(chain, random);
+
+            long sortNanos = measure(inputs, ChainAssemblerBenchmark::sort);
+            long assembleNanos = measure(inputs, ChainAssembler::assemble);
+
+            System.out.printf("%6d %14d %14d %10s %10s%n", length, sortNanos, assembleNanos,
+                    correct(inputs, chain, ChainAssemblerBenchmark::sort),
+                    correct(inputs, chain, ChainAssembler::assemble));
+        }
+    }
+
+    private interface Linker {
+        List<X509Certificate> link(X509Certificate... certificates);
+    }
+
+    private static List<X509Certificate> sort(X509Certificate... certificates) {
+        List<X509Certificate> list = new ArrayList<>(Arrays.asList(certificates));
+        try {
+            list.sort(new ChainComparator());
+        } catch (IllegalArgumentException e) {
+            // "Comparison method violates its general contract" - ChainComparator is not a total order.
+        }
+        return list;
+    }
+
+    private static List<X509Certificate[]> shuffles(List<X509Certificate> chain, Random random) {
+
+        List<X509Certificate[]> inputs = new ArrayList<>(SHUFFLES);
+        for (int i = 0; i < SHUFFLES; i++) {
+            List<X509Certificate> rest = new ArrayList<>(chain.subList(1, chain.size()));
+            Collections.shuffle(rest, random);
+            rest.add(0, chain.get(0));
+            inputs.add(rest.toArray(new X509Certificate[0]));
+        }
+
+        return inputs;
+    }
+
+    private static long measure(List<X509Certificate[]> inputs, Linker linker) {
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += linker.link(inputs.get(i % inputs.size())).size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += linker.link(inputs.get(i % inputs.size())).size();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (sink == 42) {
+            System.out.print("");
+        }
+
+        return elapsed / MEASURED_ROUNDS;
+    }
+
+    private static String correct(List<X509Certificate[]> inputs, List<X509Certificate> expected, Linker linker) {
+
+        int ok = 0;
+        for (X509Certificate[] input : inputs) {
+            if (expected.equals(linker.link(input))) {
+                ok++;
+            }
+        }
+
+        return ok + "/" + inputs.size();
+    }
+}
@@ -0,0 +1,125 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.ChainGenerator;
+import org.brylex.sancus.util.ChainGenerator.Issued;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChainAssemblerTest {
+
+    @Test
+    void ordersOutOfOrderChain() {
+
+        List<X509Certificate> path = ChainAssembler.assemble(STARFIELD_G2, AWS_AMAZON, AMAZON_ROOT, AMAZON_CA);
+
+        assertEquals(List.of(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2), path);
+    }
+
+    @Test
+    void dropsUnrelatedAndDuplicateCertificates() {
+
+        List<X509Certificate> path = ChainAssembler.assemble(AWS_AMAZON, DIGGERDETTE, AMAZON_CA, LETSENCRYPT, AMAZON_CA);
+
+        assertEquals(List.of(AWS_AMAZON, AMAZON_CA), path);
+    }
+
+    @Test
+    void fallsBackToDnWithoutKeyIdentifier() {
+
+        List<X509Certificate> path = ChainAssembler.assemble(STARFIELD_CLASS2, VALICERT_CLASS2);
+
+        assertEquals(List.of(STARFIELD_CLASS2, VALICERT_CLASS2), path);
+    }
+
+    @Test
+    void shuffledSyntheticChainIsAlwaysLinkedTheSameWay() {
+
+        List<X509Certificate> chain = ChainGenerator.chain("Shuffle", 8);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20; i++) {
+            List<X509Certificate> shuffled = new ArrayList<>(chain.subList(1, chain.size()));
+            Collections.shuffle(shuffled, random);
+            shuffled.add(0, chain.get(0));
+
+            assertEquals(chain, ChainAssembler.assemble(shuffled.toArray(new X509Certificate[0])));
+        }
+    }
+
+    @Test
+    void paddedChainEndsWithMissingIssuer() {
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON, DIGGERDETTE, AMAZON_CA);
+
+        assertEquals(List.of(AWS_AMAZON, AMAZON_CA), chain.toList());
+        assertEquals(AMAZON_ROOT.getSubjectX500Principal(), chain.last().dn());
+        assertEquals(ResolverSource.MISSING, chain.last().resolvedBy());
+    }
+
+    @Test
+    void prefersSelfSignedRootOverCrossSignWithoutAnchors() {
+
+        Issued oldRoot = ChainGenerator.root("Old Root");
+        Issued newRoot = ChainGenerator.root("New Root");
+        Issued cross = ChainGenerator.crossSign(newRoot, oldRoot, Duration.ofDays(365), "SHA256withECDSA");
+        Issued ca = ChainGenerator.intermediate("Issuing CA", newRoot);
+        Issued leaf = ChainGenerator.leaf("cross.example", ca);
+
+        List<CertificatePath> paths = ChainAssembler.paths(null, leaf.certificate(), ca.certificate(),
+                cross.certificate(), newRoot.certificate());
+
+        assertEquals(2, paths.size());
+        assertEquals(List.of(leaf.certificate(), ca.certificate(), newRoot.certificate()), paths.get(0).certificates());
+        assertEquals(List.of(leaf.certificate(), ca.certificate(), cross.certificate()), paths.get(1).certificates());
+        assertTrue(paths.get(0).anchored());
+        assertFalse(paths.get(1).anchored());
+    }
+
+    @Test
+    void prefersCrossSignIssuedByTrustAnchor() {
+
+        Issued oldRoot = ChainGenerator.root("Old Root");
+        Issued newRoot = ChainGenerator.root("New Root");
+        Issued cross = ChainGenerator.crossSign(newRoot, oldRoot, Duration.ofDays(365), "SHA256withECDSA");
+        Issued ca = ChainGenerator.intermediate("Issuing CA", newRoot);
+        Issued leaf = ChainGenerator.leaf("cross.example", ca);
+
+        TrustAnchorIndex anchors = TrustAnchorIndex.of(List.of(oldRoot.certificate()));
+
+        List<X509Certificate> path = ChainAssembler.assemble(anchors, leaf.certificate(), ca.certificate(),
+                newRoot.certificate(), cross.certificate());
+
+        assertEquals(List.of(leaf.certificate(), ca.certificate(), cross.certificate()), path);
+    }
+
+    @Test
+    void prefersStrongerSignatureThenLaterExpiry() {
+
+        Issued oldRoot = ChainGenerator.root("Old Root");
+        Issued newRoot = ChainGenerator.root("New Root");
+        Issued sha1 = ChainGenerator.crossSign(newRoot, oldRoot, Duration.ofDays(60), "SHA1withECDSA");
+        Issued shortLived = ChainGenerator.crossSign(newRoot, oldRoot, Duration.ofDays(30), "SHA256withECDSA");
+        Issued longLived = ChainGenerator.crossSign(newRoot, oldRoot, Duration.ofDays(60), "SHA256withECDSA");
+        Issued ca = ChainGenerator.intermediate("Issuing CA", newRoot);
+        Issued leaf = ChainGenerator.leaf("cross.example", ca);
+
+        TrustAnchorIndex anchors = TrustAnchorIndex.of(List.of(oldRoot.certificate()));
+
+        List<CertificatePath> paths = ChainAssembler.paths(anchors, leaf.certificate(), ca.certificate(),
+                sha1.certificate(), shortLived.certificate(), longLived.certificate());
+
+        assertEquals(3, paths.size());
+        assertEquals(longLived.certificate(), paths.get(0).last());
+        assertEquals(shortLived.certificate(), paths.get(1).last());
+        assertEquals(sha1.certificate(), paths.get(2).last());
+    }
+}
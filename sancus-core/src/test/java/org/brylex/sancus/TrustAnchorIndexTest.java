@@ -0,0 +1,42 @@
+package org.brylex.sancus;
+
+import org.brylex.sancus.util.KeyIdentifiers;
+import org.brylex.sancus.util.Util;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.List;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrustAnchorIndexTest {
+
+    @Test
+    void indexesKeyStoreAnchorsBySubject() {
+
+        TrustAnchorIndex index = TrustAnchorIndex.of(Util.loadKeyStore(Paths.get("src/test/resources/jks/aws.jks"), "changeit"));
+
+        assertTrue(index.size() > 0);
+        assertTrue(index.contains(VALICERT_CLASS2.getSubjectX500Principal()));
+        assertFalse(index.contains(LOCALHOST.getSubjectX500Principal()));
+        assertEquals(VALICERT_CLASS2, index.issuerOf(STARFIELD_CLASS2));
+    }
+
+    @Test
+    void prefersSubjectKeyIdentifierMatch() {
+
+        TrustAnchorIndex index = TrustAnchorIndex.of(List.of(STARFIELD_G2, AMAZON_ROOT));
+
+        assertEquals(AMAZON_ROOT, index.issuerOf(AMAZON_CA));
+        assertEquals(STARFIELD_G2, index.issuerOf(AMAZON_ROOT));
+        assertEquals(List.of(AMAZON_ROOT), index.byKeyIdentifier(KeyIdentifiers.subjectKeyIdentifier(AMAZON_ROOT)));
+        assertNull(index.issuerOf(DIGGERDETTE));
+    }
+
+    @Test
+    void nullKeyStoreIndexesDefaultTrustStore() {
+        assertTrue(TrustAnchorIndex.of((KeyStore) null).size() > 0);
+    }
+}
@@ -0,0 +1,160 @@
+package org.brylex.sancus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.KeyStore;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrustStoresTest {
+
+    private static final Path RESOURCES = Paths.get("src/test/resources/");
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void reset() {
+        System.clearProperty(TrustStores.SNAPSHOT_PROPERTY);
+        System.clearProperty("javax.net.ssl.trustStore");
+        System.clearProperty("javax.net.ssl.trustStorePassword");
+        TrustStores.clear();
+    }
+
+    @Test
+    void decodesOnceAndHandsOutCopies() throws Exception {
+
+        Path jks = Files.copy(RESOURCES.resolve("jks/aws.jks"), dir.resolve("aws.jks"));
+
+        TrustStores.Loaded loaded = TrustStores.load(jks, "changeit");
+        assertSame(loaded, TrustStores.load(jks, "changeit"));
+        assertEquals(2, loaded.anchors().size());
+
+        KeyStore copy = TrustStores.keyStore(jks, "changeit");
+        copy.setCertificateEntry("extra", AWS_AMAZON);
+        assertEquals(2, TrustStores.keyStore(jks, "changeit").size());
+
+        // a touched file with the same contents is the same store
+        Files.setLastModifiedTime(jks, FileTime.from(Instant.now().plusSeconds(5)));
+        assertSame(loaded, TrustStores.load(jks, "changeit"));
+
+        assertThrows(RuntimeException.class, () -> TrustStores.load(jks, "wrong"));
+    }
+
+    @Test
+    void changedContentsAreNoticedWhateverTheFileTimes() throws Exception {
+
+        Path jks = Files.copy(RESOURCES.resolve("jks/aws.jks"), dir.resolve("aws.jks"));
+        TrustStores.load(jks, "changeit");
+
+        // same size and modification time, but no longer a key store
+        FileTime modified = Files.getLastModifiedTime(jks);
+        byte[] garbage = new byte[(int) Files.size(jks)];
+        Arrays.fill(garbage, (byte) 7);
+        Files.write(jks, garbage);
+        Files.setLastModifiedTime(jks, modified);
+
+        assertThrows(RuntimeException.class, () -> TrustStores.load(jks, "changeit"));
+    }
+
+    @Test
+    void defaultAnchorsAreLoadedOncePerStore() throws Exception {
+
+        Path jks = Files.copy(RESOURCES.resolve("jks/aws.jks"), dir.resolve("aws.jks"));
+        System.setProperty("javax.net.ssl.trustStore", jks.toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", "changeit");
+
+        TrustAnchorIndex anchors = TrustStores.defaultAnchors();
+        assertEquals(2, anchors.size());
+
+        Files.delete(jks);
+        assertSame(anchors, TrustStores.defaultAnchors());
+    }
+
+    @Test
+    void storesWithKeysAreNotCached() throws Exception {
+
+        Path jks = RESOURCES.resolve("jks/selfsigned.jks");
+
+        assertNull(TrustStores.load(jks, "changeit"));
+        KeyStore keyStore = TrustStores.keyStore(jks, "changeit");
+        assertTrue(keyStore.isKeyEntry(keyStore.aliases().nextElement()));
+    }
+
+    @Test
+    void reloadsFromSnapshot() throws Exception {
+
+        Path snapshots = dir.resolve("snapshots");
+        System.setProperty(TrustStores.SNAPSHOT_PROPERTY, snapshots.toString());
+
+        Path jks = Files.copy(RESOURCES.resolve("full.jks"), dir.resolve("full.jks"));
+        TrustStores.Loaded original = TrustStores.load(jks, "changeit");
+
+        Path snapshot;
+        try (Stream<Path> files = Files.list(snapshots)) {
+            List<Path> written = files.filter(file -> file.toString().endsWith(".snapshot")).toList();
+            assertEquals(1, written.size());
+            snapshot = written.get(0);
+        }
+
+        // loaded from the snapshot, which is therefore not written again
+        FileTime written = FileTime.from(Instant.now().minusSeconds(60));
+        Files.setLastModifiedTime(snapshot, written);
+
+        TrustStores.clear();
+        TrustStores.Loaded restored = TrustStores.load(jks, "changeit");
+        assertEquals(original.entries(), restored.entries());
+        assertEquals(written, Files.getLastModifiedTime(snapshot));
+
+        // a snapshot of other contents is ignored
+        Files.copy(RESOURCES.resolve("jks/aws.jks"), jks, StandardCopyOption.REPLACE_EXISTING);
+        TrustStores.clear();
+        assertEquals(2, TrustStores.load(jks, "changeit").entries().size());
+
+        // the snapshot is keyed by the password, so a wrong one falls through to decoding the file
+        TrustStores.clear();
+        assertThrows(RuntimeException.class, () -> TrustStores.load(jks, "wrong"));
+    }
+
+    @Test
+    void snapshotsAreKeyedByAPerDirectorySecret() throws Exception {
+
+        Path snapshots = dir.resolve("snapshots");
+        System.setProperty(TrustStores.SNAPSHOT_PROPERTY, snapshots.toString());
+
+        Path jks = Files.copy(RESOURCES.resolve("jks/aws.jks"), dir.resolve("aws.jks"));
+        TrustStores.load(jks, "changeit");
+
+        Path secret = snapshots.resolve("snapshot.key");
+        assertEquals(32, Files.size(secret));
+        if (Files.getFileStore(secret).supportsFileAttributeView("posix")) {
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(secret));
+        }
+
+        // the password is checked against a MAC keyed by that secret; with another secret the snapshot is decoded again
+        Path snapshot;
+        try (Stream<Path> files = Files.list(snapshots)) {
+            snapshot = files.filter(file -> file.toString().endsWith(".snapshot")).findFirst().orElseThrow();
+        }
+        FileTime written = FileTime.from(Instant.now().minusSeconds(60));
+        Files.setLastModifiedTime(snapshot, written);
+
+        Files.delete(secret);
+        TrustStores.clear();
+        assertEquals(2, TrustStores.load(jks, "changeit").entries().size());
+        assertNotEquals(written, Files.getLastModifiedTime(snapshot));
+    }
+}
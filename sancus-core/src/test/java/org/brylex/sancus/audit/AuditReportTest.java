@@ -1,8 +1,10 @@
 package org.brylex.sancus.audit;
 
 import org.brylex.sancus.audit.Finding.*;
+import org.brylex.sancus.audit.PhaseTimings.Phase;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 
@@ -44,6 +46,24 @@ class AuditReportTest {
         assertEquals(Severity.OK, report.overallSeverity());
     }
 
+    @Test
+    void phaseTimingsAccumulatePerPhase() {
+        var timings = new PhaseTimings();
+        timings.record(Phase.CONNECT, Duration.ofMillis(20));
+        timings.record(Phase.AIA, Duration.ofMillis(100));
+        timings.record(Phase.AIA, Duration.ofMillis(50));
+        timings.record(Phase.HANDSHAKE, null);
+
+        assertEquals(Duration.ofMillis(150), timings.get(Phase.AIA));
+        assertEquals(2, timings.count(Phase.AIA));
+        assertNull(timings.get(Phase.HANDSHAKE));
+        assertEquals(List.of(Phase.CONNECT, Phase.AIA), List.copyOf(timings.toMap().keySet()));
+        assertEquals(Duration.ofMillis(170), timings.total());
+        assertEquals("connect 20 ms, aia 150 ms", timings.toString());
+
+        assertTrue(new AuditReport("h", 443, Instant.now(), List.of()).timings().isEmpty());
+    }
+
     @Test
     void exitCodeMapsCorrectly() {
         assertEquals(0, new AuditReport("h", 443, Instant.now(), List.of()).exitCode());
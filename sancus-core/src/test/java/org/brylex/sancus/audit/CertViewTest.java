@@ -0,0 +1,152 @@
+package org.brylex.sancus.audit;
+
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.brylex.sancus.audit.check.WeakAlgorithmCheck;
+import org.brylex.sancus.util.ChainGenerator;
+import org.brylex.sancus.util.PrincipalTable;
+import org.junit.jupiter.api.Test;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CertViewTest {
+
+    private static final List<X509Certificate> CERTIFICATES = List.of(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT,
+            STARFIELD_G2, STARFIELD_CLASS2, VALICERT_CLASS2, DIGGERDETTE, LETSENCRYPT, DST_ROOT, LOCALHOST,
+            CERT_GMAIL, CERT_GOOGLE_G2, ChainGenerator.chain("View", 2).get(0));
+
+    @Test
+    void fieldsMatchDecodedCertificate() throws Exception {
+
+        for (X509Certificate certificate : CERTIFICATES) {
+            // views of a certificate take some fields from it, views of bytes decode them all
+            assertFieldsMatch(certificate, CertView.of(certificate));
+            assertFieldsMatch(certificate, CertView.of(certificate.getEncoded()));
+        }
+    }
+
+    private static void assertFieldsMatch(X509Certificate certificate, CertView view) {
+        {
+            String name = certificate.getSubjectX500Principal().getName();
+
+            assertEquals(name, view.subjectName());
+            assertEquals(certificate.getIssuerX500Principal().getName(), view.issuerName(), name);
+            assertEquals(PrincipalTable.INSTANCE.subject(certificate), view.subject(), name);
+            assertEquals(PrincipalTable.INSTANCE.issuer(certificate), view.issuer(), name);
+            assertEquals(certificate.getNotBefore().toInstant(), view.notBefore(), name);
+            assertEquals(certificate.getNotAfter().toInstant(), view.notAfter(), name);
+            assertEquals(certificate.getSigAlgName(), view.signatureAlgorithm(), name);
+            assertEquals(certificate.getPublicKey().getAlgorithm(), view.keyAlgorithm(), name);
+
+            if (certificate.getPublicKey() instanceof RSAPublicKey rsa) {
+                assertEquals(rsa.getModulus().bitLength(), view.keySize(), name);
+            } else if (certificate.getPublicKey() instanceof ECPublicKey ec) {
+                assertEquals(ec.getParams().getOrder().bitLength(), view.keySize(), name);
+            }
+        }
+    }
+
+    @Test
+    void rsassaPssKeysAreSizedLikeRsaKeys() throws Exception {
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSASSA-PSS");
+        generator.initialize(1024);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        X500Principal name = new X500Principal("CN=PSS");
+        Date now = new Date();
+        X509Certificate pss = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(name, BigInteger.ONE, now, new Date(now.getTime() + 86_400_000L), name,
+                        keyPair.getPublic()).build(new JcaContentSignerBuilder("SHA256withRSAandMGF1")
+                                .setProvider(new BouncyCastleProvider()).build(keyPair.getPrivate())));
+
+        for (CertView view : List.of(CertView.of(pss), CertView.of(pss.getEncoded()))) {
+            assertEquals("RSASSA-PSS", view.keyAlgorithm());
+            assertEquals(1024, view.keySize());
+        }
+
+        assertTrue(new WeakAlgorithmCheck().check(null, new X509Certificate[]{pss}).stream()
+                .anyMatch(finding -> finding.severity() == Severity.CRITICAL));
+    }
+
+    @Test
+    void readsAuthorityInformationAccess() {
+
+        CertView view = CertView.of(AWS_AMAZON);
+
+        assertEquals(List.of("http://crt.sca1b.amazontrust.com/sca1b.crt"), view.caIssuersUrls());
+        assertEquals(List.of("http://ocsp.sca1b.amazontrust.com"), view.ocspUrls());
+        assertEquals(List.of(), CertView.of(VALICERT_CLASS2).caIssuersUrls());
+    }
+
+    @Test
+    void decodesCertificateFromBytesOnDemand() throws Exception {
+
+        CertView view = CertView.of(AMAZON_CA.getEncoded());
+
+        assertEquals("CN=Amazon,OU=Server CA 1B,O=Amazon,C=US", view.subjectName());
+        assertEquals(AMAZON_CA, view.certificate());
+    }
+
+    @Test
+    void rejectsNonCertificate() {
+        assertThrows(IllegalArgumentException.class, () -> CertView.of(new byte[]{0x04, 0x01, 0x00}).notAfter());
+    }
+
+    @Test
+    void reportsAnyMalformedEncodingAsIllegalArgument() throws Exception {
+
+        byte[] der = AWS_AMAZON.getEncoded();
+
+        List<byte[]> malformed = new ArrayList<>();
+        malformed.add(new byte[0]);
+        malformed.add(new byte[]{0x30});
+        malformed.add(new byte[]{0x30, (byte) 0x84, 0x00, 0x00, 0x00, 0x01});
+        for (int length : new int[]{4, 16, 64, der.length / 2, der.length - 1}) {
+            malformed.add(Arrays.copyOf(der, length));
+        }
+        // TBSCertificate claiming to run past the end of the certificate
+        byte[] overlong = der.clone();
+        overlong[6] = (byte) 0x7f;
+        malformed.add(overlong);
+
+        for (byte[] encoding : malformed) {
+            CertView view = CertView.of(encoding);
+            String description = encoding.length + " byte(s)";
+            for (Runnable field : List.<Runnable>of(view::subjectName, view::issuerName, view::notBefore, view::notAfter,
+                    view::signatureAlgorithm, view::keyAlgorithm, view::keySize, view::caIssuersUrls, view::ocspUrls, view::sctCount)) {
+                try {
+                    field.run();
+                } catch (IllegalArgumentException expected) {
+                    // reported as a parse error
+                } catch (RuntimeException e) {
+                    fail(description + ": " + e, e);
+                }
+            }
+        }
+    }
+
+    @Test
+    void certificateViewsReuseTheCertificatePrincipals() {
+
+        CertView view = CertView.of(AWS_AMAZON);
+
+        assertSame(AWS_AMAZON.getSubjectX500Principal().getName(), view.subjectName());
+        assertSame(PrincipalTable.INSTANCE.subject(AWS_AMAZON), view.subject());
+    }
+}
@@ -8,6 +8,7 @@ import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.brylex.sancus.audit.Finding;
 import org.brylex.sancus.audit.HandshakeInfo;
+import org.brylex.sancus.audit.PhaseTimings;
 import org.brylex.sancus.audit.Severity;
 import org.brylex.sancus.util.Certificates;
 import org.junit.jupiter.api.BeforeAll;
@@ -208,6 +209,29 @@ public class AuditCheckTest {
             assertTrue(cf.summary().contains("resolved via AIA"));
         }
 
+        @Test
+        void countsOnlyTheCertificatesResolvedForAPaddedChain() throws Exception {
+            X509Certificate leaf = Certificates.LOCALHOST;
+            X509Certificate unrelated = Certificates.AWS_AMAZON;
+            X509Certificate fakeRoot = generateCert(365, 2048, "SHA256WithRSA");
+            HandshakeInfo info = new HandshakeInfo("TLSv1.3", "TLS_AES_256_GCM_SHA384",
+                    new X509Certificate[]{leaf, unrelated}, new X509Certificate[]{leaf, fakeRoot});
+            List<Finding> findings = check.check(info, new X509Certificate[]{leaf, unrelated});
+            Finding.ChainFinding cf = (Finding.ChainFinding) findings.getFirst();
+            assertEquals(Severity.WARNING, cf.severity());
+            assertEquals(List.of("1 certificate(s) resolved via AIA"), cf.missingIssuers());
+        }
+
+        @Test
+        void doesNotResolveAgainWhenThePrefetchResolvedNothing() {
+            X509Certificate leaf = Certificates.AWS_AMAZON;
+            HandshakeInfo info = new HandshakeInfo("TLSv1.3", "TLS_AES_256_GCM_SHA384",
+                    new X509Certificate[]{leaf}, new X509Certificate[]{leaf});
+            List<Finding> findings = check.check(info, new X509Certificate[]{leaf});
+            assertEquals(Severity.CRITICAL, findings.getFirst().severity());
+            assertEquals(0, info.timings().count(PhaseTimings.Phase.AIA));
+        }
+
         @Test
         void criticalWhenResolvedChainIsIncomplete() {
             X509Certificate leaf = Certificates.LOCALHOST;
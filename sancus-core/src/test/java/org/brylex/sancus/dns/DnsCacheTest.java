@@ -0,0 +1,140 @@
+package org.brylex.sancus.dns;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DnsCacheTest {
+
+    private static final InetAddress ADDRESS = address("192.0.2.10");
+
+    @Test
+    void answersAreKeptForTheirTtl() throws Exception {
+
+        MutableClock clock = new MutableClock();
+        CountingResolver resolver = new CountingResolver();
+        DnsCache.Config config = new DnsCache.Config(Duration.ofSeconds(30), Duration.ofSeconds(5), 16);
+        DnsCache cache = new DnsCache(resolver, config, clock);
+
+        assertEquals(List.of(ADDRESS), cache.lookup("known.sancus.test"));
+        assertEquals(List.of(ADDRESS), cache.lookup("KNOWN.sancus.test"));
+        assertThrows(UnknownHostException.class, () -> cache.lookup("missing.sancus.test"));
+        assertThrows(UnknownHostException.class, () -> cache.lookup("missing.sancus.test"));
+        assertEquals(2, resolver.queries.get());
+
+        clock.advance(Duration.ofSeconds(10));
+        cache.lookup("known.sancus.test");
+        assertThrows(UnknownHostException.class, () -> cache.lookup("missing.sancus.test"));
+        assertEquals(3, resolver.queries.get(), "only the negative entry expired");
+
+        clock.advance(Duration.ofSeconds(30));
+        cache.lookup("known.sancus.test");
+        assertEquals(4, resolver.queries.get());
+
+        assertEquals(new DnsCache.Stats(3, 1, 4), cache.stats());
+    }
+
+    @Test
+    void concurrentLookupsShareOneQuery() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountingResolver resolver = new CountingResolver() {
+            @Override
+            public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy) throws UnknownHostException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.lookupByName(host, lookupPolicy);
+            }
+        };
+        DnsCache cache = new DnsCache(resolver, DnsCache.Config.DEFAULT);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            List<Future<List<InetAddress>>> lookups = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                lookups.add(executor.submit(() -> cache.lookup("known.sancus.test")));
+            }
+
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<List<InetAddress>> lookup : lookups) {
+                assertEquals(List.of(ADDRESS), lookup.get());
+            }
+        }
+
+        assertEquals(1, resolver.queries.get());
+        assertEquals(31, cache.stats().hits());
+    }
+
+    private static class CountingResolver implements InetAddressResolver {
+
+        private final AtomicInteger queries = new AtomicInteger();
+
+        @Override
+        public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy) throws UnknownHostException {
+            queries.incrementAndGet();
+            if (host.startsWith("known.")) {
+                return Stream.of(ADDRESS);
+            }
+            throw new UnknownHostException(host);
+        }
+
+        @Override
+        public String lookupByAddress(byte[] addr) throws UnknownHostException {
+            throw new UnknownHostException();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static InetAddress address(String literal) {
+        try {
+            return InetAddress.getByName(literal);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.brylex.sancus.dns;
+
+import org.brylex.sancus.dns.ResolutionStage.Resolution;
+import org.brylex.sancus.handshake.HandshakeTarget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.net.spi.InetAddressResolver.LookupPolicy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResolutionStageTest {
+
+    @Test
+    void hostsFileStandsInForDnsThroughTheResolverProvider(@TempDir Path dir) throws Exception {
+
+        Path hosts = dir.resolve("hosts");
+        Files.writeString(hosts, """
+                # stand-in for DNS
+                127.0.0.1   dual.sancus.test  v4.sancus.test
+                ::1         dual.sancus.test  # IPv6 loopback
+                """);
+
+        DnsCache cache = new DnsCache(ResolutionStage.system(),
+                new DnsCache.Config(Duration.ofSeconds(30), Duration.ofSeconds(30), 64));
+        ResolutionStage stage = new ResolutionStage(cache, Executors.newVirtualThreadPerTaskExecutor());
+
+        System.setProperty(HostsFileResolverProvider.PROPERTY, hosts.toString());
+        try {
+            List<Resolution> resolutions = stage.resolveAll(List.of(
+                    new HandshakeTarget("dual.sancus.test", 443),
+                    new HandshakeTarget("V4.sancus.test", 8443),
+                    new HandshakeTarget("dual.sancus.test", 8443),
+                    new HandshakeTarget("missing.sancus.test", 443),
+                    new HandshakeTarget("192.0.2.1", 443))).join();
+
+            assertEquals(List.of(InetAddress.getByName("127.0.0.1"), InetAddress.getByName("::1")),
+                    resolutions.get(0).addresses());
+            assertEquals(List.of(InetAddress.getByName("127.0.0.1")), resolutions.get(1).addresses());
+            assertEquals(8443, resolutions.get(1).target().port());
+            assertEquals(resolutions.get(0).addresses(), resolutions.get(2).addresses());
+
+            Resolution missing = resolutions.get(3);
+            assertFalse(missing.resolved());
+            assertTrue(missing.addresses().isEmpty());
+            assertNotNull(missing.error());
+
+            assertTrue(resolutions.get(4).resolved());
+            assertEquals(List.of(InetAddress.getByName("192.0.2.1")), resolutions.get(4).addresses());
+
+            // one query per name, dual.sancus.test shared by two targets; the literal needs no lookup
+            assertEquals(3, stage.cache().stats().queries());
+            assertEquals(1, stage.cache().stats().hits());
+        } finally {
+            System.clearProperty(HostsFileResolverProvider.PROPERTY);
+        }
+    }
+
+    @Test
+    void hostsFileHonoursLookupPolicy() throws Exception {
+
+        HostsFile hosts = HostsFile.parse(List.of(
+                "::1 dual.sancus.test",
+                "127.0.0.1 dual.sancus.test",
+                "not-an-address ignored.sancus.test"), null);
+
+        InetAddress v4 = InetAddress.getByName("127.0.0.1");
+        InetAddress v6 = InetAddress.getByName("::1");
+
+        assertEquals(List.of(v6, v4), hosts.lookupByName("dual.sancus.test",
+                LookupPolicy.of(LookupPolicy.IPV4 | LookupPolicy.IPV6)).toList());
+        assertEquals(List.of(v4, v6), hosts.lookupByName("dual.sancus.test",
+                LookupPolicy.of(LookupPolicy.IPV4 | LookupPolicy.IPV6 | LookupPolicy.IPV4_FIRST)).toList());
+        assertEquals(List.of(v4), hosts.lookupByName("dual.sancus.test", LookupPolicy.of(LookupPolicy.IPV4)).toList());
+        assertEquals("dual.sancus.test", hosts.lookupByAddress(v4.getAddress()));
+        assertEquals(Set.of("dual.sancus.test"), hosts.names());
+    }
+
+    @Test
+    void malformedHostsFileEntriesAreSkipped() throws Exception {
+
+        HostsFile hosts = HostsFile.parse(List.of(
+                "999.0.0.1 octet.sancus.test",
+                "1.2.3.4.5 dotted.sancus.test",
+                "::1::2 colons.sancus.test",
+                "fe80::zz hex.sancus.test",
+                "localhost name.sancus.test",
+                "sancus.invalid lookup.sancus.test",
+                "127.0.0.1",
+                "   ",
+                "10.0.0.1 good.sancus.test # trailing comment"), null);
+
+        assertEquals(Set.of("good.sancus.test"), hosts.names());
+        assertEquals(List.of(InetAddress.getByName("10.0.0.1")), hosts.lookupByName("good.sancus.test",
+                LookupPolicy.of(LookupPolicy.IPV4)).toList());
+
+        assertNull(HostsFile.literal("sancus.invalid"));
+        assertNull(HostsFile.literal("[::1]"));
+        assertEquals(InetAddress.getByName("::1"), HostsFile.literal("::1"));
+    }
+
+    @Test
+    void sharedStageResolvesThroughTheJvm(@TempDir Path dir) throws Exception {
+
+        // the provider is registered for the tests only
+        Path hosts = dir.resolve("hosts");
+        Files.writeString(hosts, "127.0.0.1 shared.sancus.test\n");
+
+        System.setProperty(HostsFileResolverProvider.PROPERTY, hosts.toString());
+        try {
+            Resolution resolution = ResolutionStage.shared().resolve(new HandshakeTarget("shared.sancus.test", 443));
+            assertEquals(List.of(InetAddress.getByName("127.0.0.1")), resolution.addresses());
+        } finally {
+            System.clearProperty(HostsFileResolverProvider.PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.handshake.HandshakeResult.Status;
+import org.brylex.sancus.util.TestServer;
+import org.brylex.sancus.util.TlsStandInServer;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HandshakeClientTest {
+
+    @Test
+    void sharedContextCapturesChainOnEveryHandshake() throws Exception {
+
+        try (TestServer server = new TestServer("src/test/resources/jks/full-openssl.jks")) {
+
+            HandshakeClient client = new HandshakeClient(HandshakeClient.Config.DEFAULT);
+
+            for (int i = 0; i < 3; i++) {
+                HandshakeResult result = client.handshake("127.0.0.1", 8443);
+
+                assertEquals(Status.SUCCESS, result.status());
+                assertEquals(3, result.chain().length);
+                assertNotNull(result.protocol());
+                assertNotNull(result.cipherSuite());
+                assertEquals(HappyEyeballsConnector.Family.IPV4, result.family());
+                assertFalse(result.lookupTime().isNegative());
+                assertFalse(result.connectTime().isNegative());
+                assertFalse(result.handshakeTime().isNegative());
+                assertNull(result.error());
+            }
+        }
+    }
+
+    @Test
+    void certificateOnlyStopsAfterTheChain() throws Exception {
+
+        try (TestServer server = new TestServer("src/test/resources/jks/full-openssl.jks")) {
+
+            HandshakeResult full = HandshakeClient.shared().handshake("127.0.0.1", 8443, CaptureMode.FULL);
+            HandshakeResult result = HandshakeClient.shared().handshake("127.0.0.1", 8443, CaptureMode.CERTIFICATE_ONLY);
+
+            assertEquals(Status.SUCCESS, result.status());
+            assertEquals(3, result.chain().length);
+            assertEquals(full.protocol(), result.protocol());
+            assertEquals(full.cipherSuite(), result.cipherSuite());
+            assertNotNull(result.handshakeTime());
+            assertNull(result.error());
+        }
+    }
+
+    @Test
+    void certificateOnlySavesARoundTripWithTls12Only() throws Exception {
+
+        Duration delay = Duration.ofMillis(400);
+
+        try (TlsStandInServer tls12 = new TlsStandInServer("src/test/resources/jks/full-openssl.jks", 1, "TLSv1.2");
+             TlsStandInServer tls13 = new TlsStandInServer("src/test/resources/jks/full-openssl.jks", 1, "TLSv1.3");
+             DelayedServerFlights via12 = new DelayedServerFlights(tls12.ports().get(0), delay);
+             DelayedServerFlights via13 = new DelayedServerFlights(tls13.ports().get(0), delay)) {
+
+            // warms up the client, so that only the delayed flights count
+            HandshakeClient.shared().handshake("127.0.0.1", tls12.ports().get(0));
+            HandshakeClient.shared().handshake("127.0.0.1", tls13.ports().get(0));
+
+            HandshakeResult full12 = HandshakeClient.shared().handshake("127.0.0.1", via12.port(), CaptureMode.FULL);
+            HandshakeResult only12 = HandshakeClient.shared().handshake("127.0.0.1", via12.port(), CaptureMode.CERTIFICATE_ONLY);
+            HandshakeResult full13 = HandshakeClient.shared().handshake("127.0.0.1", via13.port(), CaptureMode.FULL);
+            HandshakeResult only13 = HandshakeClient.shared().handshake("127.0.0.1", via13.port(), CaptureMode.CERTIFICATE_ONLY);
+
+            assertEquals("TLSv1.2", only12.protocol());
+            assertEquals("TLSv1.3", only13.protocol());
+
+            // the client waits for the server's Finished with TLS 1.2 only
+            assertEquals(2, flights(full12, delay));
+            assertEquals(1, flights(only12, delay));
+            assertEquals(1, flights(full13, delay));
+            assertEquals(1, flights(only13, delay));
+        }
+    }
+
+    private static long flights(HandshakeResult result, Duration delay) {
+        assertEquals(Status.SUCCESS, result.status(), () -> String.valueOf(result.error()));
+        return result.handshakeTime().toMillis() / delay.toMillis();
+    }
+
+    /**
+     * Forwards connections to a local port, holding back each flight of the server by a fixed delay; a handshake then
+     * takes about as many delays as the server flights the client waited for.
+     */
+    private static final class DelayedServerFlights implements AutoCloseable {
+
+        private final ServerSocket listener;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        private DelayedServerFlights(int target, Duration delay) throws IOException {
+            this.listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            executor.execute(() -> {
+                while (!listener.isClosed()) {
+                    try {
+                        Socket client = listener.accept();
+                        Socket server = new Socket(InetAddress.getLoopbackAddress(), target);
+                        AtomicBoolean clientSpoke = new AtomicBoolean();
+                        executor.execute(() -> pump(client, server, clientSpoke, null));
+                        executor.execute(() -> pump(server, client, clientSpoke, delay));
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            });
+        }
+
+        private int port() {
+            return listener.getLocalPort();
+        }
+
+        private static void pump(Socket from, Socket to, AtomicBoolean clientSpoke, Duration delay) {
+            byte[] buffer = new byte[16384];
+            try (from; to) {
+                int read;
+                while ((read = from.getInputStream().read(buffer)) >= 0) {
+                    if (delay == null) {
+                        clientSpoke.set(true);
+                    } else if (clientSpoke.getAndSet(false)) {
+                        Thread.sleep(delay);
+                    }
+                    to.getOutputStream().write(buffer, 0, read);
+                }
+            } catch (IOException | InterruptedException e) {
+                // either side hung up
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            listener.close();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectedChainIsUntrusted() throws Exception {
+
+        X509TrustManager rejectAll = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+                throw new CertificateException("Not trusted.");
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+
+        try (TestServer server = new TestServer("src/test/resources/jks/partial-openssl.jks")) {
+
+            HandshakeResult result = HandshakeClient.shared().handshake("127.0.0.1", 8443, rejectAll);
+
+            assertEquals(Status.UNTRUSTED, result.status());
+            assertEquals(2, result.chain().length);
+            assertNotNull(result.connectTime());
+        }
+    }
+
+    @Test
+    void connectionFailuresAreReported() throws Exception {
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        HandshakeResult refused = HandshakeClient.shared().handshake("127.0.0.1", port);
+        assertEquals(Status.CONNECT_FAILED, refused.status());
+        assertNull(refused.connectTime());
+        assertEquals(0, refused.chain().length);
+
+        assertEquals(Status.UNKNOWN_HOST, HandshakeClient.shared().handshake("sancus.invalid", 443).status());
+    }
+}
@@ -0,0 +1,144 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.handshake.HappyEyeballsConnector.Connection;
+import org.brylex.sancus.handshake.HappyEyeballsConnector.Family;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HappyEyeballsConnectorTest {
+
+    private static final InetAddress V4 = InetAddress.getLoopbackAddress();
+
+    @Test
+    void interleavesFamiliesStartingWithTheFirst() throws Exception {
+
+        InetAddress a6 = InetAddress.getByName("2001:db8::1");
+        InetAddress b6 = InetAddress.getByName("2001:db8::2");
+        InetAddress c6 = InetAddress.getByName("2001:db8::3");
+        InetAddress a4 = InetAddress.getByName("192.0.2.1");
+        InetAddress b4 = InetAddress.getByName("192.0.2.2");
+
+        assertEquals(List.of(a6, a4, b6, b4, c6), HappyEyeballsConnector.order(List.of(a6, b6, c6, a4, b4)));
+        assertEquals(List.of(a4, a6, b4, b6, c6), HappyEyeballsConnector.order(List.of(a4, b4, a6, b6, c6)));
+    }
+
+    @Test
+    void firstAddressWinsWhenItConnects() throws Exception {
+
+        InetAddress v6 = ipv6Loopback();
+
+        try (ServerSocket server6 = new ServerSocket(0, 50, v6);
+             ServerSocket server4 = new ServerSocket(server6.getLocalPort(), 50, V4)) {
+
+            Connection connection = new HappyEyeballsConnector(Duration.ofMillis(100))
+                    .connect(List.of(v6, V4), server6.getLocalPort(), Duration.ofSeconds(5));
+
+            try (Socket socket = connection.socket()) {
+                assertTrue(socket.isConnected());
+                assertEquals(Family.IPV6, connection.family());
+                assertEquals(1, connection.attempts());
+            }
+        }
+    }
+
+    @Test
+    void stalledIpv6FallsBackToIpv4AfterTheAttemptDelay() throws Exception {
+
+        InetAddress v6 = ipv6Loopback();
+
+        try (ServerSocket stalled = new ServerSocket(0, 1, v6);
+             ServerSocket server4 = new ServerSocket(stalled.getLocalPort(), 50, V4)) {
+
+            List<Socket> queued = saturate(stalled);
+            try {
+                long start = System.nanoTime();
+                Connection connection = new HappyEyeballsConnector(Duration.ofMillis(100))
+                        .connect(List.of(v6, V4), stalled.getLocalPort(), Duration.ofSeconds(5));
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+                try (Socket socket = connection.socket()) {
+                    assertEquals(Family.IPV4, connection.family());
+                    assertEquals(new InetSocketAddress(V4, server4.getLocalPort()), connection.address());
+                    assertEquals(2, connection.attempts());
+                    assertTrue(elapsed.compareTo(Duration.ofMillis(90)) >= 0, elapsed::toString);
+                    assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, elapsed::toString);
+                }
+            } finally {
+                for (Socket socket : queued) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    void refusedAndStalledAttemptsFail() throws Exception {
+
+        int closed;
+        try (ServerSocket socket = new ServerSocket(0, 50, V4)) {
+            closed = socket.getLocalPort();
+        }
+
+        HappyEyeballsConnector connector = new HappyEyeballsConnector(Duration.ofMillis(50));
+        assertThrows(ConnectException.class, () -> connector.connect(List.of(V4, V4), closed, Duration.ofSeconds(5)));
+
+        try (ServerSocket stalled = new ServerSocket(0, 1, V4)) {
+            List<Socket> queued = saturate(stalled);
+            try {
+                assertThrows(SocketTimeoutException.class,
+                        () -> connector.connect(List.of(V4), stalled.getLocalPort(), Duration.ofMillis(300)));
+            } finally {
+                for (Socket socket : queued) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    private static InetAddress ipv6Loopback() throws IOException {
+        InetAddress v6 = InetAddress.getByName("::1");
+        try (ServerSocket probe = new ServerSocket(0, 1, v6)) {
+            return v6;
+        } catch (IOException e) {
+            assumeTrue(false, "IPv6 loopback is not available.");
+            return null;
+        }
+    }
+
+    /**
+     * Fills the accept queue of a server that never accepts, so that further connects hang like a black-holed route.
+     */
+    private static List<Socket> saturate(ServerSocket server) throws IOException {
+
+        List<Socket> queued = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(server.getLocalSocketAddress(), 200);
+                queued.add(socket);
+            } catch (SocketTimeoutException e) {
+                socket.close();
+                return queued;
+            }
+        }
+
+        for (Socket socket : queued) {
+            socket.close();
+        }
+        assumeTrue(false, "Unable to saturate the accept queue.");
+        return queued;
+    }
+}
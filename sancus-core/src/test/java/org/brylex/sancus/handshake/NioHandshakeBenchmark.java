@@ -0,0 +1,88 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.util.TlsStandInServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares {@link NioHandshakeEngine} with a socket per thread ({@link HandshakeClient} on a fixed pool) for bulk
+ * handshakes against a local {@link TlsStandInServer} on 16 ports. Run with {@code main()}; not part of the test
+ * suite.
+ */
+public class NioHandshakeBenchmark {
+
+    private static final int PORTS = 16;
+    private static final int HANDSHAKES = 2_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+
+        try (TlsStandInServer server = new TlsStandInServer(PORTS)) {
+
+            List<HandshakeTarget> targets = new ArrayList<>(HANDSHAKES);
+            for (int i = 0; i < HANDSHAKES; i++) {
+                targets.add(new HandshakeTarget("127.0.0.1", server.ports().get(i % PORTS)));
+            }
+
+            HandshakeClient client = new HandshakeClient(HandshakeClient.Config.DEFAULT);
+
+            System.out.printf("%-28s %10s %12s %10s%n", "mode", "threads", "handshakes/s", "failed");
+
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int threads : new int[]{16, 64, 256}) {
+                    report("socket per thread", threads, sockets(client, targets, threads));
+                }
+                for (int threads : new int[]{1, 2, 4}) {
+                    NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(threads, 1024,
+                            Duration.ofSeconds(5), Duration.ofSeconds(10));
+                    try (NioHandshakeEngine engine = new NioHandshakeEngine(client, config)) {
+                        report("nio engine", threads, nio(engine, targets));
+                    }
+                }
+                System.out.println();
+            }
+        }
+    }
+
+    private record Run(long nanos, List<HandshakeResult> results) {
+    }
+
+    private static Run sockets(HandshakeClient client, List<HandshakeTarget> targets, int threads) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+
+            List<Future<HandshakeResult>> futures = new ArrayList<>(targets.size());
+            for (HandshakeTarget target : targets) {
+                futures.add(executor.submit(() -> client.handshake(target.host(), target.port())));
+            }
+
+            List<HandshakeResult> results = new ArrayList<>(targets.size());
+            for (Future<HandshakeResult> future : futures) {
+                results.add(future.get());
+            }
+
+            return new Run(System.nanoTime() - start, results);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Run nio(NioHandshakeEngine engine, List<HandshakeTarget> targets) {
+        long start = System.nanoTime();
+        List<HandshakeResult> results = engine.handshakeAll(targets).join();
+        return new Run(System.nanoTime() - start, results);
+    }
+
+    private static void report(String mode, int threads, Run run) {
+        long failed = run.results().stream().filter(result -> !result.successful()).count();
+        double perSecond = run.results().size() / (run.nanos() / 1e9);
+        System.out.printf("%-28s %10d %12.0f %10d%n", mode, threads, perSecond, failed);
+    }
+}
@@ -0,0 +1,181 @@
+package org.brylex.sancus.handshake;
+
+import org.brylex.sancus.handshake.HandshakeResult.Status;
+import org.brylex.sancus.util.TlsStandInServer;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.X509TrustManager;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioHandshakeEngineTest {
+
+    @Test
+    void capturesChainsOfManyConcurrentHandshakes() {
+
+        HandshakeClient client = new HandshakeClient(HandshakeClient.Config.DEFAULT);
+        NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(2, 16, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        try (TlsStandInServer server = new TlsStandInServer(4);
+             NioHandshakeEngine engine = new NioHandshakeEngine(client, config)) {
+
+            List<HandshakeTarget> targets = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                targets.add(new HandshakeTarget("127.0.0.1", server.ports().get(i % 4)));
+            }
+
+            List<HandshakeResult> results = engine.handshakeAll(targets).join();
+
+            assertEquals(200, results.size());
+            for (HandshakeResult result : results) {
+                assertEquals(Status.SUCCESS, result.status(), () -> String.valueOf(result.error()));
+                assertEquals(3, result.chain().length);
+                assertNotNull(result.protocol());
+                assertNotNull(result.connectTime());
+                assertNotNull(result.handshakeTime());
+            }
+            assertEquals(0, engine.inFlight());
+        }
+    }
+
+    @Test
+    void certificateOnlyCapturesChainsWithoutCompletingHandshakes() {
+
+        NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(1, 8, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        try (TlsStandInServer server = new TlsStandInServer(2);
+             NioHandshakeEngine engine = new NioHandshakeEngine(HandshakeClient.shared(), config)) {
+
+            List<HandshakeTarget> targets = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                targets.add(new HandshakeTarget("127.0.0.1", server.ports().get(i % 2)));
+            }
+
+            for (HandshakeResult result : engine.handshakeAll(targets, CaptureMode.CERTIFICATE_ONLY).join()) {
+                assertEquals(Status.SUCCESS, result.status(), () -> String.valueOf(result.error()));
+                assertEquals(3, result.chain().length);
+                assertNotNull(result.protocol());
+                assertNotNull(result.cipherSuite());
+            }
+        }
+    }
+
+    @Test
+    void certificateChecksRunOffTheSelectorThreads() {
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        X509TrustManager verifier = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                threads.add(Thread.currentThread().isVirtual() ? "virtual" : Thread.currentThread().getName());
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+
+        NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(1, 8, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        try (TlsStandInServer server = new TlsStandInServer(1);
+             NioHandshakeEngine engine = new NioHandshakeEngine(HandshakeClient.shared(), config)) {
+
+            List<CompletableFuture<HandshakeResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(engine.handshake("localhost", server.ports().get(0), verifier));
+            }
+            for (CompletableFuture<HandshakeResult> future : futures) {
+                HandshakeResult result = future.join();
+                assertEquals(Status.SUCCESS, result.status(), () -> String.valueOf(result.error()));
+                assertNotNull(result.lookupTime());
+            }
+        }
+
+        assertEquals(Set.of("virtual"), threads);
+    }
+
+    @Test
+    void fallsBackToTheNextAddressWhenAConnectFails() throws Exception {
+
+        NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(1, 8, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        try (TlsStandInServer server = new TlsStandInServer(1);
+             NioHandshakeEngine engine = new NioHandshakeEngine(HandshakeClient.shared(), config)) {
+
+            // the server only listens on 127.0.0.1, so 127.0.0.2 refuses the connection
+            InetAddress refusing = InetAddress.getByName("127.0.0.2");
+            InetAddress listening = InetAddress.getByName("127.0.0.1");
+
+            HandshakeResult result = engine.handshake("localhost", server.ports().get(0),
+                    List.of(refusing, listening), null, CaptureMode.FULL).join();
+
+            assertEquals(Status.SUCCESS, result.status(), () -> String.valueOf(result.error()));
+            assertEquals(listening, result.address().getAddress());
+            assertEquals(3, result.chain().length);
+        }
+    }
+
+    @Test
+    void failuresAreReportedPerTarget() throws Exception {
+
+        NioHandshakeEngine.Config config = new NioHandshakeEngine.Config(1, 8, Duration.ofSeconds(5), Duration.ofMillis(300));
+
+        int refused;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            refused = socket.getLocalPort();
+        }
+
+        // accepts connections but never answers the ClientHello
+        try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             NioHandshakeEngine engine = new NioHandshakeEngine(HandshakeClient.shared(), config)) {
+
+            List<Socket> accepted = new ArrayList<>();
+            Thread acceptor = Thread.ofVirtual().start(() -> {
+                try {
+                    accepted.add(silent.accept());
+                } catch (Exception e) {
+                    // closed
+                }
+            });
+
+            List<HandshakeResult> results = engine.handshakeAll(List.of(
+                    new HandshakeTarget("127.0.0.1", refused),
+                    new HandshakeTarget("127.0.0.1", silent.getLocalPort()),
+                    new HandshakeTarget("sancus.invalid", 443))).join();
+
+            assertEquals(Status.CONNECT_FAILED, results.get(0).status());
+            assertEquals(Status.TIMEOUT, results.get(1).status());
+            assertNotNull(results.get(1).connectTime());
+            assertEquals(Status.UNKNOWN_HOST, results.get(2).status());
+
+            acceptor.join();
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void parsesTargets() {
+        assertEquals(new HandshakeTarget("example.com", 443), HandshakeTarget.parse("example.com", 443));
+        assertEquals(new HandshakeTarget("example.com", 8443), HandshakeTarget.parse("example.com:8443", 443));
+        assertEquals(new HandshakeTarget("::1", 8443), HandshakeTarget.parse("[::1]:8443", 443));
+        assertEquals(new HandshakeTarget("::1", 443), HandshakeTarget.parse("[::1]", 443));
+        assertThrows(IllegalArgumentException.class, () -> HandshakeTarget.parse("example.com:https", 443));
+    }
+}
@@ -0,0 +1,180 @@
+package org.brylex.sancus.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpFetcherTest {
+
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startServer() throws Exception {
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+
+        server.createContext("/small", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "issuer".getBytes();
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+
+        server.createContext("/large", exchange -> {
+            byte[] body = new byte[4096];
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", exchange.getRequestHeaders().getFirst("Content-Type"));
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+
+        server.createContext("/slow", exchange -> {
+            exchange.sendResponseHeaders(200, 64);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < 64; i++) {
+                    os.write(i);
+                    os.flush();
+                    Thread.sleep(250);
+                }
+            } catch (InterruptedException | IOException e) {
+                // the client gave up
+            }
+        });
+
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    void reusesConnectionForRepeatedFetches() {
+
+        HttpFetcher fetcher = new HttpFetcher(HttpFetcher.Config.DEFAULT);
+
+        for (int i = 0; i < 5; i++) {
+            HttpFetcher.Response response = fetcher.get(uri("/small"));
+            assertTrue(response.successful());
+            assertEquals("issuer", new String(response.body()));
+            assertEquals("\"v1\"", response.header("ETag"));
+        }
+
+        assertEquals(1, clientPorts.size(), "Expected one keep-alive connection, saw client ports " + clientPorts);
+
+        HttpFetcher.Stats stats = fetcher.stats().values().iterator().next();
+        assertEquals(5, stats.requests());
+        assertEquals(0, stats.failures());
+        assertEquals(30, stats.bytes());
+        assertTrue(stats.max().compareTo(stats.mean()) >= 0);
+    }
+
+    @Test
+    void rejectsOversizedResponse() {
+
+        HttpFetcher fetcher = new HttpFetcher(new HttpFetcher.Config(Duration.ofSeconds(2), Duration.ofSeconds(2), 1024));
+
+        HttpFetcher.FetchException e = assertThrows(HttpFetcher.FetchException.class, () -> fetcher.get(uri("/large")));
+        assertEquals(uri("/large"), e.uri());
+        assertEquals(1, fetcher.stats().values().iterator().next().failures());
+    }
+
+    @Test
+    void postsBodyAndReturnsErrorStatus() {
+
+        HttpFetcher fetcher = new HttpFetcher(HttpFetcher.Config.DEFAULT);
+
+        HttpFetcher.Response response = fetcher.post(uri("/echo"), "application/ocsp-request", new byte[]{1, 2, 3}, Map.of());
+
+        assertFalse(response.successful());
+        assertEquals(404, response.statusCode());
+        assertArrayEquals(new byte[]{1, 2, 3}, response.body());
+        assertEquals("application/ocsp-request", response.header("Content-Type"));
+    }
+
+    @Test
+    void connectFailureIsReported() throws Exception {
+
+        HttpFetcher fetcher = new HttpFetcher(new HttpFetcher.Config(Duration.ofSeconds(2), Duration.ofSeconds(2), 1024));
+        URI closed = uri("/small");
+        server.stop(0);
+
+        assertThrows(HttpFetcher.FetchException.class, () -> fetcher.get(closed));
+    }
+
+    @Test
+    void slowBodyIsBoundedByRequestTimeout() {
+
+        HttpFetcher fetcher = new HttpFetcher(new HttpFetcher.Config(Duration.ofSeconds(2), Duration.ofSeconds(1), 1024));
+
+        long start = System.nanoTime();
+        HttpFetcher.FetchException e = assertThrows(HttpFetcher.FetchException.class, () -> fetcher.get(uri("/slow")));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertTrue(elapsed < 3_000, "Gave up after " + elapsed + " ms, the body takes 16 s");
+        assertEquals(1, fetcher.stats().values().iterator().next().failures());
+    }
+
+    @Test
+    void interruptStopsWaitingForSlowBody() throws Exception {
+
+        HttpFetcher fetcher = new HttpFetcher(HttpFetcher.Config.DEFAULT);
+
+        Thread caller = Thread.currentThread();
+        Thread interrupter = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException ignored) {
+                return;
+            }
+            caller.interrupt();
+        });
+
+        long start = System.nanoTime();
+        try {
+            HttpFetcher.FetchException e = assertThrows(HttpFetcher.FetchException.class, () -> fetcher.get(uri("/slow")));
+            assertInstanceOf(InterruptedException.class, e.getCause());
+            assertTrue(Thread.interrupted(), "interrupt status is kept");
+        } finally {
+            interrupter.join();
+            Thread.interrupted();
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+    }
+}
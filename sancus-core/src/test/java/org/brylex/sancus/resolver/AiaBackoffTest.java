@@ -0,0 +1,106 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.util.PrincipalTable;
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiaBackoffTest {
+
+    private static final String URL = "http://crt.example/issuer.cer";
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @Test
+    void backOffDoublesUpToMaximum() {
+
+        MutableClock clock = new MutableClock();
+        AiaBackoff backoff = new AiaBackoff(clock, Duration.ofSeconds(30), Duration.ofMinutes(2));
+        CanonicalName issuer = PrincipalTable.INSTANCE.issuer(AWS_AMAZON);
+
+        backoff.failure(URL, issuer);
+        assertTrue(backoff.isCircuitOpen(URL));
+        assertTrue(backoff.isCircuitOpen(issuer));
+        assertEquals(clock.instant().plusSeconds(30), backoff.openUntil(URL));
+
+        clock.advance(Duration.ofSeconds(30));
+        assertFalse(backoff.isCircuitOpen(URL));
+        assertFalse(backoff.isCircuitOpen(issuer));
+        assertNull(backoff.openUntil(URL));
+
+        backoff.failure(URL, issuer);
+        assertEquals(clock.instant().plusSeconds(60), backoff.openUntil(URL));
+        backoff.failure(URL, issuer);
+        assertEquals(clock.instant().plusSeconds(120), backoff.openUntil(URL));
+        backoff.failure(URL, issuer);
+        assertEquals(clock.instant().plusSeconds(120), backoff.openUntil(URL));
+    }
+
+    @Test
+    void successClosesCircuits() {
+
+        AiaBackoff backoff = new AiaBackoff(new MutableClock(), Duration.ofSeconds(30), Duration.ofMinutes(2));
+        CanonicalName issuer = PrincipalTable.INSTANCE.issuer(AWS_AMAZON);
+
+        backoff.failure(URL, issuer);
+        backoff.success(URL, issuer);
+
+        assertFalse(backoff.isCircuitOpen(URL));
+        assertFalse(backoff.isCircuitOpen(issuer));
+    }
+
+    @Test
+    void failuresAreForgottenOnceClosedForTheMaximum() {
+
+        MutableClock clock = new MutableClock();
+        AiaBackoff backoff = new AiaBackoff(clock, Duration.ofSeconds(30), Duration.ofMinutes(2));
+        CanonicalName issuer = PrincipalTable.INSTANCE.issuer(AWS_AMAZON);
+
+        for (int i = 0; i < 100; i++) {
+            backoff.failure(URL + i, issuer);
+        }
+        assertEquals(101, backoff.size());
+
+        // the issuer circuit stays open for the maximum, so it is forgotten last
+        clock.advance(Duration.ofMinutes(4));
+        assertFalse(backoff.isCircuitOpen(URL + 0));
+        assertEquals(100, backoff.size(), "forgotten when looked up");
+
+        backoff.failure(URL, null);
+        assertEquals(1, backoff.size(), "swept when a failure is recorded");
+        assertEquals(clock.instant().plusSeconds(30), backoff.openUntil(URL));
+
+        backoff.failure(URL, null);
+        assertEquals(clock.instant().plusSeconds(60), backoff.openUntil(URL), "consecutive failures still back off");
+    }
+}
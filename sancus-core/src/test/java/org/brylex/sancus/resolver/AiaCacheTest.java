@@ -0,0 +1,155 @@
+package org.brylex.sancus.resolver;
+
+import com.sun.net.httpserver.HttpServer;
+import org.brylex.sancus.http.HttpFetcher;
+import org.brylex.sancus.util.Certificates;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiaCacheTest {
+
+    private static final byte[] ISSUER = encoded(Certificates.AMAZON_CA);
+
+    private static final byte[] GARBAGE = "<html>Service temporarily unavailable</html>".getBytes();
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> conditions = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            conditions.add(String.valueOf(ifNoneMatch));
+
+            if (exchange.getRequestURI().getPath().startsWith("/revalidate")) {
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=0");
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+
+            if ("\"v1\"".equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = exchange.getRequestURI().getPath().endsWith("/garbage") ? GARBAGE : ISSUER;
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private static byte[] encoded(X509Certificate certificate) {
+        try {
+            return certificate.getEncoded();
+        } catch (CertificateEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    void freshEntriesAreServedFromMemoryAndDisk() throws Exception {
+
+        AiaCache cache = new AiaCache(directory, new HttpFetcher(HttpFetcher.Config.DEFAULT), 16);
+        assertArrayEquals(ISSUER, cache.fetch(uri("/a.cer")));
+        assertArrayEquals(ISSUER, cache.fetch(uri("/a.cer")));
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.stats().memoryHits());
+
+        AiaCache restarted = new AiaCache(directory, new HttpFetcher(HttpFetcher.Config.DEFAULT), 16);
+        assertArrayEquals(ISSUER, restarted.fetch(uri("/a.cer")));
+        assertEquals(1, requests.get());
+        assertEquals(1, restarted.stats().diskHits());
+    }
+
+    @Test
+    void staleEntriesAreRevalidated() {
+
+        AiaCache cache = new AiaCache(directory, new HttpFetcher(HttpFetcher.Config.DEFAULT), 16);
+        assertArrayEquals(ISSUER, cache.fetch(uri("/revalidate/a.cer")));
+        assertArrayEquals(ISSUER, cache.fetch(uri("/revalidate/a.cer")));
+
+        assertEquals(List.of("null", "\"v1\""), conditions);
+        assertEquals(1, cache.stats().downloads());
+        assertEquals(1, cache.stats().revalidated());
+    }
+
+    @Test
+    void staleEntryIsServedWhenServerIsGone() {
+
+        AiaCache cache = new AiaCache(directory, new HttpFetcher(HttpFetcher.Config.DEFAULT), 16);
+        URI uri = uri("/revalidate/a.cer");
+        cache.fetch(uri);
+        server.stop(0);
+
+        assertArrayEquals(ISSUER, cache.fetch(uri));
+        assertEquals(1, cache.stats().staleServed());
+    }
+
+    @Test
+    void payloadsAreStoredOncePerFingerprint() throws Exception {
+
+        AiaCache cache = new AiaCache(directory, new HttpFetcher(HttpFetcher.Config.DEFAULT), 16);
+        cache.fetch(uri("/a.cer"));
+        cache.fetch(uri("/b.cer"));
+
+        try (Stream<Path> blobs = Files.list(directory.resolve("blobs"));
+             Stream<Path> urls = Files.list(directory.resolve("urls"))) {
+            assertEquals(1, blobs.count());
+            assertEquals(2, urls.count());
+        }
+    }
+
+    @Test
+    void responsesThatAreNotCertificatesAreNotStored() {
+
+        AiaCache cache = new AiaCache(directory, new HttpFetcher(HttpFetcher.Config.DEFAULT), 16);
+        URI uri = uri("/garbage");
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> cache.fetch(uri));
+        assertTrue(e.getMessage().contains("did not serve a certificate"), e.getMessage());
+        assertThrows(RuntimeException.class, () -> cache.fetch(uri));
+
+        assertEquals(2, requests.get());
+        assertNull(cache.cached(uri));
+        assertFalse(Files.exists(directory.resolve("blobs")));
+        assertEquals(0, cache.stats().downloads());
+    }
+}
@@ -0,0 +1,115 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.CertificateChain.AsyncResolver;
+import org.brylex.sancus.CertificateChain.Resolver;
+import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.TrustAnchorIndex;
+import org.brylex.sancus.audit.AuditHandshakeResolver;
+import org.brylex.sancus.audit.HandshakeInfo;
+import org.brylex.sancus.audit.PhaseTimings.Phase;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncResolversTest {
+
+    @Test
+    void resolvesManyBlockedChainsOnVirtualThreads() throws Exception {
+
+        Set<Boolean> virtual = ConcurrentHashMap.newKeySet();
+        KeyStoreResolver anchors = new KeyStoreResolver(ResolverSource.JKS,
+                TrustAnchorIndex.of(List.of(AMAZON_ROOT, STARFIELD_G2, STARFIELD_CLASS2, VALICERT_CLASS2)));
+
+        Resolver slow = chain -> {
+            virtual.add(Thread.currentThread().isVirtual());
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return anchors.resolve(chain);
+        };
+
+        List<CertificateChain> chains = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            chains.add(CertificateChain.create(AWS_AMAZON, AMAZON_CA));
+        }
+
+        long start = System.nanoTime();
+        List<CertificateChain> resolved = AsyncResolvers.resolveAll(slow.async(), chains).get(10, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(chains, resolved);
+        assertTrue(resolved.stream().allMatch(CertificateChain::isComplete));
+        assertEquals(Set.of(true), virtual);
+        assertTrue(elapsed < 5_000, "200 resolutions of 200ms took " + elapsed + "ms");
+    }
+
+    @Test
+    void sequenceRunsResolversInOrder() throws Exception {
+
+        List<String> calls = new ArrayList<>();
+        AsyncResolver first = chain -> {
+            calls.add("first");
+            return CompletableFuture.completedFuture(chain);
+        };
+        AsyncResolver second = chain -> {
+            calls.add("second");
+            return CompletableFuture.completedFuture(chain);
+        };
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON);
+        assertSame(chain, AsyncResolvers.sequence(first, second).resolveAsync(chain).get());
+        assertEquals(List.of("first", "second"), calls);
+    }
+
+    @Test
+    void failuresPropagate() {
+
+        Resolver failing = chain -> {
+            throw new IllegalStateException("offline");
+        };
+
+        CompletableFuture<CertificateChain> future = failing.async().resolveAsync(CertificateChain.create(AWS_AMAZON));
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+
+        IllegalStateException unwrapped = assertThrows(IllegalStateException.class,
+                () -> AsyncResolvers.blocking(failing.async()).resolve(CertificateChain.create(AWS_AMAZON)));
+        assertEquals("offline", unwrapped.getMessage());
+    }
+
+    @Test
+    void resolvesAuditedChainsAheadOfTheChecks() throws Exception {
+
+        KeyStoreResolver anchors = new KeyStoreResolver(ResolverSource.JKS, TrustAnchorIndex.of(List.of(AMAZON_ROOT)));
+
+        HandshakeInfo incomplete = new HandshakeInfo("TLSv1.3", "TLS_AES_128_GCM_SHA256",
+                new X509Certificate[]{AWS_AMAZON, AMAZON_CA});
+        HandshakeInfo resolved = AuditHandshakeResolver.resolveChain(incomplete, anchors.async()).get(5, TimeUnit.SECONDS);
+
+        assertArrayEquals(new X509Certificate[]{AWS_AMAZON, AMAZON_CA, AMAZON_ROOT}, resolved.resolvedChain());
+        assertSame(incomplete.serverChain(), resolved.serverChain());
+        assertEquals(1, resolved.timings().count(Phase.AIA));
+
+        HandshakeInfo complete = new HandshakeInfo("TLSv1.3", "TLS_AES_128_GCM_SHA256",
+                new X509Certificate[]{VALICERT_CLASS2});
+        assertSame(complete, AuditHandshakeResolver.resolveChain(complete, anchors.async()).get());
+
+        AsyncResolver failing = chain -> CompletableFuture.failedFuture(new IllegalStateException("offline"));
+        HandshakeInfo failed = AuditHandshakeResolver.resolveChain(incomplete, failing).get();
+        assertArrayEquals(incomplete.serverChain(), failed.resolvedChain(), "an attempt is recorded even if it failed");
+        assertEquals(2, failed.timings().count(Phase.AIA));
+    }
+}
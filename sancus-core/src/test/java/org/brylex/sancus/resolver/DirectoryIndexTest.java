@@ -0,0 +1,99 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.util.PrincipalTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.function.BooleanSupplier;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryIndexTest {
+
+    private static final Path RESOURCES = Paths.get("src/test/resources/");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void indexesBySubjectAndKeyIdentifier() {
+
+        DirectoryIndex index = DirectoryIndex.of(RESOURCES);
+
+        assertSame(index, DirectoryIndex.of(RESOURCES.toAbsolutePath()));
+        assertEquals(AMAZON_CA, index.issuerOf(AWS_AMAZON));
+        assertEquals(STARFIELD_G2, index.find(PrincipalTable.INSTANCE.subject(STARFIELD_G2), null));
+        assertEquals(1, index.stats().scans());
+    }
+
+    @Test
+    void followsChangesToTheDirectory() throws Exception {
+
+        copy("amazon.ca.pem", "intermediate.pem");
+        Files.writeString(dir.resolve("broken.pem"), "not a certificate");
+
+        try (DirectoryIndex index = DirectoryIndex.of(dir)) {
+
+            assertEquals(1, index.size());
+            assertEquals(1, index.stats().failures());
+            assertEquals(AMAZON_CA, index.issuerOf(AWS_AMAZON));
+
+            copy("starfield.g2.pem", "root.pem");
+            await(() -> index.issuerOf(AMAZON_ROOT) != null);
+            assertEquals(STARFIELD_G2, index.issuerOf(AMAZON_ROOT));
+
+            copy("letsencrypt.org.pem", "intermediate.pem");
+            await(() -> index.issuerOf(AWS_AMAZON) == null);
+
+            Files.delete(dir.resolve("root.pem"));
+            await(() -> index.issuerOf(AMAZON_ROOT) == null);
+
+            DirectoryIndex.Stats stats = index.stats();
+            assertEquals(1, stats.files());
+            assertEquals(1, stats.scans());
+            assertTrue(stats.reloads() >= 2);
+            assertEquals(1, stats.removals());
+        }
+    }
+
+    @Test
+    void indexesSingleBundleFile() throws Exception {
+
+        Path bundle = dir.resolve("ca-bundle.crt");
+        Files.writeString(bundle, Files.readString(RESOURCES.resolve("amazon.ca.pem"))
+                + Files.readString(RESOURCES.resolve("amazon.root.pem")));
+
+        try (DirectoryIndex index = DirectoryIndex.of(bundle)) {
+
+            assertEquals(2, index.size());
+            assertEquals(AMAZON_CA, index.issuerOf(AWS_AMAZON));
+            assertEquals(AMAZON_ROOT, index.issuerOf(AMAZON_CA));
+
+            copy("starfield.g2.pem", "other.pem");
+            Files.writeString(bundle, Files.readString(RESOURCES.resolve("amazon.ca.pem")));
+            // the rewrite may be seen truncated first
+            await(() -> index.issuerOf(AMAZON_CA) == null && index.stats().files() == 1);
+
+            assertNull(index.issuerOf(AMAZON_ROOT));
+            assertTrue(index.errors().isEmpty());
+        }
+    }
+
+    private void copy(String resource, String name) throws Exception {
+        Path tmp = Files.copy(RESOURCES.resolve(resource), dir.resolve(name + ".tmp"), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Directory change was not picked up.");
+            Thread.sleep(20);
+        }
+    }
+}
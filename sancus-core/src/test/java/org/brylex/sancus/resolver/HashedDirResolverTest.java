@@ -0,0 +1,150 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ResolverSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedDirResolverTest {
+
+    private static final Path RESOURCES = Paths.get("src/test/resources/");
+
+    @TempDir
+    Path dir;
+
+    @TempDir
+    Path state;
+
+    @Test
+    void resolvesFromRehashedDirectory() throws Exception {
+
+        copy("amazon.ca.pem", "2401d14f.0");
+        copy("amazon.root.pem", "ce5e74ef.0");
+        copy("starfield.g2.pem", "09789157.0");
+        copy("starfield.class.2.pem", "f387163d.0");
+        copy("valicert.class.2.pem", "55a10908.0");
+        copy("letsencrypt.org.pem", "2401d14f.1");
+
+        CertificateChain chain = new HashedDirResolver(dir).resolve(CertificateChain.create(AWS_AMAZON));
+
+        assertTrue(chain.isComplete());
+        assertEquals(6, chain.toList().size());
+        assertEquals(VALICERT_CLASS2, chain.last().certificate());
+        assertEquals(ResolverSource.DIR, chain.last().resolvedBy());
+    }
+
+    @Test
+    void missingHashLeavesIssuerUnresolved() throws Exception {
+
+        copy("amazon.ca.pem", "2401d14f.0");
+
+        CertificateChain chain = new HashedDirResolver(dir).resolve(CertificateChain.create(AWS_AMAZON));
+
+        assertFalse(chain.isComplete());
+        assertEquals(AMAZON_CA, chain.toList().get(1));
+    }
+
+    @Test
+    void buildsAndReusesMappedIndex() throws Exception {
+
+        copy("amazon.ca.pem", "amazon.ca.pem");
+        copy("amazon.root.pem", "amazon.root.pem");
+        copy("diggerdette.no.pem", "unrelated.crt");
+        Files.writeString(dir.resolve("README"), "not indexed");
+
+        Path indexFile = state.resolve("certs.idx");
+        CertificateChain chain = new HashedDirResolver(dir, indexFile).resolve(CertificateChain.create(AWS_AMAZON));
+
+        assertEquals(List.of(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT), chain.toList());
+        assertTrue(Files.isRegularFile(indexFile));
+
+        HashedDirIndex index = HashedDirIndex.open(dir, indexFile);
+        assertEquals(3, index.size());
+        assertEquals(List.of(AMAZON_CA), index.lookup(AMAZON_CA.getSubjectX500Principal()));
+        assertEquals(List.of(), index.lookup(STARFIELD_G2.getSubjectX500Principal()));
+
+        copy("starfield.g2.pem", "starfield.g2.pem");
+        Files.setLastModifiedTime(dir, FileTime.from(Instant.now().plusSeconds(5)));
+        assertFalse(index.isCurrent());
+
+        HashedDirIndex rebuilt = HashedDirIndex.open(dir, indexFile);
+        assertTrue(rebuilt.isCurrent());
+        assertEquals(4, rebuilt.size());
+        assertEquals(List.of(STARFIELD_G2), rebuilt.lookup(STARFIELD_G2.getSubjectX500Principal()));
+    }
+
+    @Test
+    void inPlaceFileEditMakesIndexStale() throws Exception {
+
+        copy("amazon.ca.pem", "bundle.pem");
+        FileTime directoryTime = Files.getLastModifiedTime(dir);
+
+        Path indexFile = state.resolve("certs.idx");
+        HashedDirIndex index = HashedDirIndex.open(dir, indexFile);
+        assertEquals(List.of(), index.lookup(AMAZON_ROOT.getSubjectX500Principal()));
+
+        Files.write(dir.resolve("bundle.pem"), Files.readAllBytes(RESOURCES.resolve("amazon.root.pem")),
+                StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(dir, directoryTime);
+        assertTrue(index.isCurrent(), "only the directory is checked by default");
+        assertFalse(index.isCurrent(true));
+
+        HashedDirIndex rebuilt = HashedDirIndex.open(dir, indexFile);
+        assertEquals(2, rebuilt.size());
+        assertEquals(List.of(AMAZON_ROOT), rebuilt.lookup(AMAZON_ROOT.getSubjectX500Principal()));
+    }
+
+    @Test
+    void indexFileInTheIndexedDirectoryIsRejected() {
+
+        Path indexFile = dir.resolve("certs.idx");
+
+        assertThrows(IllegalArgumentException.class, () -> HashedDirIndex.open(dir, indexFile));
+        assertThrows(IllegalArgumentException.class, () -> new HashedDirResolver(dir, indexFile));
+        assertFalse(Files.exists(indexFile));
+    }
+
+    @Test
+    void indexStoresLinkedCertificatesOnce() throws Exception {
+
+        copy("amazon.ca.pem", "amazon.ca.pem");
+        copy("amazon.ca.pem", "2401d14f.0");
+
+        HashedDirIndex index = HashedDirIndex.open(dir, state.resolve("certs.idx"));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(AMAZON_CA), index.lookup(AMAZON_CA.getSubjectX500Principal()));
+        assertSame(index.lookup(AMAZON_CA.getSubjectX500Principal()).get(0),
+                index.lookup(AMAZON_CA.getSubjectX500Principal()).get(0));
+    }
+
+    @Test
+    void rehashedFileIsReadAgainWhenItChanges() throws Exception {
+
+        copy("amazon.ca.pem", "2401d14f.0");
+        HashedDirResolver resolver = new HashedDirResolver(dir);
+        assertEquals(AMAZON_CA, resolver.find(AMAZON_CA.getSubjectX500Principal(), null));
+
+        Files.copy(RESOURCES.resolve("letsencrypt.org.pem"), dir.resolve("2401d14f.0"),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(dir.resolve("2401d14f.0"), FileTime.from(Instant.now().plusSeconds(5)));
+
+        assertNull(resolver.find(AMAZON_CA.getSubjectX500Principal(), null));
+    }
+
+    private void copy(String resource, String name) throws Exception {
+        Files.copy(RESOURCES.resolve(resource), dir.resolve(name));
+    }
+}
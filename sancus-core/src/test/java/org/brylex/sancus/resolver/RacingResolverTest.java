@@ -0,0 +1,86 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.TrustAnchorIndex;
+import org.brylex.sancus.util.Util;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RacingResolverTest {
+
+    private static final TrustAnchorIndex AWS = TrustAnchorIndex.of(
+            Util.loadKeyStore(Paths.get("src/test/resources/jks/aws.jks"), "changeit"));
+
+    @Test
+    void fastestValidAnswerWinsAndSlowLookupsAreCancelled() throws Exception {
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        RacingResolver.Source slow = new RacingResolver.Source(ResolverSource.REMOTE, (subject, missing) -> {
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        RacingResolver resolver = new RacingResolver(List.of(slow, RacingResolver.Source.keyStore(ResolverSource.JKS, AWS)));
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2);
+        resolver.resolve(chain);
+
+        assertTrue(chain.isComplete());
+        assertEquals(VALICERT_CLASS2, chain.last().certificate());
+        assertEquals(ResolverSource.JKS, chain.last().resolvedBy());
+        // Starfield Class 2 and then the ValiCert root
+        assertEquals(2, resolver.races());
+        assertEquals(Map.of(ResolverSource.JKS, 2L), resolver.wins());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(2, resolver.cancelled());
+    }
+
+    @Test
+    void answersThatDidNotIssueTheCertificateAreIgnored() {
+
+        RacingResolver.Source wrong = new RacingResolver.Source(ResolverSource.DIR, (subject, missing) -> STARFIELD_G2);
+        RacingResolver.Source right = new RacingResolver.Source(ResolverSource.REMOTE, (subject, missing) -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return null;
+            }
+            return AWS.find(missing.dn(), null);
+        });
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2);
+        new RacingResolver(List.of(wrong, right)).resolve(chain);
+
+        assertTrue(chain.isComplete());
+        assertEquals(ResolverSource.REMOTE, chain.last().resolvedBy());
+    }
+
+    @Test
+    void unresolvableIssuersLeaveTheChainIncomplete() {
+
+        RacingResolver resolver = new RacingResolver(List.of(
+                new RacingResolver.Source(ResolverSource.DIR, (subject, missing) -> null)));
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2);
+        resolver.resolve(chain);
+
+        assertFalse(chain.isComplete());
+        assertNull(chain.last().certificate());
+        assertEquals(1, resolver.races());
+        assertTrue(resolver.wins().isEmpty());
+    }
+}
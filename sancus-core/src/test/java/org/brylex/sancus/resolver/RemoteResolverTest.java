@@ -6,6 +6,7 @@ import org.brylex.sancus.ResolverSource;
 import org.brylex.sancus.util.Certificates;
 import org.brylex.sancus.util.TestServer;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
@@ -15,6 +16,14 @@ import java.io.PrintStream;
 import java.net.URL;
 import java.security.Security;
 import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -35,6 +44,11 @@ public class RemoteResolverTest {
         Security.addProvider(new BouncyCastleProvider());
     }
 
+    @BeforeEach
+    void closeCircuits() {
+        AiaBackoff.shared().clear();
+    }
+
     @Test
     public void resolveIntermediateViaAccessInfoExtension() throws Exception {
 
@@ -130,6 +144,70 @@ public class RemoteResolverTest {
         }
     }
 
+    @Test
+    public void concurrentDownloadsOfSameIssuerAreCoalesced() throws Exception {
+
+        AtomicInteger downloads = new AtomicInteger();
+        SingleFlight<String, X509Certificate> flight = new SingleFlight<>();
+
+        RemoteResolver resolver = new RemoteResolver(AiaCache.shared(), flight) {
+            @Override
+            byte[] downloadX509CertificateBytes(URL url) {
+                downloads.incrementAndGet();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return downloadBytes("/dstrootcax3.p7c");
+            }
+        };
+
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CertificateChain>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return resolver.resolve(CertificateChain.create(DIGGERDETTE, LETSENCRYPT));
+                }));
+            }
+            start.countDown();
+            for (Future<CertificateChain> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).isComplete());
+            }
+        }
+
+        assertEquals(downloads.get(), flight.issued());
+        assertEquals(callers, flight.issued() + flight.coalesced());
+        assertTrue(flight.coalesced() > 0, "Expected concurrent downloads to be coalesced");
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    public void failedDownloadOpensCircuit() throws Exception {
+
+        AtomicInteger downloads = new AtomicInteger();
+        AiaBackoff backoff = new AiaBackoff(Clock.systemUTC(), Duration.ofMinutes(1), Duration.ofMinutes(10));
+
+        RemoteResolver resolver = new RemoteResolver(AiaCache.shared(), new SingleFlight<>(), backoff) {
+            @Override
+            byte[] downloadX509CertificateBytes(URL url) {
+                downloads.incrementAndGet();
+                return "garbage".getBytes();
+            }
+        };
+
+        assertThrows(RuntimeException.class, () -> resolver.resolve(CertificateChain.create(DIGGERDETTE)));
+        assertTrue(backoff.isCircuitOpen(CertificateChain.create(DIGGERDETTE).last().name()));
+
+        CertificateChain chain = resolver.resolve(CertificateChain.create(DIGGERDETTE));
+        assertEquals(1, downloads.get());
+        assertEquals(1, backoff.skippedCount());
+        assertNull(chain.issuedBy().certificate());
+    }
+
     private byte[] downloadBytes(String path) {
         try (InputStream is = Certificates.class.getResourceAsStream(path)) {
             return is.readAllBytes();
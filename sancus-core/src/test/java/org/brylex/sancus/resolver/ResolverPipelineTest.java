@@ -0,0 +1,90 @@
+package org.brylex.sancus.resolver;
+
+import org.brylex.sancus.CertificateChain;
+import org.brylex.sancus.ResolverSource;
+import org.brylex.sancus.util.Util;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResolverPipelineTest {
+
+    @Test
+    void localStagesRunFirstAndCompleteChainsShortCircuit() {
+
+        List<String> order = new ArrayList<>();
+
+        ResolverPipeline pipeline = ResolverPipeline.builder()
+                .network("REMOTE", chain -> {
+                    order.add("REMOTE");
+                    return chain;
+                })
+                .local("EMPTY", chain -> {
+                    order.add("EMPTY");
+                    return chain;
+                })
+                .local("JKS", chain -> {
+                    order.add("JKS");
+                    return new KeyStoreResolver(ResolverSource.JKS,
+                            Util.loadKeyStore(Paths.get("src/test/resources/jks/aws.jks"), "changeit")).resolve(chain);
+                })
+                .build();
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON, AMAZON_CA, AMAZON_ROOT, STARFIELD_G2);
+        pipeline.resolve(chain);
+
+        assertTrue(chain.isComplete());
+        assertEquals(List.of("EMPTY", "JKS"), order);
+
+        List<ResolverPipeline.StageStats> stats = pipeline.stats();
+        assertEquals(List.of("EMPTY", "JKS", "REMOTE"), stats.stream().map(ResolverPipeline.StageStats::name).toList());
+        assertEquals(1, stats.get(0).misses());
+        assertEquals(1, stats.get(1).hits());
+        assertEquals(0, stats.get(2).runs());
+        assertEquals(1, stats.get(2).skipped());
+    }
+
+    @Test
+    void failingStagesAreCountedAndSkipped() {
+
+        ResolverPipeline pipeline = ResolverPipeline.builder()
+                .cache("BROKEN", chain -> {
+                    throw new RuntimeException("Unable to read cache.");
+                })
+                .network("NOOP", chain -> chain)
+                .build();
+
+        CertificateChain chain = CertificateChain.create(AWS_AMAZON);
+        pipeline.resolve(chain);
+
+        List<ResolverPipeline.StageStats> stats = pipeline.stats();
+        assertEquals(1, stats.get(0).failures());
+        assertEquals(1, stats.get(0).misses());
+        assertEquals(1, stats.get(1).runs());
+        assertFalse(stats.get(1).totalTime().isNegative());
+    }
+
+    @Test
+    void stagesThatOnlyMarkOrCompleteTheChainAreHits() {
+
+        ResolverPipeline pipeline = ResolverPipeline.builder()
+                .local("MARK", chain -> {
+                    chain.head().resolvedBy(ResolverSource.JKS);
+                    return chain;
+                })
+                .local("NOOP", chain -> chain)
+                .build();
+
+        pipeline.resolve(CertificateChain.create(AWS_AMAZON, AMAZON_CA));
+
+        List<ResolverPipeline.StageStats> stats = pipeline.stats();
+        assertEquals(1, stats.get(0).hits());
+        assertEquals(0, stats.get(0).misses());
+        assertEquals(1, stats.get(1).misses());
+    }
+}
@@ -0,0 +1,125 @@
+package org.brylex.sancus.resolver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        int callers = 32;
+        List<Future<String>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> flight.execute("http://ca.example/issuer.cer", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "issuer";
+                })));
+            }
+
+            while (flight.issued() + flight.coalesced() < callers) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<String> future : futures) {
+                assertEquals("issuer", future.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, executions.get());
+        assertEquals(1, flight.issued());
+        assertEquals(callers - 1, flight.coalesced());
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    void failureIsSharedAndNotRemembered() throws Exception {
+
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> first = executor.submit(() -> flight.execute("key", () -> {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("offline");
+            }));
+            entered.await();
+
+            Future<String> second = executor.submit(() -> flight.execute("key", () -> "unexpected"));
+            while (flight.coalesced() < 1) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            ExecutionException e1 = assertThrows(ExecutionException.class, first::get);
+            ExecutionException e2 = assertThrows(ExecutionException.class, second::get);
+            assertInstanceOf(IllegalStateException.class, e1.getCause());
+            assertSame(e1.getCause(), e2.getCause());
+        }
+
+        assertEquals("recovered", flight.execute("key", () -> "recovered"));
+        assertEquals(2, flight.issued());
+    }
+
+    @Test
+    void interruptedFirstCallerDoesNotFailTheOthersWhenDetached() throws Exception {
+
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        String key = "http://ca.example/issuer.cer";
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            Future<String> first = executor.submit(() -> flight.executeDetached(key, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("The shared call was interrupted.");
+                }
+                return "issuer";
+            }, executor));
+            while (flight.issued() < 1) {
+                Thread.sleep(10);
+            }
+
+            Future<String> second = executor.submit(() -> flight.executeDetached(key, () -> "other", executor));
+            while (flight.coalesced() < 1) {
+                Thread.sleep(10);
+            }
+
+            first.cancel(true);
+            release.countDown();
+
+            assertEquals("issuer", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, flight.issued());
+        }
+    }
+}
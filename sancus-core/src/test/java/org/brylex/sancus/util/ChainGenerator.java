@@ -0,0 +1,124 @@
+package org.brylex.sancus.util;
+
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates synthetic certificate hierarchies with Subject/Authority Key Identifiers for tests and benchmarks.
+ */
+public final class ChainGenerator {
+
+    private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+    private ChainGenerator() {
+    }
+
+    public record Issued(X509Certificate certificate, KeyPair keyPair) {
+
+        public X500Principal subject() {
+            return certificate.getSubjectX500Principal();
+        }
+    }
+
+    public static KeyPair keyPair() {
+        try {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+            kpg.initialize(256);
+            return kpg.generateKeyPair();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to generate key pair.", e);
+        }
+    }
+
+    public static Issued root(String cn) {
+        KeyPair keyPair = keyPair();
+        X500Principal subject = new X500Principal("CN=" + cn + ", O=Sancus Test");
+        return new Issued(sign(subject, keyPair, subject, keyPair, Duration.ofDays(3650), "SHA256withECDSA", true), keyPair);
+    }
+
+    public static Issued intermediate(String cn, Issued issuer) {
+        KeyPair keyPair = keyPair();
+        X500Principal subject = new X500Principal("CN=" + cn + ", O=Sancus Test");
+        return new Issued(sign(subject, keyPair, issuer.subject(), issuer.keyPair(), Duration.ofDays(1825), "SHA256withECDSA", true), keyPair);
+    }
+
+    public static Issued leaf(String cn, Issued issuer) {
+        KeyPair keyPair = keyPair();
+        X500Principal subject = new X500Principal("CN=" + cn);
+        return new Issued(sign(subject, keyPair, issuer.subject(), issuer.keyPair(), Duration.ofDays(90), "SHA256withECDSA", false), keyPair);
+    }
+
+    /**
+     * Re-issues the subject's name and key under another issuer, as done when a new root is cross-signed by an
+     * older, more widely trusted one.
+     */
+    public static Issued crossSign(Issued subject, Issued issuer, Duration validity, String signatureAlgorithm) {
+        X509Certificate certificate = sign(subject.subject(), subject.keyPair(), issuer.subject(), issuer.keyPair(),
+                validity, signatureAlgorithm, true);
+        return new Issued(certificate, subject.keyPair());
+    }
+
+    /**
+     * @return a chain of the given length ordered leaf first, ending with a self-signed root.
+     */
+    public static List<X509Certificate> chain(String name, int length) {
+
+        List<X509Certificate> chain = new ArrayList<>(length);
+
+        Issued issuer = root(name + " Root");
+        chain.add(issuer.certificate());
+
+        for (int i = 1; i < length - 1; i++) {
+            issuer = intermediate(name + " CA " + i, issuer);
+            chain.add(issuer.certificate());
+        }
+
+        if (length > 1) {
+            chain.add(leaf(name + ".example", issuer).certificate());
+        }
+
+        Collections.reverse(chain);
+        return chain;
+    }
+
+    private static X509Certificate sign(X500Principal subject, KeyPair subjectKeys, X500Principal issuer,
+                                        KeyPair issuerKeys, Duration validity, String signatureAlgorithm, boolean ca) {
+        try {
+            Instant now = Instant.now();
+            JcaX509ExtensionUtils utils = new JcaX509ExtensionUtils();
+
+            X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                    issuer, BigInteger.valueOf(SERIAL.incrementAndGet()),
+                    Date.from(now.minus(Duration.ofDays(1))), Date.from(now.plus(validity)),
+                    subject, subjectKeys.getPublic());
+
+            builder.addExtension(Extension.subjectKeyIdentifier, false, utils.createSubjectKeyIdentifier(subjectKeys.getPublic()));
+            builder.addExtension(Extension.authorityKeyIdentifier, false, utils.createAuthorityKeyIdentifier(issuerKeys.getPublic()));
+            builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+
+            return new JcaX509CertificateConverter().getCertificate(
+                    builder.build(new JcaContentSignerBuilder(signatureAlgorithm).build(issuerKeys.getPrivate())));
+
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to generate certificate for [" + subject + "].", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.brylex.sancus.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FingerprintTest {
+
+    @Test
+    void matchesSha256OfEncoding() throws Exception {
+
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(AMAZON_CA.getEncoded());
+
+        Fingerprint fingerprint = Fingerprint.of(AMAZON_CA);
+
+        assertArrayEquals(expected, fingerprint.toByteArray());
+        assertEquals(HexFormat.of().formatHex(expected), fingerprint.toString());
+        assertEquals(fingerprint, Fingerprint.of(AMAZON_CA.getEncoded()));
+        assertEquals(fingerprint.hashCode(), Fingerprint.of(AMAZON_CA.getEncoded()).hashCode());
+        assertEquals(fingerprint, Fingerprint.fromHex(fingerprint.toString()));
+        assertNotEquals(fingerprint, Fingerprint.of(AMAZON_ROOT));
+    }
+
+    @Test
+    void remembersFingerprintPerInstance() {
+
+        Fingerprint first = Fingerprint.of(LETSENCRYPT);
+        int cached = Fingerprint.cachedInstances();
+
+        assertSame(first, Fingerprint.of(LETSENCRYPT));
+        assertEquals(cached, Fingerprint.cachedInstances());
+    }
+
+    @Test
+    void rejectsWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> Fingerprint.fromHex("abcd"));
+    }
+}
@@ -0,0 +1,93 @@
+package org.brylex.sancus.util;
+
+import org.brylex.sancus.util.PrincipalTable.CanonicalName;
+import org.junit.jupiter.api.Test;
+
+import javax.security.auth.x500.X500Principal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrincipalTableTest {
+
+    @Test
+    void differentlyWrittenNamesShareOneId() {
+
+        CanonicalName upper = PrincipalTable.INSTANCE.intern(new X500Principal("CN=Sancus Table, O=Brylex"));
+        CanonicalName lower = PrincipalTable.INSTANCE.intern(new X500Principal("cn=sancus  table,o=brylex"));
+
+        assertSame(upper, lower);
+        assertEquals(upper.id(), lower.id());
+        assertTrue(PrincipalTable.INSTANCE.same(new X500Principal("CN=Sancus Table, O=Brylex"),
+                new X500Principal("cn=sancus  table,o=brylex")));
+    }
+
+    @Test
+    void linksIssuerToSubject() {
+
+        PrincipalTable table = PrincipalTable.INSTANCE;
+
+        assertEquals(table.subject(AMAZON_CA), table.issuer(AWS_AMAZON));
+        assertNotEquals(table.subject(AWS_AMAZON), table.issuer(AWS_AMAZON));
+        assertTrue(table.selfIssued(VALICERT_CLASS2));
+        assertFalse(table.selfIssued(AMAZON_CA));
+    }
+
+    @Test
+    void canonicalBytesMatchCanonicalName() {
+
+        X500Principal principal = AMAZON_CA.getSubjectX500Principal();
+        CanonicalName name = PrincipalTable.INSTANCE.intern(principal);
+
+        assertEquals(principal.getName(X500Principal.CANONICAL), new String(name.canonical(), StandardCharsets.UTF_8));
+        assertEquals(principal, name.principal());
+    }
+
+    @Test
+    void evictionStartsAFreshGenerationWithConsistentIds() throws Exception {
+
+        PrincipalTable table = new PrincipalTable(8);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> interns = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                interns.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        int n = i % 64;
+                        CanonicalName upper = table.intern(new X500Principal("CN=Sancus " + n + ", O=Brylex"));
+                        CanonicalName lower = table.intern(new X500Principal("cn=sancus  " + n + ",o=brylex"));
+                        assertEquals(upper, lower);
+                    }
+                }));
+            }
+            for (Future<?> intern : interns) {
+                intern.get();
+            }
+        }
+
+        assertTrue(table.size() <= 9, "size " + table.size());
+
+        // the first pair may straddle a new generation; after that, both spellings resolve to its one name
+        table.intern(new X500Principal("CN=Sancus 1, O=Brylex"));
+        table.intern(new X500Principal("cn=sancus  1,o=brylex"));
+        CanonicalName upper = table.intern(new X500Principal("CN=Sancus 1, O=Brylex"));
+        CanonicalName lower = table.intern(new X500Principal("cn=sancus  1,o=brylex"));
+        assertSame(upper, lower);
+    }
+
+    @Test
+    void samePrincipalInstanceIsAnsweredByIdentity() {
+
+        PrincipalTable table = new PrincipalTable(PrincipalTable.MAX_SIZE);
+        X500Principal principal = AMAZON_CA.getSubjectX500Principal();
+
+        assertSame(table.intern(principal), table.intern(principal));
+        assertSame(table.subject(AMAZON_CA), table.issuer(AWS_AMAZON));
+    }
+}
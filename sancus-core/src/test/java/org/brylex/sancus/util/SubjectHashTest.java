@@ -0,0 +1,40 @@
+package org.brylex.sancus.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.security.auth.x500.X500Principal;
+
+import static org.brylex.sancus.util.Certificates.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubjectHashTest {
+
+    @Test
+    void matchesOpenSslSubjectHash() {
+
+        // openssl x509 -noout -subject_hash
+        assertEquals("ada14ca1", SubjectHash.hex(AWS_AMAZON.getSubjectX500Principal()));
+        assertEquals("2401d14f", SubjectHash.hex(AMAZON_CA.getSubjectX500Principal()));
+        assertEquals("ce5e74ef", SubjectHash.hex(AMAZON_ROOT.getSubjectX500Principal()));
+        assertEquals("09789157", SubjectHash.hex(STARFIELD_G2.getSubjectX500Principal()));
+        assertEquals("f387163d", SubjectHash.hex(STARFIELD_CLASS2.getSubjectX500Principal()));
+        assertEquals("55a10908", SubjectHash.hex(VALICERT_CLASS2.getSubjectX500Principal()));
+        assertEquals("1c026552", SubjectHash.hex(DIGGERDETTE.getSubjectX500Principal()));
+        assertEquals("4f06f81d", SubjectHash.hex(LETSENCRYPT.getSubjectX500Principal()));
+        assertEquals("2e5ac55d", SubjectHash.hex(DST_ROOT.getSubjectX500Principal()));
+        assertEquals("8e233456", SubjectHash.hex(OPENSSL_INTERMEDIATE.getSubjectX500Principal()));
+        assertEquals("cf01645d", SubjectHash.hex(LOCALHOST.getSubjectX500Principal()));
+        assertEquals("ecc43468", SubjectHash.hex(CERT_GMAIL.getSubjectX500Principal()));
+    }
+
+    @Test
+    void ignoresCaseAndWhiteSpace() {
+
+        X500Principal name = new X500Principal("CN=Example  Root CA ,O=Example");
+        X500Principal variant = new X500Principal("CN=  example root   ca,O=EXAMPLE");
+
+        assertEquals(SubjectHash.of(name), SubjectHash.of(variant));
+        assertEquals(SubjectHash.id(name), SubjectHash.id(variant));
+        assertNotEquals(SubjectHash.of(name), SubjectHash.of(new X500Principal("CN=Example Root CA 2,O=Example")));
+    }
+}
@@ -0,0 +1,97 @@
+package org.brylex.sancus.util;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TLS servers on several ephemeral loopback ports that complete the handshake and hang up; stands in for many
+ * remote hosts in handshake tests and benchmarks. Each connection is served on its own virtual thread.
+ */
+public class TlsStandInServer implements AutoCloseable {
+
+    private final List<SSLServerSocket> sockets = new ArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public TlsStandInServer(int ports) {
+        this("src/test/resources/jks/full-openssl.jks", ports);
+    }
+
+    public TlsStandInServer(String jksPath, int ports) {
+        this(jksPath, ports, new String[0]);
+    }
+
+    /**
+     * @param protocols the protocols the servers accept, such as {@code TLSv1.2}; all enabled ones if empty.
+     */
+    public TlsStandInServer(String jksPath, int ports, String... protocols) {
+        try {
+            KeyStore jks = Util.loadKeyStore(Paths.get(jksPath), "changeit");
+
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(jks, "changeit".toCharArray());
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(kmf.getKeyManagers(), null, null);
+
+            for (int i = 0; i < ports; i++) {
+                SSLServerSocket socket = (SSLServerSocket) context.getServerSocketFactory()
+                        .createServerSocket(0, 4096, InetAddress.getLoopbackAddress());
+                if (protocols.length > 0) {
+                    socket.setEnabledProtocols(protocols);
+                }
+                sockets.add(socket);
+                executor.execute(() -> accept(socket));
+            }
+        } catch (Exception e) {
+            close();
+            throw new RuntimeException("Unable to start TLS stand-in server.", e);
+        }
+    }
+
+    public List<Integer> ports() {
+        return sockets.stream().map(SSLServerSocket::getLocalPort).toList();
+    }
+
+    private void accept(SSLServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                executor.execute(() -> serve((SSLSocket) socket));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private static void serve(SSLSocket socket) {
+        try (socket) {
+            socket.setSoTimeout(10_000);
+            socket.startHandshake();
+        } catch (IOException e) {
+            // clients hang up right after the handshake
+        }
+    }
+
+    @Override
+    public void close() {
+        for (SSLServerSocket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+        executor.shutdownNow();
+    }
+}